@@ -0,0 +1,184 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.knime.filehandling.core.connections.base.attributes.BaseFileAttributes;
+
+/**
+ * Tests the invalidation and eviction of the
+ * {@link CloudStorageAttributesCache}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageAttributesCacheTest {
+
+    private static final long TIME_TO_LIVE = 60_000;
+
+    @Test
+    void testPutGetRemove() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        final var attributes = attributes();
+        cache.put("/bucket/file", attributes);
+        Assertions.assertSame(attributes, cache.get("/bucket/file").orElseThrow());
+
+        cache.remove("/bucket/file");
+        Assertions.assertTrue(cache.get("/bucket/file").isEmpty());
+    }
+
+    @Test
+    void testDisabledCacheKeepsNothing() {
+        final var cache = new CloudStorageAttributesCache(0, 100);
+        cache.put("/bucket/file", attributes());
+        cache.putMissing("/bucket/other");
+
+        Assertions.assertTrue(cache.get("/bucket/file").isEmpty());
+        Assertions.assertFalse(cache.isMissing("/bucket/other"));
+    }
+
+    @Test
+    void testRemoveDeepKeepsSiblingsWithCommonPrefix() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        for (final var key : new String[]{"/bucket/dir", "/bucket/dir/", "/bucket/dir/file", "/bucket/dir/sub/file",
+            "/bucket/dir2/file", "/bucket/dir-file", "/bucket/dirfile"}) {
+            cache.put(key, attributes());
+        }
+
+        cache.removeDeep("/bucket/dir/");
+        Assertions.assertTrue(cache.get("/bucket/dir").isEmpty());
+        Assertions.assertTrue(cache.get("/bucket/dir/").isEmpty());
+        Assertions.assertTrue(cache.get("/bucket/dir/file").isEmpty());
+        Assertions.assertTrue(cache.get("/bucket/dir/sub/file").isEmpty());
+        Assertions.assertTrue(cache.get("/bucket/dir2/file").isPresent());
+        Assertions.assertTrue(cache.get("/bucket/dir-file").isPresent());
+        Assertions.assertTrue(cache.get("/bucket/dirfile").isPresent());
+    }
+
+    @Test
+    void testRemoveDeepOfRootClearsCache() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        cache.put("/bucket/file", attributes());
+        cache.putMissing("/other/file");
+
+        cache.removeDeep("/");
+        Assertions.assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    @Test
+    void testPutDropsMissingAncestors() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        cache.putMissing("/bucket/dir");
+        cache.putMissing("/bucket/dir/");
+        cache.putMissing("/bucket/dir/sub/");
+        cache.putMissing("/bucket/other");
+
+        cache.put("/bucket/dir/sub/file", attributes());
+        Assertions.assertFalse(cache.isMissing("/bucket/dir"));
+        Assertions.assertFalse(cache.isMissing("/bucket/dir/"));
+        Assertions.assertFalse(cache.isMissing("/bucket/dir/sub/"));
+        Assertions.assertTrue(cache.isMissing("/bucket/other"));
+    }
+
+    @Test
+    void testPutDropsMissingOtherNotation() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        cache.putMissing("/bucket/dir/");
+
+        cache.put("/bucket/dir", attributes());
+        Assertions.assertFalse(cache.isMissing("/bucket/dir/"));
+        Assertions.assertTrue(cache.get("/bucket/dir").isPresent());
+    }
+
+    @Test
+    void testRemoveDropsMissingAncestors() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        cache.putMissing("/bucket/dir/");
+
+        cache.remove("/bucket/dir/file");
+        Assertions.assertFalse(cache.isMissing("/bucket/dir/"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 2);
+        cache.put("/bucket/a", attributes());
+        cache.put("/bucket/b", attributes());
+        Assertions.assertTrue(cache.get("/bucket/a").isPresent());
+
+        cache.put("/bucket/c", attributes());
+        Assertions.assertTrue(cache.get("/bucket/a").isPresent());
+        Assertions.assertTrue(cache.get("/bucket/b").isEmpty());
+        Assertions.assertTrue(cache.get("/bucket/c").isPresent());
+        Assertions.assertEquals(1, cache.getStatistics().getEvictions());
+
+        // the evicted entry must be gone from the sorted view as well
+        cache.removeDeep("/bucket");
+        Assertions.assertEquals(0, cache.getStatistics().getSize());
+    }
+
+    @Test
+    void testMissingEntryIsCountedOnce() {
+        final var cache = new CloudStorageAttributesCache(TIME_TO_LIVE, 100);
+        cache.putMissing("/bucket/file");
+
+        Assertions.assertTrue(cache.get("/bucket/file").isEmpty());
+        Assertions.assertTrue(cache.isMissing("/bucket/file"));
+        Assertions.assertTrue(cache.get("/bucket/other").isEmpty());
+        Assertions.assertFalse(cache.isMissing("/bucket/other"));
+
+        final var statistics = cache.getStatistics();
+        Assertions.assertEquals(1, statistics.getHits());
+        Assertions.assertEquals(1, statistics.getMisses());
+    }
+
+    private static BaseFileAttributes attributes() {
+        final var time = FileTime.fromMillis(0);
+        return new BaseFileAttributes(true, null, time, time, time, 1, false, false, null);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.knime.ext.google.filehandling.cloudstorage.fs.CloudStorageChecksum.MismatchException;
+import org.knime.ext.google.filehandling.cloudstorage.fs.CloudStorageChecksum.VerifyingInputStream;
+
+/**
+ * Tests the CRC32C helpers of {@link CloudStorageChecksum}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageChecksumTest {
+
+    private static final byte[] DATA = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    /** CRC32C check value of "123456789" (0xE3069283), as reported by Cloud Storage. */
+    private static final String CHECKSUM = "4waSgw==";
+
+    @Test
+    void testToBase64() {
+        final var crc = new CRC32C();
+        crc.update(DATA);
+        Assertions.assertEquals(CHECKSUM, CloudStorageChecksum.toBase64(crc));
+        Assertions.assertEquals("AAAAAA==", CloudStorageChecksum.toBase64(new CRC32C()));
+    }
+
+    @Test
+    void testVerify() throws IOException {
+        final var crc = new CRC32C();
+        crc.update(DATA);
+        CloudStorageChecksum.verify(CHECKSUM, crc, "object");
+
+        final var e = Assertions.assertThrows(MismatchException.class,
+            () -> CloudStorageChecksum.verify("AAAAAA==", crc, "object"));
+        Assertions.assertTrue(e.getMessage().contains("object"));
+    }
+
+    @Test
+    void testStreamVerifiesAtEnd() throws IOException {
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(DATA), CHECKSUM, "object")) {
+            Assertions.assertArrayEquals(DATA, in.readAllBytes());
+            Assertions.assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testStreamVerifiesSingleBytes() throws IOException {
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(DATA), CHECKSUM, "object")) {
+            // reaching the end throws a MismatchException if the checksum is wrong
+            int b;
+            do {
+                b = in.read();
+            } while (b >= 0);
+        }
+    }
+
+    @Test
+    void testSkippedBytesAreVerified() throws IOException {
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(DATA), CHECKSUM, "object")) {
+            Assertions.assertEquals(4, in.skip(4));
+            Assertions.assertEquals('5', in.read());
+            Assertions.assertEquals(4, in.readAllBytes().length);
+        }
+
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(DATA), "AAAAAA==", "object")) {
+            Assertions.assertThrows(MismatchException.class, () -> in.skip(100));
+        }
+    }
+
+    @Test
+    void testCorruptedStreamFails() throws IOException {
+        final byte[] corrupted = DATA.clone();
+        corrupted[3] ^= 1;
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(corrupted), CHECKSUM, "object")) {
+            Assertions.assertThrows(MismatchException.class, in::readAllBytes);
+        }
+    }
+
+    @Test
+    void testTruncatedStreamFails() throws IOException {
+        final byte[] truncated = new byte[DATA.length - 1];
+        System.arraycopy(DATA, 0, truncated, 0, truncated.length);
+        try (InputStream in = new VerifyingInputStream(new ByteArrayInputStream(truncated), CHECKSUM, "object")) {
+            Assertions.assertThrows(MismatchException.class, in::readAllBytes);
+        }
+    }
+}
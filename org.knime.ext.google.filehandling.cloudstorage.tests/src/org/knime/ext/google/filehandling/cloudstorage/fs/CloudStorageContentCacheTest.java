@@ -0,0 +1,146 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.storage.BlobId;
+
+/**
+ * Tests the budget and the eviction of the {@link CloudStorageContentCache}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageContentCacheTest {
+
+    private static final BlobId FIRST = BlobId.of("bucket", "first.bin", 1L);
+
+    private static final BlobId SECOND = BlobId.of("bucket", "second.bin", 1L);
+
+    @Test
+    void testLargestBudgetApplies() {
+        final var cache = new CloudStorageContentCache();
+        cache.register(100);
+        cache.register(10);
+        Assertions.assertEquals(100, cache.getMaxSize());
+
+        cache.unregister(100);
+        Assertions.assertEquals(10, cache.getMaxSize());
+
+        // the last budget is kept for the next executions
+        cache.unregister(10);
+        Assertions.assertEquals(10, cache.getMaxSize());
+    }
+
+    @Test
+    void testSmallerBudgetDoesNotShrinkCache() throws IOException {
+        final var cache = new CloudStorageContentCache();
+        cache.register(12);
+        cache.register(6);
+        store(cache, FIRST, 6);
+        store(cache, SECOND, 6);
+
+        Assertions.assertEquals(12, cache.getSize());
+        assertCached(cache, FIRST);
+        assertCached(cache, SECOND);
+    }
+
+    @Test
+    void testCacheShrinksWhenLargestBudgetIsUnregistered() throws IOException {
+        final var cache = new CloudStorageContentCache();
+        cache.register(12);
+        cache.register(6);
+        store(cache, FIRST, 6);
+        store(cache, SECOND, 6);
+
+        cache.unregister(12);
+        Assertions.assertEquals(6, cache.getSize());
+        Assertions.assertNull(cache.newInputStream(FIRST));
+        assertCached(cache, SECOND);
+    }
+
+    @Test
+    void testEntriesBeingReadAreNotEvicted() throws IOException {
+        final var cache = new CloudStorageContentCache();
+        cache.register(6);
+        store(cache, FIRST, 6);
+
+        try (final var in = cache.newInputStream(FIRST)) {
+            store(cache, SECOND, 6);
+            Assertions.assertNull(cache.newInputStream(SECOND));
+            Assertions.assertEquals(6, in.readAllBytes().length);
+        }
+
+        try (final var channel = cache.newByteChannel(FIRST)) {
+            store(cache, SECOND, 6);
+            Assertions.assertNull(cache.newInputStream(SECOND));
+        }
+
+        store(cache, SECOND, 6);
+        Assertions.assertNull(cache.newInputStream(FIRST));
+        assertCached(cache, SECOND);
+        Assertions.assertEquals(6, cache.getSize());
+    }
+
+    private static void store(final CloudStorageContentCache cache, final BlobId blobId, final int size)
+        throws IOException {
+        try (final InputStream in =
+            cache.cachingInputStream(blobId, size, new ByteArrayInputStream(new byte[size]))) {
+            in.readAllBytes();
+        }
+    }
+
+    private static void assertCached(final CloudStorageContentCache cache, final BlobId blobId) throws IOException {
+        try (final var in = cache.newInputStream(blobId)) {
+            Assertions.assertNotNull(in);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.CopyRequest;
+import com.google.cloud.storage.StorageException;
+
+/**
+ * Tests the server-side copies of {@link CloudStorageClient}. The stand-in
+ * storage rejects all copies, which are recorded with the source and target
+ * names.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageCopyTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final Map<String, String> m_copies = new ConcurrentHashMap<>();
+
+    private final AtomicInteger m_copyCalls = new AtomicInteger();
+
+    private CloudStorageClient m_client;
+
+    @AfterEach
+    void tearDown() {
+        if (m_client != null) {
+            m_client.close();
+        }
+    }
+
+    @Test
+    void testPrefixIsReplaced() throws IOException {
+        m_client = newClient(0);
+
+        final var failures = m_client.copyBlobs(BUCKET, "src/",
+            List.of("src/", "src/a.csv", "src/sub/b.csv").iterator(), "other", "dst/");
+
+        Assertions.assertEquals(Map.of("src/", "dst/", "src/a.csv", "dst/a.csv", "src/sub/b.csv", "dst/sub/b.csv"),
+            m_copies);
+        Assertions.assertEquals(m_copies.keySet(), failures.keySet());
+    }
+
+    @Test
+    void testMarkerIsSkippedWhenCopyingToBucket() throws IOException {
+        m_client = newClient(0);
+
+        m_client.copyBlobs(BUCKET, "src/", List.of("src/", "src/a.csv").iterator(), "other", null);
+
+        Assertions.assertEquals(Map.of("src/a.csv", "a.csv"), m_copies);
+    }
+
+    @Test
+    void testNoBlobs() throws IOException {
+        m_client = newClient(0);
+
+        Assertions.assertTrue(m_client.copyBlobs(BUCKET, "src/", Collections.emptyIterator(), BUCKET, "dst/")
+            .isEmpty());
+        Assertions.assertEquals(0, m_copyCalls.get());
+    }
+
+    @Test
+    void testFirstRewriteIsRetried() throws IOException {
+        m_client = newClient(2);
+
+        final var failures = m_client.copyBlobs(BUCKET, null, List.of("a.csv").iterator(), BUCKET, "dst/");
+
+        Assertions.assertEquals(3, m_copyCalls.get());
+        Assertions.assertEquals(Set.of("a.csv"), failures.keySet());
+        Assertions.assertTrue(failures.get("a.csv").getMessage().contains("denied"));
+    }
+
+    @Test
+    void testFirstRewriteRetriesAreLimited() throws IOException {
+        m_client = newClient(Integer.MAX_VALUE);
+
+        m_client.copyBlobs(BUCKET, null, List.of("a.csv").iterator(), BUCKET, "dst/");
+
+        Assertions.assertEquals(4, m_copyCalls.get());
+    }
+
+    /**
+     * @param transientFailures
+     *            the number of copy calls which fail with a transient error
+     *            before the copies are rejected.
+     */
+    private CloudStorageClient newClient(final int transientFailures) {
+        final var config = new CloudStorageConnectionConfig("/", null);
+        final var storage = (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(),
+            new Class<?>[]{Storage.class}, (proxy, method, args) -> {
+                if (!"copy".equals(method.getName())) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                final var request = (CopyRequest)args[0];
+                m_copies.put(request.getSource().getName(), request.getTarget().getName());
+                if (m_copyCalls.incrementAndGet() <= transientFailures) {
+                    throw new StorageException(503, "unavailable");
+                }
+                throw new StorageException(400, "denied");
+            });
+        return new CloudStorageClient(config, storage);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobListOption;
+
+/**
+ * Tests the translation of {@link CloudStorageGlobFilter} into the
+ * {@code matchGlob} of Cloud Storage listings, and the local matching.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageGlobFilterTest {
+
+    @Test
+    void testMatchGlobOfSimplePattern() {
+        final var filter = CloudStorageGlobFilter.ofGlob("*.csv");
+        Assertions.assertEquals("data/{*.csv,*/}", filter.toMatchGlob("data/"));
+        Assertions.assertEquals("{*.csv,*/}", filter.toMatchGlob(null));
+    }
+
+    @Test
+    void testMatchGlobExpandsGroups() {
+        final var filter = CloudStorageGlobFilter.ofGlob("part-?.{csv,txt}");
+        Assertions.assertEquals("a/b/{part-?.csv,part-?.txt,*/}", filter.toMatchGlob("a/b/"));
+    }
+
+    @Test
+    void testMatchGlobOfCharacterClass() {
+        Assertions.assertEquals("{[ab]*,*/}", CloudStorageGlobFilter.ofGlob("[ab]*").toMatchGlob(null));
+    }
+
+    @Test
+    void testUntranslatablePatterns() {
+        for (final var glob : List.of("**.csv", "[!a]*", "a\\*b", "sub/*.csv", "{a,}")) {
+            Assertions.assertNull(CloudStorageGlobFilter.ofGlob(glob).toMatchGlob("data/"),
+                "Pattern should not be translated: " + glob);
+        }
+    }
+
+    @Test
+    void testPrefixWithGlobCharacters() {
+        Assertions.assertNull(CloudStorageGlobFilter.ofGlob("*.csv").toMatchGlob("da*ta/"));
+        Assertions.assertNull(CloudStorageGlobFilter.ofGlob("*.csv").toMatchGlob("{data}/"));
+    }
+
+    @Test
+    void testMatchGlobOfExtensions() {
+        Assertions.assertEquals("dir/{*.csv,*.txt,*/}",
+            CloudStorageGlobFilter.ofExtensions(List.of("csv", ".txt"), true).toMatchGlob("dir/"));
+        Assertions.assertEquals("{*.[cC][sS][vV],*/}",
+            CloudStorageGlobFilter.ofExtensions(List.of("CSV"), false).toMatchGlob(null));
+        Assertions.assertNull(CloudStorageGlobFilter.ofExtensions(List.of("c*v"), true).toMatchGlob(null));
+        Assertions.assertNull(CloudStorageGlobFilter.ofExtensions(List.of(), true).toMatchGlob(null));
+    }
+
+    @Test
+    void testLocalMatching() throws Exception {
+        final var filter = CloudStorageGlobFilter.ofGlob("*.{csv,txt}");
+        Assertions.assertTrue(filter.matches(Path.of("a.csv")));
+        Assertions.assertTrue(filter.matches(Path.of("b.txt")));
+        Assertions.assertFalse(filter.matches(Path.of("c.json")));
+        Assertions.assertTrue(filter.accept(Path.of("a.csv")));
+        Assertions.assertFalse(filter.accept(Path.of("c.json")));
+
+        final var extensions = CloudStorageGlobFilter.ofExtensions(List.of("csv"), false);
+        Assertions.assertTrue(extensions.matches(Path.of("A.CSV")));
+        Assertions.assertFalse(extensions.matches(Path.of("a.csv.gz")));
+    }
+
+    @Test
+    void testInvalidPattern() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CloudStorageGlobFilter.ofGlob("*.{csv"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CloudStorageGlobFilter.ofGlob("[ab"));
+    }
+
+    @Test
+    void testListingWithGlobFilterUsesMatchGlob() throws IOException {
+        final List<List<Object>> listings = new ArrayList<>();
+        final var matchGlob = BlobListOption.matchGlob("{*.csv,*/}");
+        try (final var fs = newFileSystem(listings)) {
+            final var bucket = fs.getPath("/bucket/");
+            try (final var stream = Files.newDirectoryStream(bucket, CloudStorageGlobFilter.ofGlob("*.csv"))) {
+                stream.forEach(p -> Assertions.fail("Unexpected entry " + p));
+            }
+            final var globListing = listings.get(listings.size() - 1);
+            Assertions.assertTrue(globListing.contains(matchGlob), "Listing does not use matchGlob: " + globListing);
+
+            // any other filter, including the one of Files.newDirectoryStream(Path, String), is applied locally
+            try (final var stream = Files.newDirectoryStream(bucket, "*.csv")) {
+                stream.forEach(p -> Assertions.fail("Unexpected entry " + p));
+            }
+            final var otherListing = listings.get(listings.size() - 1);
+            Assertions.assertFalse(otherListing.contains(matchGlob), "Listing uses matchGlob: " + otherListing);
+            Assertions.assertEquals(globListing.size() - 1, otherListing.size());
+        }
+    }
+
+    private static CloudStorageFileSystem newFileSystem(final List<List<Object>> listings) {
+        final var config = new CloudStorageConnectionConfig("/", null);
+        final var storage = (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(),
+            new Class<?>[]{Storage.class}, (proxy, method, args) -> {
+                if ("list".equals(method.getName()) && args.length == 2) {
+                    listings.add(Arrays.asList((Object[])args[1]));
+                    return emptyPage();
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        return new CloudStorageFileSystem(config, 0, new CloudStorageClient(config, storage));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Page<Blob> emptyPage() {
+        return (Page<Blob>)Proxy.newProxyInstance(Page.class.getClassLoader(), new Class<?>[]{Page.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "hasNextPage" -> false;
+                case "iterateAll", "getValues" -> List.of();
+                case "streamAll", "streamValues" -> List.of().stream();
+                default -> null;
+            });
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.StorageOptions;
+
+/**
+ * Tests that {@link CloudStorageClient#createStorageOptions} configures the
+ * storage according to the connection settings.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageOptionsTest {
+
+    private static final String ENDPOINT = "http://localhost:4443";
+
+    @Test
+    void testHttpTransport() {
+        final var config = newConfig();
+
+        final var options = CloudStorageClient.createStorageOptions(config);
+
+        Assertions.assertTrue(options.getTransportOptions() instanceof HttpTransportOptions,
+            options.getTransportOptions().getClass().getName());
+        final var transportOptions = (HttpTransportOptions)options.getTransportOptions();
+        Assertions.assertEquals(2_000, transportOptions.getConnectTimeout());
+        Assertions.assertEquals(3_000, transportOptions.getReadTimeout());
+        Assertions.assertEquals("project", options.getProjectId());
+        Assertions.assertEquals(ENDPOINT, options.getHost());
+    }
+
+    @Test
+    void testGrpcTransportBoundsCallsBySumOfTimeouts() {
+        final var config = newConfig();
+        config.setUseGrpc(true);
+
+        final var options = CloudStorageClient.createStorageOptions(config);
+
+        Assertions.assertFalse(options.getTransportOptions() instanceof HttpTransportOptions);
+        Assertions.assertEquals(Duration.ofSeconds(5), options.getRetrySettings().getInitialRpcTimeoutDuration());
+        Assertions.assertEquals(Duration.ofSeconds(5), options.getRetrySettings().getMaxRpcTimeoutDuration());
+        Assertions.assertEquals(ENDPOINT, options.getHost());
+    }
+
+    @Test
+    void testGrpcTransportKeepsDefaultsForInfiniteTimeouts() {
+        final var config = newConfig();
+        config.setUseGrpc(true);
+        config.setReadTimeOut(Duration.ZERO);
+
+        final var options = CloudStorageClient.createStorageOptions(config);
+
+        Assertions.assertEquals(StorageOptions.getDefaultRetrySettings(), options.getRetrySettings());
+    }
+
+    @Test
+    void testDefaultEndpoint() {
+        final var config = newConfig();
+        config.setEndpoint(null);
+
+        Assertions.assertEquals("https://storage.googleapis.com",
+            CloudStorageClient.createStorageOptions(config).getHost());
+    }
+
+    private static CloudStorageConnectionConfig newConfig() {
+        final var config = new CloudStorageConnectionConfig("/", NoCredentials.getInstance());
+        config.setProjectId("project");
+        config.setEndpoint(ENDPOINT);
+        config.setConnectionTimeOut(Duration.ofSeconds(2));
+        config.setReadTimeOut(Duration.ofSeconds(3));
+        return config;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.paging.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BlobWriteSession;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.ComposeRequest;
+import com.google.cloud.storage.StorageException;
+
+/**
+ * Tests the streaming write path of {@link CloudStorageFileSystemProvider},
+ * which writes small data with a single request and larger data into a
+ * resumable upload session through a {@link CloudStorageOutputStream}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageOutputStreamTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final Map<String, byte[]> m_committed = new ConcurrentHashMap<>();
+
+    private volatile boolean m_failWrites;
+
+    private volatile boolean m_corruptUploads;
+
+    private CloudStorageFileSystem m_fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        m_fileSystem = newFileSystem(true);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        m_fileSystem.close();
+    }
+
+    @Test
+    void testClosingCommitsBlob() throws IOException {
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        try (final var out = Files.newOutputStream(path)) {
+            out.write("hello ".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(m_committed.isEmpty(), "blob committed before the stream is closed");
+            out.write('w');
+            out.write("orld".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Assertions.assertArrayEquals("hello world".getBytes(StandardCharsets.UTF_8), m_committed.get("file"));
+    }
+
+    @Test
+    void testLargeDataIsVerifiedBeforeReplacingBlob() throws IOException {
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        try (final var out = Files.newOutputStream(path)) {
+            out.write(new byte[CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT]);
+            out.write(1);
+        }
+
+        // the temporary blob of the session is gone
+        Assertions.assertEquals(List.of("file"), List.copyOf(m_committed.keySet()));
+        Assertions.assertEquals(CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT + 1, m_committed.get("file").length);
+    }
+
+    @Test
+    void testCorruptUploadLeavesBlobUnchanged() throws IOException {
+        final var previous = new byte[]{1, 2, 3};
+        m_committed.put("file", previous);
+        m_corruptUploads = true;
+
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        final var out = Files.newOutputStream(path);
+        out.write(new byte[CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT + 1]);
+        Assertions.assertThrows(IOException.class, out::close);
+
+        Assertions.assertEquals(List.of("file"), List.copyOf(m_committed.keySet()));
+        Assertions.assertSame(previous, m_committed.get("file"));
+    }
+
+    @Test
+    void testCorruptSmallUploadIsRejected() throws IOException {
+        m_corruptUploads = true;
+
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        final var out = Files.newOutputStream(path);
+        out.write(1);
+        Assertions.assertThrows(IOException.class, out::close);
+
+        Assertions.assertTrue(m_committed.isEmpty());
+    }
+
+    @Test
+    void testFailedWriteAbandonsUpload() throws IOException {
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        final var out = Files.newOutputStream(path);
+        out.write(new byte[CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT]);
+        m_failWrites = true;
+
+        Assertions.assertThrows(IOException.class, () -> out.write(new byte[]{2, 3}));
+        Assertions.assertThrows(IOException.class, () -> out.write(4));
+        out.close();
+
+        Assertions.assertTrue(m_committed.isEmpty(), "a failed upload must not create a blob");
+    }
+
+    @Test
+    void testOpenOptionsAreChecked() {
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        Assertions.assertThrows(NoSuchFileException.class,
+                () -> Files.newOutputStream(path, StandardOpenOption.WRITE));
+        Assertions.assertThrows(NoSuchFileException.class,
+                () -> Files.newOutputStream(m_fileSystem.getPath("/" + BUCKET + "/missing/file")));
+        Assertions.assertTrue(m_committed.isEmpty());
+    }
+
+    @Test
+    void testCreateNewFailsOnceCommitted() throws IOException {
+        // only the sessions of the stand-in storage return the written metadata,
+        // which are used without temporary blob if checksums are not verified
+        m_fileSystem.close();
+        m_fileSystem = newFileSystem(false);
+
+        final var path = m_fileSystem.getPath("/" + BUCKET + "/file");
+        try (final var out = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            out.write(new byte[CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT + 1]);
+        }
+
+        // the committed blob is known from the attribute cache
+        Assertions.assertThrows(FileAlreadyExistsException.class,
+                () -> Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    private CloudStorageFileSystem newFileSystem(final boolean verifyChecksums) {
+        final var config = new CloudStorageConnectionConfig("/", null);
+        config.setVerifyChecksums(verifyChecksums);
+        return new CloudStorageFileSystem(config, 0, new CloudStorageClient(config, newStorage()));
+    }
+
+    private Storage newStorage() {
+        return (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(), new Class<?>[]{Storage.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                // no blobs are listed: the bucket exists, nothing else does
+                case "list" -> new EmptyPage();
+                case "create" -> create((BlobInfo)args[0], (byte[])args[1]);
+                case "blobWriteSession" -> new WriteSession((BlobInfo)args[0]);
+                case "compose" -> compose((ComposeRequest)args[0]);
+                case "delete" -> delete((List<?>)args[0]);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /**
+     * Creates a blob, rejecting content which does not match the sent checksum.
+     */
+    private Blob create(final BlobInfo info, final byte[] content) {
+        if (info.getCrc32c() != null && !info.getCrc32c().equals(checksum(content))) {
+            throw new StorageException(400, "checksum mismatch");
+        }
+        m_committed.put(info.getName(), content);
+        return null;
+    }
+
+    private Blob compose(final ComposeRequest request) {
+        final var source = request.getSourceBlobs().get(0).getName();
+        m_committed.put(request.getTarget().getName(), m_committed.get(source));
+        return null;
+    }
+
+    private List<Boolean> delete(final List<?> blobIds) {
+        blobIds.forEach(id -> m_committed.remove(((BlobId)id).getName()));
+        return blobIds.stream().map(id -> Boolean.TRUE).toList();
+    }
+
+    private String checksum(final byte[] content) {
+        final var crc = new CRC32C();
+        crc.update(content);
+        if (m_corruptUploads) {
+            crc.update(0);
+        }
+        return CloudStorageChecksum.toBase64(crc);
+    }
+
+    private final class WriteSession implements BlobWriteSession {
+
+        private final BlobInfo m_info;
+
+        private final SettableApiFuture<BlobInfo> m_result = SettableApiFuture.create();
+
+        private WriteSession(final BlobInfo info) {
+            m_info = info;
+        }
+
+        @Override
+        public WritableByteChannel open() {
+            return new WritableByteChannel() {
+
+                private final ByteArrayOutputStream m_content = new ByteArrayOutputStream();
+
+                private boolean m_open = true;
+
+                @Override
+                public int write(final ByteBuffer src) {
+                    if (m_failWrites) {
+                        throw new StorageException(503, "unavailable");
+                    }
+                    final var bytes = new byte[src.remaining()];
+                    src.get(bytes);
+                    m_content.writeBytes(bytes);
+                    return bytes.length;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return m_open;
+                }
+
+                @Override
+                public void close() {
+                    m_open = false;
+                    final var content = m_content.toByteArray();
+                    m_committed.put(m_info.getName(), content);
+                    m_result.set(m_info.toBuilder() //
+                        .setGeneration(1L) //
+                        .setSize((long)content.length) //
+                        .setCrc32c(checksum(content)) //
+                        .build());
+                }
+            };
+        }
+
+        @Override
+        public ApiFuture<BlobInfo> getResult() {
+            return m_result;
+        }
+    }
+
+    private static final class EmptyPage implements Page<Blob> {
+
+        @Override
+        public boolean hasNextPage() {
+            return false;
+        }
+
+        @Override
+        public String getNextPageToken() {
+            return null;
+        }
+
+        @Override
+        public Page<Blob> getNextPage() {
+            return null;
+        }
+
+        @Override
+        public Iterable<Blob> iterateAll() {
+            return List.of();
+        }
+
+        @Override
+        public Iterable<Blob> getValues() {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.OAuth2Credentials;
+import com.google.auth.oauth2.UserCredentials;
+import com.google.cloud.storage.Storage;
+
+/**
+ * Tests the sharing and reference counting of {@link CloudStorageServicePool}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageServicePoolTest {
+
+    @Test
+    void testStorageIsSharedAndClosedAfterLastRelease() {
+        final var config = new CloudStorageConnectionConfig("/", new TokenCredentials("token"));
+        final var closed = new AtomicInteger();
+        final var first = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        final var second = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        Assertions.assertSame(first.getStorage(), second.getStorage());
+
+        first.release();
+        first.release();
+        Assertions.assertEquals(0, closed.get(), "Storage closed while still in use");
+        second.release();
+        Assertions.assertEquals(1, closed.get(), "Storage not closed after the last release");
+    }
+
+    @Test
+    void testReleaseAfterTokenRefresh() {
+        final var credentials = new TokenCredentials("token");
+        final var config = new CloudStorageConnectionConfig("/", credentials);
+        final var closed = new AtomicInteger();
+        final var first = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        final var second = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+
+        // changes equals and hashCode of the credentials, as a token refresh does
+        credentials.m_token = "refreshed";
+        final var third = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        Assertions.assertSame(first.getStorage(), third.getStorage());
+
+        first.release();
+        second.release();
+        Assertions.assertEquals(0, closed.get(), "Storage closed while still in use");
+        third.release();
+        Assertions.assertEquals(1, closed.get(), "Storage not closed after the last release");
+    }
+
+    @Test
+    void testClosedStorageIsNotReused() {
+        final var config = new CloudStorageConnectionConfig("/", new TokenCredentials("token"));
+        final var closed = new AtomicInteger();
+        final var first = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        first.release();
+        final var second = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        Assertions.assertNotSame(first.getStorage(), second.getStorage());
+        second.release();
+        Assertions.assertEquals(2, closed.get());
+    }
+
+    @Test
+    void testEqualCredentialsOfUnknownKindAreNotShared() {
+        final var closed = new AtomicInteger();
+        final var first = CloudStorageServicePool
+            .acquire(new CloudStorageConnectionConfig("/", new TokenCredentials("token")), c -> newStorage(closed));
+        final var second = CloudStorageServicePool
+            .acquire(new CloudStorageConnectionConfig("/", new TokenCredentials("token")), c -> newStorage(closed));
+        Assertions.assertNotSame(first.getStorage(), second.getStorage());
+        first.release();
+        second.release();
+        Assertions.assertEquals(2, closed.get());
+    }
+
+    @Test
+    void testCredentialsOfSameAccountAreShared() {
+        final var closed = new AtomicInteger();
+        final var first = CloudStorageServicePool.acquire(
+            new CloudStorageConnectionConfig("/", newUserCredentials("refresh")), c -> newStorage(closed));
+        final var second = CloudStorageServicePool.acquire(
+            new CloudStorageConnectionConfig("/", newUserCredentials("refresh")), c -> newStorage(closed));
+        final var other = CloudStorageServicePool.acquire(
+            new CloudStorageConnectionConfig("/", newUserCredentials("other")), c -> newStorage(closed));
+        Assertions.assertSame(first.getStorage(), second.getStorage());
+        Assertions.assertNotSame(first.getStorage(), other.getStorage());
+        first.release();
+        second.release();
+        other.release();
+        Assertions.assertEquals(2, closed.get());
+    }
+
+    @Test
+    void testCredentialsWithSameAccessTokenAreShared() {
+        final var closed = new AtomicInteger();
+        final var first = CloudStorageServicePool.acquire(new CloudStorageConnectionConfig("/",
+            OAuth2Credentials.create(new AccessToken("token", null))), c -> newStorage(closed));
+        final var second = CloudStorageServicePool.acquire(new CloudStorageConnectionConfig("/",
+            OAuth2Credentials.create(new AccessToken("token", null))), c -> newStorage(closed));
+        Assertions.assertSame(first.getStorage(), second.getStorage());
+        first.release();
+        second.release();
+        Assertions.assertEquals(1, closed.get());
+    }
+
+    @Test
+    void testTransportAndEndpointAreNotShared() {
+        final var closed = new AtomicInteger();
+        final var config = new CloudStorageConnectionConfig("/", newUserCredentials("refresh"));
+        final var grpcConfig = new CloudStorageConnectionConfig("/", newUserCredentials("refresh"));
+        grpcConfig.setUseGrpc(true);
+        final var endpointConfig = new CloudStorageConnectionConfig("/", newUserCredentials("refresh"));
+        endpointConfig.setEndpoint("https://storage.example.com");
+        final var projectConfig = new CloudStorageConnectionConfig("/", newUserCredentials("refresh"));
+        projectConfig.setProjectId("other-project");
+
+        final var first = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        final var grpc = CloudStorageServicePool.acquire(grpcConfig, c -> newStorage(closed));
+        final var endpoint = CloudStorageServicePool.acquire(endpointConfig, c -> newStorage(closed));
+        final var project = CloudStorageServicePool.acquire(projectConfig, c -> newStorage(closed));
+        Assertions.assertNotSame(first.getStorage(), grpc.getStorage());
+        Assertions.assertNotSame(first.getStorage(), endpoint.getStorage());
+        Assertions.assertNotSame(first.getStorage(), project.getStorage());
+        first.release();
+        grpc.release();
+        endpoint.release();
+        project.release();
+        Assertions.assertEquals(4, closed.get());
+    }
+
+    @Test
+    void testStorageIsCreatedOutsideOfLock() throws Exception {
+        final var closed = new AtomicInteger();
+        final var creating = new CountDownLatch(1);
+        final var proceed = new CountDownLatch(1);
+        final var slowConfig = new CloudStorageConnectionConfig("/", newUserCredentials("slow"));
+        final var executor = Executors.newFixedThreadPool(2);
+        try {
+            final var slow = executor.submit(() -> CloudStorageServicePool.acquire(slowConfig, c -> {
+                creating.countDown();
+                await(proceed);
+                return newStorage(closed);
+            }));
+            Assertions.assertTrue(creating.await(10, TimeUnit.SECONDS));
+            final var waiting = executor.submit(() -> CloudStorageServicePool.acquire(slowConfig, c -> {
+                throw new AssertionError("Storage created twice");
+            }));
+
+            // another configuration is not blocked by the slow creation
+            final var other = CloudStorageServicePool
+                .acquire(new CloudStorageConnectionConfig("/", newUserCredentials("fast")), c -> newStorage(closed));
+            Assertions.assertFalse(waiting.isDone(), "Storage returned before it was created");
+            other.release();
+
+            proceed.countDown();
+            final var first = slow.get(10, TimeUnit.SECONDS);
+            final var second = waiting.get(10, TimeUnit.SECONDS);
+            Assertions.assertSame(first.getStorage(), second.getStorage());
+            first.release();
+            second.release();
+            Assertions.assertEquals(2, closed.get());
+        } finally {
+            proceed.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailedCreationIsNotPooled() {
+        final var config = new CloudStorageConnectionConfig("/", newUserCredentials("failing"));
+        Assertions.assertThrows(IllegalStateException.class, () -> CloudStorageServicePool.acquire(config, c -> {
+            throw new IllegalStateException("failed");
+        }));
+        final var closed = new AtomicInteger();
+        final var lease = CloudStorageServicePool.acquire(config, c -> newStorage(closed));
+        Assertions.assertNotNull(lease.getStorage());
+        lease.release();
+        Assertions.assertEquals(1, closed.get());
+    }
+
+    private static UserCredentials newUserCredentials(final String refreshToken) {
+        return UserCredentials.newBuilder() //
+            .setClientId("client") //
+            .setClientSecret("secret") //
+            .setRefreshToken(refreshToken) //
+            .build();
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Storage newStorage(final AtomicInteger closed) {
+        return (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(), new Class<?>[]{Storage.class},
+            (proxy, method, args) -> {
+                if ("close".equals(method.getName())) {
+                    closed.incrementAndGet();
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /**
+     * Credentials whose equality depends on a mutable token, like OAuth2
+     * credentials.
+     */
+    private static final class TokenCredentials extends Credentials {
+
+        private static final long serialVersionUID = 1L;
+
+        private String m_token;
+
+        TokenCredentials(final String token) {
+            m_token = token;
+        }
+
+        @Override
+        public String getAuthenticationType() {
+            return "test";
+        }
+
+        @Override
+        public Map<String, List<String>> getRequestMetadata(final URI uri) throws IOException {
+            return Map.of("Authorization", List.of("Bearer " + m_token));
+        }
+
+        @Override
+        public boolean hasRequestMetadata() {
+            return true;
+        }
+
+        @Override
+        public boolean hasRequestMetadataOnly() {
+            return true;
+        }
+
+        @Override
+        public void refresh() throws IOException {
+            // nothing to refresh
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof TokenCredentials other && m_token.equals(other.m_token);
+        }
+
+        @Override
+        public int hashCode() {
+            return m_token.hashCode();
+        }
+    }
+}
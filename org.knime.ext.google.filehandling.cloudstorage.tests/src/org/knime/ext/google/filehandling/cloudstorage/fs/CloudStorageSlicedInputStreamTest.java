@@ -0,0 +1,141 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link CloudStorageSlicedInputStream} hands out concurrently
+ * downloaded slices in order.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageSlicedInputStreamTest {
+
+    private static final int SIZE = 3 * CloudStorageSlicedInputStream.SLICE_SIZE + 1000;
+
+    private ExecutorService m_executor;
+
+    @BeforeEach
+    void setUp() {
+        m_executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m_executor.shutdownNow();
+    }
+
+    @Test
+    void testSlicesAreReadInOrder() throws IOException {
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        final CloudStorageSlicedInputStream.RangeReader reader = (position, length) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // later slices complete first
+                Thread.sleep((SIZE - position) / CloudStorageSlicedInputStream.SLICE_SIZE * 50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return ByteBuffer.wrap(content(position, length));
+        };
+
+        try (InputStream in = new CloudStorageSlicedInputStream(reader, SIZE, 3, m_executor)) {
+            Assertions.assertEquals(Byte.toUnsignedInt(content(0, 1)[0]), in.read());
+            Assertions.assertArrayEquals(content(1, SIZE - 1), in.readAllBytes());
+            Assertions.assertEquals(-1, in.read());
+        }
+        Assertions.assertTrue(maxInFlight.get() <= 3, "At most 3 slices are downloaded ahead");
+    }
+
+    @Test
+    void testFailedSliceIsReported() throws IOException {
+        final CloudStorageSlicedInputStream.RangeReader reader = (position, length) -> {
+            if (position > 0) {
+                throw new IOException("slice at " + position);
+            }
+            return ByteBuffer.wrap(content(position, length));
+        };
+
+        try (InputStream in = new CloudStorageSlicedInputStream(reader, SIZE, 2, m_executor)) {
+            final var e = Assertions.assertThrows(IOException.class, in::readAllBytes);
+            Assertions.assertEquals("slice at " + CloudStorageSlicedInputStream.SLICE_SIZE, e.getMessage());
+        }
+    }
+
+    @Test
+    void testReadAfterCloseFails() throws IOException {
+        final InputStream in = new CloudStorageSlicedInputStream(
+            (position, length) -> ByteBuffer.wrap(content(position, length)), SIZE, 2, m_executor);
+        in.close();
+        Assertions.assertThrows(IOException.class, in::read);
+    }
+
+    /**
+     * @return bytes which depend on their position in the blob.
+     */
+    private static byte[] content(final long position, final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final long pos = position + i;
+            bytes[i] = (byte)(pos ^ (pos >>> 8) ^ (pos >>> 16));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+
+/**
+ * Tests the per-file failure handling and progress accounting of the bulk
+ * transfers of {@link CloudStorageClient}, and the resumption of large
+ * uploads.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageTransferTest {
+
+    private static final String BUCKET = "bucket";
+
+    private final List<String> m_uploaded = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<long[]> m_progress = Collections.synchronizedList(new ArrayList<>());
+
+    private Path m_tempDir;
+
+    private CloudStorageClient m_client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        m_tempDir = Files.createTempDirectory("knime-gcs-transfer-test");
+        final var config = new CloudStorageConnectionConfig("/", null);
+        config.setMaxConcurrentRequests(2);
+        m_client = new CloudStorageClient(config, newStorage());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        m_client.close();
+        try (final var files = Files.list(m_tempDir)) {
+            for (final var file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(m_tempDir);
+    }
+
+    @Test
+    void testFailedUploadDoesNotStopOthers() throws IOException {
+        final var failing = new CloudStorageTransfer(createFile("b", 3), BUCKET, "fail/b");
+        final var transfers = List.of( //
+                new CloudStorageTransfer(createFile("a", 5), BUCKET, "a"), //
+                failing, //
+                new CloudStorageTransfer(createFile("c", 7), BUCKET, "c"));
+
+        final var failures = m_client.uploadFiles(transfers, this::progress);
+
+        Assertions.assertEquals(Set.of(failing), failures.keySet());
+        Assertions.assertTrue(failures.get(failing).getMessage().contains("rejected"),
+                failures.get(failing).getMessage());
+        Assertions.assertEquals(Set.of("a", "c"), Set.copyOf(m_uploaded));
+        assertProgress(2, 1, 3, 12);
+    }
+
+    @Test
+    void testFailedDownloadsAreReported() throws IOException {
+        final var transfers = List.of( //
+                new CloudStorageTransfer(m_tempDir.resolve("x"), BUCKET, "missing/x"), //
+                new CloudStorageTransfer(m_tempDir.resolve("y"), BUCKET, "missing/y"));
+
+        final var failures = m_client.downloadFiles(transfers, this::progress);
+
+        Assertions.assertEquals(Set.copyOf(transfers), failures.keySet());
+        Assertions.assertFalse(Files.exists(m_tempDir.resolve("x")));
+        Assertions.assertFalse(Files.exists(m_tempDir.resolve("y")));
+        assertProgress(0, 2, 2, 0);
+    }
+
+    @Test
+    void testNoTransfers() throws IOException {
+        Assertions.assertTrue(m_client.uploadFiles(List.of(), this::progress).isEmpty());
+        Assertions.assertTrue(m_progress.isEmpty());
+        Assertions.assertTrue(m_client.uploadFiles(List.of(), null).isEmpty());
+    }
+
+    @Test
+    void testFailureWaitsForRunningTasks() {
+        final var running = new AtomicInteger();
+        final var slowStarted = new CountDownLatch(1);
+        final var storage = (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(),
+            new Class<?>[]{Storage.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("delete")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                running.incrementAndGet();
+                try {
+                    if (args[1].equals("slow")) {
+                        slowStarted.countDown();
+                        // only returns once interrupted by the cancellation
+                        new CountDownLatch(1).await();
+                    } else if (args[1].equals("fail")) {
+                        slowStarted.await(10, TimeUnit.SECONDS);
+                        throw new IllegalStateException("broken batch");
+                    }
+                    return true;
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        final var config = new CloudStorageConnectionConfig("/", null);
+        config.setUseGrpc(true); // deletes the blobs of a batch one by one
+        config.setMaxConcurrentRequests(2);
+
+        // the first batch of 100 names fails while the second one is still running
+        final var names = new ArrayList<String>();
+        names.add("fail");
+        IntStream.range(1, 100).forEach(i -> names.add("blob" + i));
+        names.add("slow");
+        final var client = new CloudStorageClient(config, storage);
+        try {
+            Assertions.assertThrows(IllegalStateException.class, () -> client.deleteBlobs(BUCKET, names.iterator()));
+            Assertions.assertEquals(0, running.get(), "a delete is still running after the failure was reported");
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    void testFailedWriteOfLargeUploadIsResumed() throws IOException {
+        final var received = new ByteArrayOutputStream();
+        final var writes = new AtomicInteger();
+        final List<BlobInfo> targets = new ArrayList<>();
+        final var storage = (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(),
+            new Class<?>[]{Storage.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "writer" -> {
+                    targets.add((BlobInfo)args[0]);
+                    yield newWriteChannel(received, writes);
+                }
+                case "get" -> null;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        final var config = new CloudStorageConnectionConfig("/", null);
+        final var client = new CloudStorageClient(config, storage);
+        final var file = createFile("large", CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT + 10);
+        try {
+            client.insertBlob(BUCKET, "large", file);
+        } finally {
+            client.close();
+        }
+
+        // one upload session, in which only the failed second write is repeated
+        Assertions.assertEquals(1, targets.size());
+        Assertions.assertEquals(3, writes.get());
+        final var content = Files.readAllBytes(file);
+        Assertions.assertArrayEquals(content, received.toByteArray());
+        final var crc = new CRC32C();
+        crc.update(content);
+        Assertions.assertEquals(CloudStorageChecksum.toBase64(crc), targets.get(0).getCrc32c());
+    }
+
+    /**
+     * Creates a write channel whose second write fails after part of the data
+     * has been received. Restoring a captured state drops the data received
+     * since then.
+     */
+    @SuppressWarnings("unchecked")
+    private static WriteChannel newWriteChannel(final ByteArrayOutputStream received, final AtomicInteger writes) {
+        final var open = new AtomicBoolean(true);
+        return (WriteChannel)Proxy.newProxyInstance(WriteChannel.class.getClassLoader(),
+            new Class<?>[]{WriteChannel.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "write" -> {
+                    final var buffer = (ByteBuffer)args[0];
+                    final var bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    if (writes.incrementAndGet() == 2) {
+                        received.write(bytes, 0, bytes.length / 2);
+                        throw new StorageException(503, "unavailable");
+                    }
+                    received.writeBytes(bytes);
+                    yield bytes.length;
+                }
+                case "capture" -> {
+                    final var size = received.size();
+                    yield (RestorableState<WriteChannel>)() -> {
+                        final var kept = Arrays.copyOf(received.toByteArray(), size);
+                        received.reset();
+                        received.writeBytes(kept);
+                        return newWriteChannel(received, writes);
+                    };
+                }
+                case "isOpen" -> open.get();
+                case "close" -> {
+                    open.set(false);
+                    yield null;
+                }
+                case "setChunkSize" -> null;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    private void progress(final int completed, final int failed, final int total, final long bytes) {
+        m_progress.add(new long[]{completed, failed, total, bytes});
+    }
+
+    /**
+     * Checks that the listener has been notified once per file, with growing
+     * counts, and that the last notification reports the given totals.
+     */
+    private void assertProgress(final int completed, final int failed, final int total, final long bytes) {
+        Assertions.assertEquals(total, m_progress.size());
+        for (var i = 0; i < m_progress.size(); i++) {
+            final var event = m_progress.get(i);
+            Assertions.assertEquals(i + 1, event[0] + event[1]);
+            Assertions.assertEquals(total, event[2]);
+        }
+        Assertions.assertArrayEquals(new long[]{completed, failed, total, bytes},
+                m_progress.get(m_progress.size() - 1));
+    }
+
+    private Path createFile(final String name, final int size) throws IOException {
+        return Files.write(m_tempDir.resolve(name), "x".repeat(size).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return a storage which accepts single request uploads except below
+     *         "fail/" and does not know any blobs.
+     */
+    private Storage newStorage() {
+        return (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(), new Class<?>[]{Storage.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "create":
+                        final var name = ((BlobInfo)args[0]).getName();
+                        if (name.startsWith("fail/")) {
+                            throw new StorageException(400, "rejected " + name);
+                        }
+                        m_uploaded.add(name);
+                        return null;
+                    case "get":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.CopyRequest;
+import com.google.cloud.storage.StorageException;
+
+/**
+ * Tests that {@link CloudStorageTreeWalker} serves the listings of a
+ * depth-first walk from a single flat listing and defers the deletes and
+ * copies of listed files. The stand-in storage rejects all copies.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageTreeWalkerTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final List<String> NAMES = List.of("a/", "a/b/y", "a/b/z", "a/c/d/e", "a/f", "a/x", "b");
+
+    private static final Filter<Path> ALL = p -> true;
+
+    private final List<String> m_listedPrefixes = new ArrayList<>();
+
+    private final Set<String> m_deleted = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, String> m_copies = new ConcurrentHashMap<>();
+
+    private CloudStorageFileSystem m_fileSystem;
+
+    private CloudStorageTreeWalker m_walker;
+
+    @BeforeEach
+    void setUp() {
+        final var config = new CloudStorageConnectionConfig("/", null);
+        config.setUseGrpc(true); // deletes the blobs of a batch one by one
+        final var storage = (Storage)Proxy.newProxyInstance(Storage.class.getClassLoader(),
+            new Class<?>[]{Storage.class}, (proxy, method, args) -> {
+                if (method.getName().equals("copy")) {
+                    final var request = (CopyRequest)args[0];
+                    m_copies.put(request.getSource().getName(), request.getTarget().getName());
+                    throw new StorageException(400, "denied");
+                }
+                if (!method.getName().equals("delete")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                final var name = (String)args[1];
+                if (name.endsWith("locked")) {
+                    throw new StorageException(403, "cannot delete " + name);
+                }
+                m_deleted.add(name);
+                return true;
+            });
+        m_fileSystem = new CloudStorageFileSystem(config, 0, new CloudStorageClient(config, storage));
+        m_walker = new CloudStorageTreeWalker(m_fileSystem, this::list);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        m_fileSystem.close();
+    }
+
+    @Test
+    void testWalkUsesOneFlatListing() throws IOException {
+        m_walker.listingOpened(dir(""));
+
+        final List<String> walked = new ArrayList<>();
+        walk(dir("a/"), ALL, walked);
+
+        Assertions.assertEquals(List.of("a/b/", "a/b/y", "a/b/z", "a/c/", "a/c/d/", "a/c/d/e", "a/f", "a/x"), walked);
+        Assertions.assertEquals(List.of("a/"), m_listedPrefixes);
+
+        final var implied = m_fileSystem.getCachedAttributes(dir("a/c/d/"));
+        Assertions.assertTrue(implied.isPresent(), "implied directory not cached");
+        Assertions.assertTrue(implied.get().isDirectory());
+        Assertions.assertTrue(m_fileSystem.getCachedAttributes(m_fileSystem.getPath("/bucket/a/b/y")).isPresent());
+    }
+
+    @Test
+    void testNoWalkWithoutOpenParentListing() throws IOException {
+        Assertions.assertNull(m_walker.listChildren(dir("a/"), ALL));
+
+        final var parent = m_walker.listingOpened(dir(""));
+        m_walker.listingClosed(parent);
+        Assertions.assertNull(m_walker.listChildren(dir("a/"), ALL));
+        Assertions.assertTrue(m_listedPrefixes.isEmpty());
+    }
+
+    @Test
+    void testSubdirectoriesWhichAreNotListedAreSkipped() throws IOException {
+        m_walker.listingOpened(dir(""));
+
+        Assertions.assertEquals(List.of("a/b/", "a/c/", "a/f", "a/x"), names(m_walker.listChildren(dir("a/"), ALL)));
+    }
+
+    @Test
+    void testLateListingIsNotServed() throws IOException {
+        m_walker.listingOpened(dir(""));
+
+        final var children = m_walker.listChildren(dir("a/"), ALL);
+        Assertions.assertEquals("a/b/", children.next().getBlobName());
+        // moving on skips the names below a/b/
+        Assertions.assertEquals("a/c/", children.next().getBlobName());
+
+        Assertions.assertNull(m_walker.listChildren(dir("a/b/"), ALL));
+        Assertions.assertEquals(List.of("a/f", "a/x"), names(children));
+    }
+
+    @Test
+    void testFilterIsApplied() throws IOException {
+        m_walker.listingOpened(dir(""));
+
+        final List<String> walked = new ArrayList<>();
+        walk(dir("a/"), p -> ((CloudStoragePath)p).isDirectory() || p.getFileName().toString().equals("z"), walked);
+
+        Assertions.assertEquals(List.of("a/b/", "a/b/z", "a/c/", "a/c/d/"), walked);
+    }
+
+    @Test
+    void testDeletesAreDeferredUntilListingIsClosed() throws IOException {
+        final var listing = m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertTrue(m_walker.deferDelete(file("a/f")));
+        Assertions.assertTrue(m_walker.deferDelete(file("a/x")));
+        m_walker.awaitDeferred(file("a/y"));
+        Assertions.assertTrue(m_deleted.isEmpty());
+
+        m_walker.listingClosed(listing);
+        Assertions.assertEquals(Set.of("a/f", "a/x"), m_deleted);
+    }
+
+    @Test
+    void testDeferredDeleteIsAwaitedOnAccess() throws IOException {
+        m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertTrue(m_walker.deferDelete(file("a/x")));
+        m_walker.awaitDeferred(file("a/x"));
+        Assertions.assertEquals(Set.of("a/x"), m_deleted);
+
+        Assertions.assertTrue(m_walker.deferDelete(file("a/f")));
+        // accessing the directory waits for the deletes of its files
+        m_walker.awaitDeferred(dir("a/"));
+        Assertions.assertEquals(Set.of("a/f", "a/x"), m_deleted);
+    }
+
+    @Test
+    void testDeletesAreBatched() throws IOException {
+        final var listing = m_walker.listingOpened(dir("a/"));
+        for (var i = 0; i < 250; i++) {
+            Assertions.assertTrue(m_walker.deferDelete(file("a/" + i)));
+        }
+        m_walker.listingClosed(listing);
+        Assertions.assertEquals(250, m_deleted.size());
+    }
+
+    @Test
+    void testOnlyFilesOfListedDirectoriesAreDeferred() throws IOException {
+        m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertFalse(m_walker.deferDelete(file("b")));
+        Assertions.assertFalse(m_walker.deferDelete(file("a/b/y")));
+        Assertions.assertFalse(m_walker.deferDelete(dir("a/b/")));
+    }
+
+    @Test
+    void testFailedDeletesAreReported() throws IOException {
+        final var listing = m_walker.listingOpened(dir("a/"));
+        m_walker.deferDelete(file("a/f"));
+        m_walker.deferDelete(file("a/locked"));
+
+        final var e = Assertions.assertThrows(IOException.class, () -> m_walker.listingClosed(listing));
+        Assertions.assertEquals(1, e.getSuppressed().length);
+        Assertions.assertTrue(e.getSuppressed()[0].getMessage().contains("/bucket/a/locked"),
+            e.getSuppressed()[0].getMessage());
+        Assertions.assertEquals(Set.of("a/f"), m_deleted);
+    }
+
+    @Test
+    void testFailedCopiesAreReported() throws IOException {
+        final var listing = m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertTrue(m_walker.deferCopy(file("a/f"), file("c/f")));
+        Assertions.assertTrue(m_walker.deferCopy(file("a/x"), file("c/x")));
+
+        final var e = Assertions.assertThrows(IOException.class, () -> m_walker.listingClosed(listing));
+        Assertions.assertEquals(Map.of("a/f", "c/f", "a/x", "c/x"), m_copies);
+        Assertions.assertEquals(2, e.getSuppressed().length);
+        Assertions.assertTrue(e.getSuppressed()[0].getMessage().contains("/bucket/a/f -> /bucket/c/f"),
+            e.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void testDeferredCopyIsAwaitedOnAccess() throws IOException {
+        m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertTrue(m_walker.deferCopy(file("a/f"), file("c/f")));
+        m_walker.awaitDeferred(file("c/x"));
+        // accessing the target directory waits for the copy
+        Assertions.assertThrows(IOException.class, () -> m_walker.awaitDeferred(dir("c/")));
+    }
+
+    @Test
+    void testSourceOfFailedCopyIsNotDeleted() throws IOException {
+        m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertTrue(m_walker.deferCopy(file("a/f"), file("c/f")));
+        // moving a file deletes it once it has been copied
+        Assertions.assertThrows(IOException.class, () -> m_walker.deferDelete(file("a/f")));
+        Assertions.assertTrue(m_deleted.isEmpty());
+    }
+
+    @Test
+    void testOnlyFileCopiesAreDeferred() throws IOException {
+        m_walker.listingOpened(dir("a/"));
+
+        Assertions.assertFalse(m_walker.deferCopy(dir("a/b/"), dir("c/b/")));
+        Assertions.assertFalse(m_walker.deferCopy(file("b"), file("c/b")));
+        Assertions.assertTrue(m_copies.isEmpty());
+    }
+
+    /**
+     * Walks the given directory depth-first, like
+     * {@link java.nio.file.Files#walkFileTree}.
+     */
+    @SuppressWarnings("resource")
+    private void walk(final CloudStoragePath dir, final Filter<Path> filter, final List<String> walked)
+            throws IOException {
+        final var children = m_walker.listChildren(dir, filter);
+        Assertions.assertNotNull(children, "listing of " + dir + " not served from the walk");
+        while (children.hasNext()) {
+            final var child = children.next();
+            walked.add(child.getBlobName());
+            if (child.isDirectory()) {
+                walk(child, filter, walked);
+            }
+        }
+    }
+
+    private static List<String> names(final Iterator<CloudStoragePath> paths) {
+        final List<String> names = new ArrayList<>();
+        paths.forEachRemaining(p -> names.add(p.getBlobName()));
+        return names;
+    }
+
+    private CloudStoragePath file(final String blobName) {
+        return m_fileSystem.getPath("/" + BUCKET + "/" + blobName);
+    }
+
+    private CloudStoragePath dir(final String blobName) {
+        return m_fileSystem.getPath("/" + BUCKET + "/" + blobName).toDirectoryPath();
+    }
+
+    private Iterator<BlobInfo> list(final String bucket, final String prefix) {
+        Assertions.assertEquals(BUCKET, bucket);
+        m_listedPrefixes.add(prefix);
+        return NAMES.stream() //
+            .filter(name -> name.startsWith(prefix)) //
+            .map(name -> BlobInfo.newBuilder(bucket, name).setSize(1L).build()) //
+            .iterator();
+    }
+}
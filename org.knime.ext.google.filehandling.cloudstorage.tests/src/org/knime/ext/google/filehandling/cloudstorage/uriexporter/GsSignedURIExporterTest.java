@@ -0,0 +1,200 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.uriexporter;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.knime.cloud.core.filehandling.signedurl.SignedUrlConfig;
+import org.knime.ext.google.filehandling.cloudstorage.fs.CloudStorageConnectionConfig;
+import org.knime.ext.google.filehandling.cloudstorage.fs.CloudStorageFileSystem;
+import org.knime.filehandling.core.connections.FSPath;
+
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+
+/**
+ * Tests the signed URLs of {@link GsSignedURIExporter}. The signatures are
+ * verified with the public key of the service account, following the V4
+ * signing process independently of the implementation.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GsSignedURIExporterTest {
+
+    private static final String CLIENT_EMAIL = "signer@project.iam.gserviceaccount.com";
+
+    private KeyPair m_keyPair;
+
+    private CloudStorageFileSystem m_fileSystem;
+
+    @BeforeEach
+    void setUp() throws GeneralSecurityException {
+        final var generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        m_keyPair = generator.generateKeyPair();
+        final var credentials = ServiceAccountCredentials.newBuilder() //
+            .setClientEmail(CLIENT_EMAIL) //
+            .setPrivateKey(m_keyPair.getPrivate()) //
+            .setPrivateKeyId("key") //
+            .setProjectId("project") //
+            .build();
+        m_fileSystem = new CloudStorageFileSystem(newConfig(credentials), 0);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        m_fileSystem.close();
+    }
+
+    @Test
+    void testToUrisKeepsOrderAndSigns() throws Exception {
+        final List<FSPath> paths = new ArrayList<>();
+        for (var i = 0; i < 50; i++) {
+            paths.add(m_fileSystem.getPath("/bucket/dir/file-" + i + ".csv"));
+        }
+
+        final var uris = newExporter().toUris(paths);
+
+        Assertions.assertEquals(paths.size(), uris.size());
+        for (var i = 0; i < uris.size(); i++) {
+            Assertions.assertEquals("/bucket/dir/file-" + i + ".csv", uris.get(i).getPath());
+            assertValidSignature(uris.get(i));
+        }
+    }
+
+    @Test
+    void testToUriMatchesToUris() throws Exception {
+        final var path = m_fileSystem.getPath("/bucket/file.csv");
+        final var exporter = newExporter();
+
+        final var single = exporter.toUri(path);
+        final var bulk = exporter.toUris(List.of(path)).get(0);
+
+        Assertions.assertEquals(single.getPath(), bulk.getPath());
+        assertValidSignature(single);
+        assertValidSignature(bulk);
+    }
+
+    @Test
+    void testEmptyList() throws URISyntaxException {
+        Assertions.assertTrue(newExporter().toUris(List.of()).isEmpty());
+    }
+
+    @Test
+    void testCredentialsWithoutServiceAccountAreRejected() throws Exception {
+        final var credentials = GoogleCredentials.create(new AccessToken("token", null));
+        try (final var fileSystem = new CloudStorageFileSystem(newConfig(credentials), 0)) {
+            final var paths = List.of(fileSystem.getPath("/bucket/file.csv"));
+            Assertions.assertThrows(URISyntaxException.class, () -> newExporter().toUris(paths));
+        }
+    }
+
+    private static GsSignedURIExporter newExporter() {
+        return new GsSignedURIExporter(new SignedUrlConfig(Duration.ofHours(1)));
+    }
+
+    private static CloudStorageConnectionConfig newConfig(final Credentials credentials) {
+        final var config = new CloudStorageConnectionConfig("/", credentials);
+        config.setProjectId("project");
+        config.setConnectionTimeOut(Duration.ofSeconds(1));
+        config.setReadTimeOut(Duration.ofSeconds(1));
+        return config;
+    }
+
+    private void assertValidSignature(final URI uri) throws GeneralSecurityException {
+        final var query = uri.getRawQuery();
+        final var signatureIndex = query.indexOf("&x-goog-signature=");
+        Assertions.assertTrue(signatureIndex > 0, uri.toString());
+        final var canonicalQuery = query.substring(0, signatureIndex);
+        final var signature = HexFormat.of().parseHex(query.substring(signatureIndex + 18));
+
+        final var date = getParameter(canonicalQuery, "x-goog-date");
+        final var credential = URLDecoder.decode(getParameter(canonicalQuery, "x-goog-credential"),
+            StandardCharsets.UTF_8);
+        Assertions.assertEquals(CLIENT_EMAIL + "/" + date.substring(0, 8) + "/auto/storage/goog4_request",
+            credential);
+        Assertions.assertEquals("3600", getParameter(canonicalQuery, "x-goog-expires"));
+
+        final var canonicalRequest = String.join("\n", "GET", uri.getRawPath(), canonicalQuery,
+            "host:storage.googleapis.com", "", "host", "UNSIGNED-PAYLOAD");
+        final var requestHash = HexFormat.of().formatHex(
+            MessageDigest.getInstance("SHA-256").digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+        final var stringToSign = String.join("\n", "GOOG4-RSA-SHA256", date,
+            date.substring(0, 8) + "/auto/storage/goog4_request", requestHash);
+
+        final var verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(m_keyPair.getPublic());
+        verifier.update(stringToSign.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertTrue(verifier.verify(signature), "Invalid signature of " + uri);
+    }
+
+    private static String getParameter(final String query, final String name) {
+        for (final var parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+        return Assertions.fail("Missing parameter " + name);
+    }
+}
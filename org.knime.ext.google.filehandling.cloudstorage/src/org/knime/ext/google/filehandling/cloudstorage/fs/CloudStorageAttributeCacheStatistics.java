@@ -0,0 +1,127 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+/**
+ * Snapshot of the counters of the attribute cache of a
+ * {@link CloudStorageFileSystem}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class CloudStorageAttributeCacheStatistics {
+
+    private final long m_hits;
+
+    private final long m_misses;
+
+    private final long m_evictions;
+
+    private final long m_expirations;
+
+    private final int m_size;
+
+    CloudStorageAttributeCacheStatistics(final long hits, final long misses, final long evictions,
+            final long expirations, final int size) {
+        m_hits = hits;
+        m_misses = misses;
+        m_evictions = evictions;
+        m_expirations = expirations;
+        m_size = size;
+    }
+
+    /**
+     * @return the number of lookups which have been answered from the cache.
+     */
+    public long getHits() {
+        return m_hits;
+    }
+
+    /**
+     * @return the number of lookups which have not been answered from the cache,
+     *         including lookups of expired entries.
+     */
+    public long getMisses() {
+        return m_misses;
+    }
+
+    /**
+     * @return the number of entries which have been evicted because the cache
+     *         reached its maximum number of entries.
+     */
+    public long getEvictions() {
+        return m_evictions;
+    }
+
+    /**
+     * @return the number of entries which have been dropped because their time
+     *         to live has expired.
+     */
+    public long getExpirations() {
+        return m_expirations;
+    }
+
+    /**
+     * @return the current number of entries.
+     */
+    public int getSize() {
+        return m_size;
+    }
+
+    /**
+     * @return the ratio of hits to lookups, or 0 if there have not been any
+     *         lookups.
+     */
+    public double getHitRate() {
+        final long lookups = m_hits + m_misses;
+        return lookups == 0 ? 0 : (double) m_hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d (hit rate %.1f%%), evictions=%d, expirations=%d, size=%d", m_hits,
+                m_misses, getHitRate() * 100, m_evictions, m_expirations, m_size);
+    }
+}
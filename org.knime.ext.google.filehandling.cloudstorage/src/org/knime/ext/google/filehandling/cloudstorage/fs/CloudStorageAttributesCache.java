@@ -0,0 +1,280 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.knime.filehandling.core.connections.base.attributes.BaseFileAttributes;
+
+/**
+ * Attribute cache of the {@link CloudStorageFileSystem}. Entries expire after a
+ * fixed time to live and the least recently used entries are evicted once the
+ * maximum number of entries is reached. Entries are keyed by the absolute path
+ * string, so that all entries below a directory can be removed at once.
+ *
+ * <p>
+ * Besides attributes, the cache can remember that a path does not exist. Such
+ * negative entries are dropped as soon as an entry at or below the path is added
+ * or removed, since both indicate that the path may have been created.
+ * </p>
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageAttributesCache {
+
+    private static final char SEPARATOR = '/';
+
+    private final long m_timeToLiveNanos;
+
+    private final int m_maxEntries;
+
+    /**
+     * Entries in access order, used for the LRU eviction.
+     */
+    private final LinkedHashMap<String, Entry> m_entries;
+
+    /**
+     * The same entries ordered by key, used to remove whole sub trees.
+     */
+    private final NavigableMap<String, Entry> m_sortedEntries = new TreeMap<>();
+
+    private long m_hits;
+
+    private long m_misses;
+
+    private long m_evictions;
+
+    private long m_expirations;
+
+    /**
+     * @param timeToLiveMillis
+     *            the time to live of the entries in milliseconds, 0 disables the
+     *            cache.
+     * @param maxEntries
+     *            the maximum number of entries, 0 disables the cache.
+     */
+    CloudStorageAttributesCache(final long timeToLiveMillis, final int maxEntries) {
+        m_timeToLiveNanos = Math.max(0, timeToLiveMillis) * 1_000_000;
+        m_maxEntries = Math.max(0, maxEntries);
+        m_entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                if (size() > m_maxEntries) {
+                    m_sortedEntries.remove(eldest.getKey());
+                    m_evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private boolean isEnabled() {
+        return m_timeToLiveNanos > 0 && m_maxEntries > 0;
+    }
+
+    synchronized void put(final String key, final BaseFileAttributes attributes) {
+        removeMissingAncestors(key);
+        putEntry(key, attributes);
+    }
+
+    /**
+     * Remembers that the path of the given key does not exist.
+     *
+     * @param key
+     *            the key of the missing path.
+     */
+    synchronized void putMissing(final String key) {
+        putEntry(key, null);
+    }
+
+    private void putEntry(final String key, final BaseFileAttributes attributes) {
+        if (!isEnabled()) {
+            return;
+        }
+        final var entry = new Entry(attributes, System.nanoTime() + m_timeToLiveNanos);
+        m_sortedEntries.put(key, entry);
+        m_entries.put(key, entry);
+    }
+
+    /**
+     * Returns the cached attributes of the given key. A negative entry is
+     * neither counted as hit nor as miss here, since the caller then asks
+     * {@link #isMissing(String)}, which counts it as hit.
+     *
+     * @param key
+     *            the key of a path.
+     * @return the cached attributes, empty if there are none or if the path is
+     *         known to not exist.
+     */
+    synchronized Optional<BaseFileAttributes> get(final String key) {
+        final var entry = getUnexpired(key);
+        if (entry == null) {
+            m_misses++;
+            return Optional.empty();
+        }
+        if (entry.isMissing()) {
+            return Optional.empty();
+        }
+        m_hits++;
+        return Optional.of(entry.m_attributes);
+    }
+
+    /**
+     * @param key
+     *            the key of a path.
+     * @return whether the path is known to not exist, counted as hit.
+     */
+    synchronized boolean isMissing(final String key) {
+        final var entry = getUnexpired(key);
+        if (entry != null && entry.isMissing()) {
+            m_hits++;
+            return true;
+        }
+        return false;
+    }
+
+    private Entry getUnexpired(final String key) {
+        final var entry = m_entries.get(key);
+        if (entry != null && System.nanoTime() - entry.m_expiresAt >= 0) {
+            removeEntry(key);
+            m_expirations++;
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void remove(final String key) {
+        removeMissingAncestors(key);
+        removeEntry(key);
+    }
+
+    private void removeEntry(final String key) {
+        m_entries.remove(key);
+        m_sortedEntries.remove(key);
+    }
+
+    /**
+     * Drops the negative entries of the given key in the other notation and of
+     * all its ancestors, in both directory (with trailing separator) and file
+     * notation.
+     */
+    private void removeMissingAncestors(final String key) {
+        var end = key.length() - 1;
+        while (end > 0 && key.charAt(end) == SEPARATOR) {
+            end--;
+        }
+        removeIfMissing(key.substring(0, end + 1));
+        removeIfMissing(key.substring(0, end + 1) + SEPARATOR);
+        var sep = key.lastIndexOf(SEPARATOR, end);
+        while (sep > 0) {
+            removeIfMissing(key.substring(0, sep));
+            removeIfMissing(key.substring(0, sep + 1));
+            sep = key.lastIndexOf(SEPARATOR, sep - 1);
+        }
+    }
+
+    private void removeIfMissing(final String key) {
+        final var entry = m_sortedEntries.get(key);
+        if (entry != null && entry.isMissing()) {
+            removeEntry(key);
+        }
+    }
+
+    /**
+     * Removes the entry of the given key and all entries below it.
+     *
+     * @param key
+     *            the key of a directory, with or without trailing separator.
+     */
+    synchronized void removeDeep(final String key) {
+        if (key.equals(String.valueOf(SEPARATOR))) {
+            clear();
+            return;
+        }
+        var base = key;
+        while (base.length() > 1 && base.charAt(base.length() - 1) == SEPARATOR) {
+            base = base.substring(0, base.length() - 1);
+        }
+        remove(base);
+        // all keys starting with base + '/' (the character after '/' is '0')
+        final var subTree = m_sortedEntries.subMap(base + SEPARATOR, true, base + (char) (SEPARATOR + 1), false);
+        subTree.keySet().forEach(m_entries::remove);
+        subTree.clear();
+    }
+
+    synchronized void clear() {
+        m_entries.clear();
+        m_sortedEntries.clear();
+    }
+
+    synchronized CloudStorageAttributeCacheStatistics getStatistics() {
+        return new CloudStorageAttributeCacheStatistics(m_hits, m_misses, m_evictions, m_expirations,
+                m_entries.size());
+    }
+
+    private static final class Entry {
+
+        private final BaseFileAttributes m_attributes;
+
+        private final long m_expiresAt;
+
+        private Entry(final BaseFileAttributes attributes, final long expiresAt) {
+            m_attributes = attributes;
+            m_expiresAt = expiresAt;
+        }
+
+        private boolean isMissing() {
+            return m_attributes == null;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.zip.CRC32C;
+
+/**
+ * Helpers for the CRC32C checksums which Cloud Storage keeps for every object.
+ * Checksums are always computed incrementally while the data is transferred,
+ * {@link CRC32C} uses the CRC32 instructions of the CPU where available.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageChecksum {
+
+    private CloudStorageChecksum() {
+    }
+
+    /**
+     * @param crc
+     *            the computed checksum.
+     * @return the checksum in the format of the Cloud Storage API, i.e. the four
+     *         bytes in big-endian order, base64 encoded.
+     */
+    static String toBase64(final CRC32C crc) {
+        final var bytes = ByteBuffer.allocate(Integer.BYTES).putInt((int) crc.getValue()).array();
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * @param expected
+     *            the base64 encoded checksum reported by Cloud Storage.
+     * @param actual
+     *            the computed checksum.
+     * @param objectName
+     *            the name of the object, used in the error message.
+     * @throws MismatchException
+     *             if the checksums differ.
+     */
+    static void verify(final String expected, final CRC32C actual, final String objectName)
+            throws MismatchException {
+        final var actualBase64 = toBase64(actual);
+        if (!actualBase64.equals(expected)) {
+            throw new MismatchException(String.format("CRC32C checksum mismatch for %s: expected %s, computed %s",
+                    objectName, expected, actualBase64));
+        }
+    }
+
+    /**
+     * Thrown if transferred data does not match the checksum of the object.
+     */
+    static final class MismatchException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        MismatchException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * {@link InputStream} that computes the checksum of the bytes passing through
+     * and compares it with the expected one when the end of the stream is
+     * reached.
+     */
+    static final class VerifyingInputStream extends FilterInputStream {
+
+        private final CRC32C m_crc = new CRC32C();
+
+        private final String m_expected;
+
+        private final String m_objectName;
+
+        private boolean m_verified;
+
+        VerifyingInputStream(final InputStream in, final String expected, final String objectName) {
+            super(in);
+            m_expected = expected;
+            m_objectName = objectName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b < 0) {
+                verifyOnce();
+            } else {
+                m_crc.update(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read < 0) {
+                verifyOnce();
+            } else {
+                m_crc.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            // skipped bytes must be checksummed as well
+            final var buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void verifyOnce() throws MismatchException {
+            if (!m_verified) {
+                m_verified = true;
+                verify(m_expected, m_crc, m_objectName);
+            }
+        }
+    }
+}
@@ -48,35 +48,71 @@
  */
 package org.knime.ext.google.filehandling.cloudstorage.fs;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 import org.apache.commons.lang3.StringUtils;
 import org.knime.core.node.NodeLogger;
 import org.knime.google.api.nodes.util.GoogleApiUtil;
 
 import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.gax.paging.Page;
+import com.google.cloud.RestorableState;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.BatchResult;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BlobWriteSession;
+import com.google.cloud.storage.BlobWriteSessionConfigs;
 import com.google.cloud.storage.Bucket;
 import com.google.cloud.storage.BucketInfo;
+import com.google.cloud.storage.CopyWriter;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.BlobField;
 import com.google.cloud.storage.Storage.BlobGetOption;
 import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.Storage.BlobSourceOption;
+import com.google.cloud.storage.Storage.BlobTargetOption;
+import com.google.cloud.storage.Storage.BlobWriteOption;
+import com.google.cloud.storage.Storage.BucketField;
+import com.google.cloud.storage.Storage.BucketGetOption;
 import com.google.cloud.storage.Storage.BucketListOption;
+import com.google.cloud.storage.Storage.ComposeRequest;
 import com.google.cloud.storage.Storage.CopyRequest;
 import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
@@ -88,31 +124,194 @@
  * @author Alexander Bondaletov
  */
 public class CloudStorageClient {
-    @SuppressWarnings("unused")
     private static final NodeLogger LOGGER = NodeLogger.getLogger(CloudStorageClient.class);
 
     private static final int BUFFER_SIZE = 1024 * 1024 * 5; // 5 MiB
 
+    /**
+     * Maximum number of source objects of a single compose request.
+     */
+    private static final int MAX_COMPOSE_SOURCES = 32;
+
+    /**
+     * Maximum number of requests in a single batch request.
+     */
+    static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Maximum number of attempts to transfer a single range of a download or
+     * part of an upload.
+     */
+    private static final int MAX_TRANSFER_ATTEMPTS = 3;
+
+    /**
+     * Maximum number of consecutive retries of a failed rewrite call.
+     */
+    private static final int MAX_REWRITE_RETRIES = 3;
+
+    /**
+     * Maximum file size for uploads with a single request. Larger files are
+     * uploaded in a resumable session, which costs additional round trips but
+     * does not hold the whole file in memory.
+     */
+    static final int SINGLE_REQUEST_UPLOAD_LIMIT = BUFFER_SIZE;
+
+    private static final String COMPOSITE_PART_INFIX = ".knime-composite-part-";
+
+    private static final String STAGING_INFIX = ".knime-upload-";
+
+    /**
+     * Blob fields needed to build file attributes. Requesting only these keeps
+     * ACLs, metadata maps etc. out of listing and metadata responses.
+     */
+    private static final BlobField[] ATTRIBUTE_FIELDS = { BlobField.NAME, BlobField.SIZE, BlobField.TIME_CREATED,
+            BlobField.UPDATED };
+
+    /**
+     * Blob fields needed to read the blob content at a fixed generation.
+     */
+    private static final BlobField[] READ_FIELDS = { BlobField.NAME, BlobField.SIZE, BlobField.GENERATION,
+            BlobField.CRC32C };
+
+    private static final BucketField[] BUCKET_ATTRIBUTE_FIELDS = { BucketField.NAME, BucketField.TIME_CREATED,
+            BucketField.UPDATED };
+
     private final Storage m_storage;
 
+    /**
+     * The lease of the shared storage, {@code null} if the storage was passed in.
+     */
+    private final CloudStorageServicePool.Lease m_storageLease;
+
+    private final long m_compositeUploadThreshold;
+
+    private final int m_compositeUploadParts;
+
+    private final long m_slicedDownloadThreshold;
+
+    private final int m_slicedDownloadConnections;
+
+    private final int m_maxConcurrentRequests;
+
+    private final int m_uploadChunkSize;
+
+    /**
+     * Batch requests are only supported by the JSON API.
+     */
+    private final boolean m_batchSupported;
+
+    private final boolean m_verifyChecksums;
+
+    /**
+     * Budget of this client in the local content cache, zero if contents are
+     * not cached.
+     */
+    private final long m_contentCacheSize;
+
+    private final ExecutorService m_executor = Executors
+            .newCachedThreadPool(Thread.ofPlatform().name("knime-gcs-transfer-", 0).daemon().factory());
+
     /**
      * Constructs new instance for a given configuration (derived from host property
-     * or the URI)
+     * or the URI). The underlying {@link Storage} is shared with other clients
+     * with the same credentials and connection settings.
      *
      * @param config
      *            Connection configuration
      */
     public CloudStorageClient(final CloudStorageConnectionConfig config) {
-        final var transportOptions = HttpTransportOptions.newBuilder()//
-                .setHttpTransportFactory(GoogleApiUtil::getHttpTransport)
-                .setConnectTimeout((int) config.getConnectionTimeOut().toMillis())
-                .setReadTimeout((int) config.getReadTimeOut().toMillis()).build();
-
-        m_storage = StorageOptions.newBuilder()
-                .setProjectId(config.getProjectId())
-                .setTransportOptions(transportOptions)
+        this(config, CloudStorageServicePool.acquire(config, CloudStorageClient::createStorage));
+    }
+
+    private CloudStorageClient(final CloudStorageConnectionConfig config,
+            final CloudStorageServicePool.Lease storageLease) {
+        this(config, storageLease.getStorage(), storageLease);
+    }
+
+    /**
+     * Constructs new instance for a given configuration, which uses the given
+     * {@link Storage} instance, e.g. one connected to a local stand-in server.
+     *
+     * @param config
+     *            Connection configuration
+     * @param storage
+     *            the storage to use.
+     */
+    CloudStorageClient(final CloudStorageConnectionConfig config, final Storage storage) {
+        this(config, storage, null);
+    }
+
+    private CloudStorageClient(final CloudStorageConnectionConfig config, final Storage storage,
+            final CloudStorageServicePool.Lease storageLease) {
+        m_storage = storage;
+        m_storageLease = storageLease;
+        m_batchSupported = !config.isUseGrpc();
+        m_verifyChecksums = config.isVerifyChecksums();
+        m_contentCacheSize = config.getContentCacheSize();
+        if (m_contentCacheSize > 0) {
+            CloudStorageContentCache.getInstance().register(m_contentCacheSize);
+        }
+        m_compositeUploadThreshold = config.getCompositeUploadThreshold();
+        m_compositeUploadParts = config.isUseCompositeUploads() //
+                ? Math.min(config.getCompositeUploadParts(), MAX_COMPOSE_SOURCES) //
+                : 1;
+        m_slicedDownloadThreshold = config.getSlicedDownloadThreshold();
+        m_slicedDownloadConnections = config.getSlicedDownloadConnections();
+        m_maxConcurrentRequests = Math.max(1, config.getMaxConcurrentRequests());
+        m_uploadChunkSize = config.getUploadChunkSize();
+    }
+
+    private static Storage createStorage(final CloudStorageConnectionConfig config) {
+        return createStorageOptions(config).getService();
+    }
+
+    /**
+     * @param config
+     *            the connection configuration.
+     * @return the options of the storage for the given configuration.
+     */
+    static StorageOptions createStorageOptions(final CloudStorageConnectionConfig config) {
+        final StorageOptions.Builder builder;
+        // resumable uploads are chunked by the write sessions of the storage
+        final var writeSessionConfig = BlobWriteSessionConfigs.getDefault()
+                .withChunkSize(config.getUploadChunkSize());
+        if (config.isUseGrpc()) {
+            // the gRPC channel does not use the HTTP transport, hence not the KNIME proxy settings either
+            builder = StorageOptions.grpc() //
+                    .setBlobWriteSessionConfig(writeSessionConfig) //
+                    .setRetrySettings(createGrpcRetrySettings(config));
+        } else {
+            final var transportOptions = HttpTransportOptions.newBuilder()//
+                    .setHttpTransportFactory(GoogleApiUtil::getHttpTransport)
+                    .setConnectTimeout((int) config.getConnectionTimeOut().toMillis())
+                    .setReadTimeout((int) config.getReadTimeOut().toMillis()).build();
+            builder = StorageOptions.http() //
+                    .setBlobWriteSessionConfig(writeSessionConfig) //
+                    .setTransportOptions(transportOptions);
+        }
+
+        if (StringUtils.isNotBlank(config.getEndpoint())) {
+            builder.setHost(config.getEndpoint());
+        }
+        return builder.setProjectId(config.getProjectId())
                 .setCredentials(config.getCredentials())
-                .build().getService();
+                .build();
+    }
+
+    /**
+     * gRPC has no separate connect and read timeouts, so their sum bounds every
+     * call attempt instead. Uploads and sliced or ranged downloads consist of
+     * calls of a few MiB each, which are retried individually. Zero (infinite)
+     * timeouts keep the defaults.
+     */
+    private static RetrySettings createGrpcRetrySettings(final CloudStorageConnectionConfig config) {
+        final var builder = StorageOptions.getDefaultRetrySettings().toBuilder();
+        final var rpcTimeout = config.getConnectionTimeOut().plus(config.getReadTimeOut());
+        if (!config.getConnectionTimeOut().isZero() && !config.getReadTimeOut().isZero()) {
+            builder.setInitialRpcTimeoutDuration(rpcTimeout) //
+                    .setMaxRpcTimeoutDuration(rpcTimeout);
+        }
+        return builder.build();
     }
 
     /**
@@ -123,6 +322,7 @@ public CloudStorageClient(final CloudStorageConnectionConfig config) {
      */
     public Page<Bucket> listBuckets(final String pageToken) throws IOException {
         final var options = new ArrayList<BucketListOption>();
+        options.add(BucketListOption.fields(BUCKET_ATTRIBUTE_FIELDS));
         if (StringUtils.isNotBlank(pageToken)) {
             options.add(BucketListOption.pageToken(pageToken));
         }
@@ -144,14 +344,39 @@ public Page<Bucket> listBuckets(final String pageToken) throws IOException {
      * @throws IOException
      */
     public Page<Blob> listBlobs(final String bucket, final String prefix, final String pageToken) throws IOException {
+        return listBlobs(bucket, prefix, pageToken, null);
+    }
+
+    /**
+     * Returns list of blobs and prefixes for a given bucket and a given prefix,
+     * whose names match the given glob pattern.
+     *
+     * @param bucket
+     *            bucket name.
+     * @param prefix
+     *            (Optional) Separator-terminated blob name prefix
+     * @param pageToken
+     *            (Optional) Continuation token
+     * @param matchGlob
+     *            (Optional) Glob pattern the full names of the returned blobs
+     *            and prefixes must match.
+     * @return Page of {@link Blob} instance.
+     * @throws IOException
+     */
+    public Page<Blob> listBlobs(final String bucket, final String prefix, final String pageToken,
+            final String matchGlob) throws IOException {
         final var options = new ArrayList<BlobListOption>();
         options.add(BlobListOption.delimiter(CloudStorageFileSystem.PATH_SEPARATOR));
+        options.add(BlobListOption.fields(ATTRIBUTE_FIELDS));
         if (StringUtils.isNotBlank(prefix)) {
             options.add(BlobListOption.prefix(prefix));
         }
         if (StringUtils.isNotBlank(pageToken)) {
             options.add(BlobListOption.pageToken(pageToken));
         }
+        if (StringUtils.isNotBlank(matchGlob)) {
+            options.add(BlobListOption.matchGlob(matchGlob));
+        }
         return handleAccessDenied(() -> m_storage.list(bucket, options.toArray(BlobListOption[]::new)));
     }
 
@@ -163,11 +388,12 @@ public Page<Blob> listBlobs(final String bucket, final String prefix, final Stri
      *            the bucket name.
      * @param prefix
      *            (Optional) Separator-terminated blob name prefix
-     * @return list of blobs
+     * @return list of blobs, only the name is populated
      * @throws IOException
      */
     public List<Blob> listAllBlobs(final String bucket, final String prefix) throws IOException {
         final var options = new ArrayList<BlobListOption>();
+        options.add(BlobListOption.fields(BlobField.NAME));
         if (StringUtils.isNotBlank(prefix)) {
             options.add(BlobListOption.prefix(prefix));
         }
@@ -177,6 +403,95 @@ public List<Blob> listAllBlobs(final String bucket, final String prefix) throws
         });
     }
 
+    /**
+     * Lazily streams all blobs in the given bucket whose name starts with a given
+     * prefix, without using a separator. Further pages are only requested when
+     * the stream is consumed beyond the current page. The blobs are ordered by
+     * name and carry the same fields as the ones from
+     * {@link #listBlobs(String, String, String, String)}.
+     *
+     * @param bucket
+     *            the bucket name.
+     * @param prefix
+     *            (Optional) Separator-terminated blob name prefix
+     * @return stream of blobs
+     * @throws IOException
+     */
+    public Stream<Blob> streamAllBlobs(final String bucket, final String prefix) throws IOException {
+        final var options = new ArrayList<BlobListOption>();
+        options.add(BlobListOption.fields(ATTRIBUTE_FIELDS));
+        if (StringUtils.isNotBlank(prefix)) {
+            options.add(BlobListOption.prefix(prefix));
+        }
+        return handleAccessDenied(() -> m_storage.list(bucket, options.toArray(BlobListOption[]::new)).streamAll());
+    }
+
+    /**
+     * Lazily streams all blobs in the given bucket whose name starts with a given
+     * prefix, without using a separator. The blobs only carry their name and
+     * size, which keeps the listing responses as small as possible.
+     *
+     * @param bucket
+     *            the bucket name.
+     * @param prefix
+     *            (Optional) Separator-terminated blob name prefix
+     * @return stream of blobs
+     * @throws IOException
+     */
+    public Stream<Blob> streamAllBlobSizes(final String bucket, final String prefix) throws IOException {
+        final var options = new ArrayList<BlobListOption>();
+        options.add(BlobListOption.fields(BlobField.NAME, BlobField.SIZE));
+        if (StringUtils.isNotBlank(prefix)) {
+            options.add(BlobListOption.prefix(prefix));
+        }
+        return handleAccessDenied(() -> m_storage.list(bucket, options.toArray(BlobListOption[]::new)).streamAll());
+    }
+
+    /**
+     * Lazily streams the names of all blobs in the given bucket whose name starts
+     * with a given prefix, without using a separator.
+     *
+     * @param bucket
+     *            the bucket name.
+     * @param prefix
+     *            (Optional) Separator-terminated blob name prefix
+     * @return stream of blob names
+     * @throws IOException
+     */
+    public Stream<String> streamAllBlobNames(final String bucket, final String prefix) throws IOException {
+        final var options = new ArrayList<BlobListOption>();
+        options.add(BlobListOption.fields(BlobField.NAME));
+        if (StringUtils.isNotBlank(prefix)) {
+            options.add(BlobListOption.prefix(prefix));
+        }
+        return handleAccessDenied(() -> m_storage.list(bucket, options.toArray(BlobListOption[]::new)).streamAll()
+                .map(Blob::getName));
+    }
+
+    /**
+     * Lists the first entries whose name starts with the given name, using the
+     * separator as delimiter. Since a blob with exactly the given name sorts
+     * before every other match, the returned page tells in one request whether
+     * the name denotes a blob, a directory or nothing. A directory is returned as
+     * prefix and, if it has a marker object, also as blob.
+     *
+     * @param bucket
+     *            the bucket name.
+     * @param name
+     *            the blob name without trailing separator.
+     * @return the first page of at most two entries. A further page may only be
+     *         available if the page does not contain the given name.
+     * @throws IOException
+     */
+    public Page<Blob> listNameCandidates(final String bucket, final String name) throws IOException {
+        return handleAccessDenied(() -> m_storage.list(bucket, //
+                BlobListOption.prefix(name), //
+                BlobListOption.delimiter(CloudStorageFileSystem.PATH_SEPARATOR), //
+                BlobListOption.includeTrailingDelimiter(), //
+                BlobListOption.pageSize(2), //
+                BlobListOption.fields(ATTRIBUTE_FIELDS)));
+    }
+
     /**
      * Checks if the given bucket exists and if the blob with a given prefix exists
      * (when provided).
@@ -194,6 +509,7 @@ public boolean exists(final String bucket, final String prefix) throws IOExcepti
             final var options = new ArrayList<BlobListOption>();
             options.add(BlobListOption.delimiter(CloudStorageFileSystem.PATH_SEPARATOR));
             options.add(BlobListOption.pageSize(1));
+            options.add(BlobListOption.fields(BlobField.NAME));
             if (StringUtils.isNotBlank(prefix)) {
                 options.add(BlobListOption.prefix(prefix));
             }
@@ -225,6 +541,7 @@ public boolean isNotEmpty(final String bucket, final String prefix) throws IOExc
             final var options = new ArrayList<BlobListOption>();
             options.add(BlobListOption.delimiter(CloudStorageFileSystem.PATH_SEPARATOR));
             options.add(BlobListOption.pageSize(2));
+            options.add(BlobListOption.fields(BlobField.NAME));
             if (StringUtils.isNotBlank(prefix)) {
                 options.add(BlobListOption.prefix(prefix));
             }
@@ -244,11 +561,12 @@ public boolean isNotEmpty(final String bucket, final String prefix) throws IOExc
     /**
      * @param bucket
      *            the bucket name
-     * @return the {@link Bucket} blob.
+     * @return the {@link Bucket}, only name, create and update time are
+     *         populated.
      * @throws IOException
      */
     public Bucket getBucket(final String bucket) throws IOException {
-        return handleAccessDenied(() -> m_storage.get(bucket));
+        return handleAccessDenied(() -> m_storage.get(bucket, BucketGetOption.fields(BUCKET_ATTRIBUTE_FIELDS)));
     }
 
     /**
@@ -256,12 +574,13 @@ public Bucket getBucket(final String bucket) throws IOException {
      *            the bucket name.
      * @param blobName
      *            the blob name.
-     * @return the {@link Blob}.
+     * @return the {@link Blob}, only name, size, create and update time are
+     *         populated.
      * @throws IOException
      */
     public Blob getBlob(final String bucket, final String blobName) throws IOException {
         try {
-            return handleAccessDenied(() -> m_storage.get(bucket, blobName));
+            return handleAccessDenied(() -> m_storage.get(bucket, blobName, BlobGetOption.fields(ATTRIBUTE_FIELDS)));
         } catch (StorageException ex) {
             if (ex.getCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
                 return null;
@@ -271,7 +590,12 @@ public Blob getBlob(final String bucket, final String blobName) throws IOExcepti
     }
 
     /**
-     * Returns the {@link InputStream} for a given blob data.
+     * Returns the {@link InputStream} for a given blob data. Blobs above the
+     * configured size threshold are downloaded with several concurrent range
+     * requests, which are reassembled in order. Unless disabled, the CRC32C
+     * checksum of the data is computed while it is read and verified once the
+     * end of the stream is reached. If the local content cache is enabled,
+     * unchanged blobs are read from the cache instead of being downloaded again.
      *
      * @param bucket
      *            Bucket name.
@@ -283,8 +607,135 @@ public Blob getBlob(final String bucket, final String blobName) throws IOExcepti
     @SuppressWarnings("resource")
     public InputStream getInputStream(final String bucket, final String blobName) throws IOException {
         return handleAccessDenied(() -> {
-            final var blob = m_storage.get(bucket, blobName, BlobGetOption.shouldReturnRawInputStream(true));
-            return Channels.newInputStream(blob.reader());
+            final var blob = m_storage.get(bucket, blobName, BlobGetOption.fields(READ_FIELDS),
+                    BlobGetOption.shouldReturnRawInputStream(true));
+            if (blob == null) {
+                throw new StorageException(HttpStatusCodes.STATUS_CODE_NOT_FOUND, bucket + "/" + blobName);
+            }
+
+            final var cache = getContentCache(blob);
+            if (cache != null) {
+                final var cached = cache.newInputStream(blob.getBlobId());
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            final var size = blob.getSize();
+            final InputStream in;
+            if (m_slicedDownloadConnections > 1 && size != null && size >= m_slicedDownloadThreshold) {
+                final var blobId = blob.getBlobId();
+                in = new CloudStorageSlicedInputStream((offset, length) -> readRange(blobId, offset, length), size,
+                        m_slicedDownloadConnections, m_executor);
+            } else {
+                in = Channels.newInputStream(
+                        m_storage.reader(blob.getBlobId(), BlobSourceOption.shouldReturnRawInputStream(true)));
+            }
+
+            final var verified = m_verifyChecksums && blob.getCrc32c() != null
+                    ? new CloudStorageChecksum.VerifyingInputStream(in, blob.getCrc32c(), bucket + "/" + blobName)
+                    : in;
+            if (cache != null && size != null) {
+                return cache.cachingInputStream(blob.getBlobId(), size, verified);
+            }
+            return verified;
+        });
+    }
+
+    /**
+     * @return the content cache if it is enabled and the generation of the blob
+     *         is known, otherwise <code>null</code>.
+     */
+    private CloudStorageContentCache getContentCache(final Blob blob) {
+        return m_contentCacheSize > 0 && blob.getGeneration() != null ? CloudStorageContentCache.getInstance()
+                : null;
+    }
+
+    /**
+     * Returns a read-only {@link SeekableByteChannel} for the given blob, which
+     * only fetches the byte ranges that are actually read, or reads from the
+     * local content cache if the blob is cached.
+     *
+     * @param bucket
+     *            Bucket name.
+     * @param blobName
+     *            Blob name.
+     * @return the channel, or <code>null</code> if the size of the blob is not
+     *         known, which is needed for ranged reads.
+     * @throws IOException
+     */
+    public SeekableByteChannel newReadChannel(final String bucket, final String blobName) throws IOException {
+        return handleAccessDenied(() -> {
+            final var blob = m_storage.get(bucket, blobName, BlobGetOption.fields(READ_FIELDS));
+            if (blob == null) {
+                throw new StorageException(HttpStatusCodes.STATUS_CODE_NOT_FOUND, bucket + "/" + blobName);
+            }
+            final var cache = getContentCache(blob);
+            if (cache != null) {
+                final var cached = cache.newByteChannel(blob.getBlobId());
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            final var size = blob.getSize();
+            return size != null ? new CloudStorageReadChannel(this, blob.getBlobId(), size) : null;
+        });
+    }
+
+    /**
+     * Reads a byte range of the given blob.
+     *
+     * @param blobId
+     *            The blob id, which should include the generation to make sure
+     *            all ranges are read from the same object version.
+     * @param position
+     *            Start of the range.
+     * @param length
+     *            Length of the range.
+     * @return a buffer holding the bytes of the range, ready to be read.
+     * @throws IOException
+     */
+    ByteBuffer readRange(final BlobId blobId, final long position, final int length) throws IOException {
+        for (var attempt = 1;; attempt++) {
+            try {
+                return readRangeOnce(blobId, position, length);
+            } catch (StorageException e) {
+                if (!e.isRetryable() || attempt >= MAX_TRANSFER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Retrying range read of " + blobId.getName() + " at " + position, e);
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= MAX_TRANSFER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Retrying range read of " + blobId.getName() + " at " + position, e);
+            }
+        }
+    }
+
+    /**
+     * @return whether the given failure of a transfer may be transient, i.e. it
+     *         is neither a permission problem nor an interruption.
+     */
+    private static boolean isRetryable(final IOException e) {
+        return !(e instanceof AccessDeniedException) && !(e instanceof InterruptedIOException)
+                && !(e instanceof ClosedByInterruptException);
+    }
+
+    private ByteBuffer readRangeOnce(final BlobId blobId, final long position, final int length) throws IOException {
+        return handleAccessDenied(() -> {
+            final var buffer = ByteBuffer.allocate(length);
+            try (final var reader = m_storage.reader(blobId, BlobSourceOption.shouldReturnRawInputStream(true))) {
+                reader.seek(position);
+                reader.limit(position + length);
+                while (buffer.hasRemaining()) {
+                    if (reader.read(buffer) < 0) {
+                        throw new EOFException(String.format("Unexpected end of %s at position %d", blobId.getName(),
+                                position + buffer.position()));
+                    }
+                }
+            }
+            return buffer.flip();
         });
     }
 
@@ -293,10 +744,11 @@ public InputStream getInputStream(final String bucket, final String blobName) th
      *
      * @param bucket
      *            The bucket name.
+     * @return the created bucket.
      * @throws IOException
      */
-    public void insertBucket(final String bucket) throws IOException {
-        handleAccessDenied(() -> m_storage.create(BucketInfo.of(bucket)));
+    public Bucket insertBucket(final String bucket) throws IOException {
+        return handleAccessDenied(() -> m_storage.create(BucketInfo.of(bucket)));
     }
 
     /**
@@ -308,14 +760,12 @@ public void insertBucket(final String bucket) throws IOException {
      *            Target blob name.
      * @param file
      *            File to upload.
+     * @return the metadata of the uploaded blob.
      * @throws IOException
      */
-    public void insertBlob(final String bucket, final String blobName, final Path file) throws IOException {
+    public BlobInfo insertBlob(final String bucket, final String blobName, final Path file) throws IOException {
         final var blobInfo = buildBlobInfo(bucket, blobName);
-        handleAccessDenied(() -> {
-            insertBlob(blobInfo, file.toFile());
-            return true;
-        });
+        return handleAccessDenied(() -> insertBlob(blobInfo, file.toFile()));
     }
 
     private static BlobInfo buildBlobInfo(final String bucket, final String blobName) {
@@ -323,15 +773,280 @@ private static BlobInfo buildBlobInfo(final String bucket, final String blobName
         return BlobInfo.newBuilder(blobId).build();
     }
 
-    private void insertBlob(final BlobInfo blobInfo, final File file) throws IOException {
-        try (final var out = m_storage.writer(blobInfo);
-                final var in = new FileInputStream(file).getChannel()) {
-            final var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
-            while (in.read(buffer) > 0) {
-                buffer.flip();
-                out.write(buffer);
-                buffer.clear();
+    private BlobInfo insertBlob(final BlobInfo blobInfo, final File file) throws IOException {
+        final long size = file.length();
+        if (m_compositeUploadParts > 1 && size >= m_compositeUploadThreshold) {
+            return insertBlobComposite(blobInfo, file.toPath(), size);
+        }
+
+        if (size <= SINGLE_REQUEST_UPLOAD_LIMIT) {
+            return insertBlobSingleRequest(blobInfo.getBlobId(), Files.readAllBytes(file.toPath()));
+        }
+
+        try (final var in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            uploadRange(blobInfo, in, 0, size);
+        }
+        return m_storage.get(blobInfo.getBlobId(), BlobGetOption.fields(ATTRIBUTE_FIELDS));
+    }
+
+    /**
+     * Uploads small content with a single request, which is retried on transient
+     * errors.
+     */
+    private Blob insertBlobSingleRequest(final BlobId blobId, final byte[] bytes) {
+        for (var attempt = 1;; attempt++) {
+            try {
+                return createBlob(blobId, bytes);
+            } catch (StorageException e) {
+                if (!e.isRetryable() || attempt >= MAX_TRANSFER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Retrying upload of " + blobId.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Uploads the file as a parallel composite upload: The file is split into
+     * parts which are uploaded concurrently as temporary objects next to the
+     * target blob, then stitched together with a single compose request. The
+     * temporary objects are deleted afterwards, also if the upload fails.
+     */
+    private BlobInfo insertBlobComposite(final BlobInfo blobInfo, final Path file, final long size)
+            throws IOException {
+        final long partSize = (size + m_compositeUploadParts - 1) / m_compositeUploadParts;
+        final var partPrefix = blobInfo.getName() + COMPOSITE_PART_INFIX + UUID.randomUUID() + "-";
+
+        final List<String> partNames = new ArrayList<>();
+        final var tasks = new TaskGroup();
+        try (final var in = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long offset = 0; offset < size; offset += partSize) {
+                final var partInfo = BlobInfo.newBuilder(blobInfo.getBucket(), partPrefix + partNames.size())
+                        .build();
+                final long partOffset = offset;
+                final long partLength = Math.min(partSize, size - offset);
+
+                partNames.add(partInfo.getName());
+                tasks.submit(() -> {
+                    uploadRange(partInfo, in, partOffset, partLength);
+                    return null;
+                });
+            }
+
+            tasks.awaitAll();
+            return m_storage.compose(ComposeRequest.newBuilder() //
+                    .addSource(partNames) //
+                    .setTarget(blobInfo) //
+                    .build());
+        } finally {
+            // the parts are deleted and the file is closed only once no upload is running anymore
+            tasks.cancelAll();
+            deleteTemporaryBlobs(blobInfo.getBucket(), partNames);
+        }
+    }
+
+    /**
+     * Uploads a range of the given file as the given blob in a resumable upload.
+     * The checksum of the range is computed up front and sent along, so that
+     * Cloud Storage rejects corrupt data instead of replacing an existing blob
+     * with it. A write which fails with a transient error is resumed from the
+     * state before that write, so only the failed chunk is sent again.
+     */
+    private void uploadRange(final BlobInfo blobInfo, final FileChannel in, final long offset, final long length)
+            throws IOException {
+        final var buffer = ByteBuffer.allocateDirect((int) Math.max(1, Math.min(BUFFER_SIZE, length)));
+        final long end = offset + length;
+        var writer = m_verifyChecksums //
+                ? m_storage.writer(blobInfo.toBuilder().setCrc32c(checksum(in, offset, end, buffer)).build(),
+                        BlobWriteOption.crc32cMatch()) //
+                : m_storage.writer(blobInfo);
+        writer.setChunkSize(m_uploadChunkSize);
+
+        long position = offset;
+        var failedAttempts = 0;
+        while (writer.isOpen()) {
+            // the captured state carries the upload session and the unsent data,
+            // restoring it continues the upload at the captured position
+            final RestorableState<WriteChannel> state = writer.capture();
+            try {
+                if (position < end) {
+                    position += writeChunk(writer, in, position, end, buffer);
+                } else {
+                    writer.close();
+                }
+                failedAttempts = 0;
+            } catch (StorageException e) {
+                failedAttempts++;
+                if (!e.isRetryable() || failedAttempts >= MAX_TRANSFER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Resuming upload of " + blobInfo.getName(), e);
+                writer = state.restore();
+            } catch (IOException e) {
+                failedAttempts++;
+                if (!isRetryable(e) || failedAttempts >= MAX_TRANSFER_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.debug("Resuming upload of " + blobInfo.getName(), e);
+                writer = state.restore();
+            }
+        }
+    }
+
+    /**
+     * Writes the next part of the range that fits into the buffer.
+     *
+     * @return the number of bytes written.
+     */
+    private static int writeChunk(final WriteChannel writer, final FileChannel in, final long position,
+            final long end, final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        final int read = in.read(buffer, position);
+        if (read < 0) {
+            throw new EOFException("File was truncated during upload");
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            writer.write(buffer);
+        }
+        return read;
+    }
+
+    /**
+     * Computes the checksum of a range of the given file. Reading the local file
+     * is much cheaper than the upload, which cannot be sent before its checksum.
+     */
+    private static String checksum(final FileChannel in, final long offset, final long end, final ByteBuffer buffer)
+            throws IOException {
+        final var crc = new CRC32C();
+        long position = offset;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            final int read = in.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("File was truncated during upload");
+            }
+            position += read;
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return CloudStorageChecksum.toBase64(crc);
+    }
+
+    private void deleteTemporaryBlobs(final String bucket, final List<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+
+        try {
+            m_storage.delete(names.stream().map(name -> BlobId.of(bucket, name)).toList());
+        } catch (StorageException e) {
+            LOGGER.warn("Could not delete temporary objects of upload: " + e.getMessage(), e);
+        }
+    }
+    /**
+     * Waits for the given future and unwraps the exception it failed with.
+     *
+     * @param future
+     *            the future to wait for.
+     * @return the result of the future.
+     * @throws IOException
+     *             if the task failed with an {@link IOException} or the current
+     *             thread has been interrupted while waiting.
+     */
+    static <T> T await(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) { // NOSONAR only the cause is interesting
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final var ioe = new InterruptedIOException();
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Rethrows the given failure of an asynchronous task in a way that keeps
+     * {@link StorageException}s intact, so that they can be translated by
+     * {@link #handleAccessDenied(IOSupplier)}.
+     */
+    private static IOException rethrow(final Throwable cause) {
+        if (cause instanceof IOException ioe) {
+            return ioe;
+        } else if (cause instanceof RuntimeException re) {
+            throw re;
+        } else if (cause instanceof Error err) {
+            throw err;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Creates a resumable upload session for the given blob. Data written to the
+     * channel of the session is uploaded in chunks of the configured size, the
+     * blob is created once the channel is closed. The result of the session
+     * carries the metadata of the written generation, which has to be passed to
+     * {@link #finishWriteSession(BlobInfo, CRC32C, String)}.
+     *
+     * <p>
+     * The checksum of streamed data is only known at the end, too late to send
+     * it along. If checksums are verified, the session therefore writes a
+     * temporary blob next to the target, which only replaces the target once
+     * its checksum has been verified.
+     * </p>
+     *
+     * @param bucket
+     *            Target bucket name.
+     * @param blobName
+     *            Target blob name.
+     * @return The upload session.
+     * @throws IOException
+     */
+    public BlobWriteSession newWriteSession(final String bucket, final String blobName) throws IOException {
+        final var sessionBlobName = m_verifyChecksums //
+                ? (blobName + STAGING_INFIX + UUID.randomUUID()) //
+                : blobName;
+        final var blobInfo = buildBlobInfo(bucket, sessionBlobName);
+        return handleAccessDenied(() -> m_storage.blobWriteSession(blobInfo));
+    }
+
+    /**
+     * Finishes an upload session created by
+     * {@link #newWriteSession(String, String)}. A temporary blob is compared
+     * with the checksum of the uploaded data and composed into the target blob
+     * if it matches. It is deleted in any case, so a corrupt upload leaves the
+     * target unchanged.
+     *
+     * @param written
+     *            the metadata returned by the session.
+     * @param crc
+     *            the checksum of the uploaded data.
+     * @param blobName
+     *            the name of the target blob.
+     * @return the metadata of the target blob.
+     * @throws IOException
+     *             if the checksums differ or the target could not be written.
+     */
+    public BlobInfo finishWriteSession(final BlobInfo written, final CRC32C crc, final String blobName)
+            throws IOException {
+        if (written.getName().equals(blobName)) {
+            return written;
+        }
+
+        try {
+            if (written.getCrc32c() != null) {
+                CloudStorageChecksum.verify(written.getCrc32c(), crc, written.getBucket() + "/" + blobName);
             }
+            return handleAccessDenied(() -> m_storage.compose(ComposeRequest.newBuilder() //
+                    .addSource(written.getName()) //
+                    .setTarget(buildBlobInfo(written.getBucket(), blobName)) //
+                    .build()));
+        } finally {
+            deleteTemporaryBlobs(written.getBucket(), List.of(written.getName()));
         }
     }
 
@@ -344,11 +1059,44 @@ private void insertBlob(final BlobInfo blobInfo, final File file) throws IOExcep
      *            Target blob name.
      * @param content
      *            Target blob content.
+     * @return the created blob.
      * @throws IOException
      */
-    public void insertBlob(final String bucket, final String blobName, final String content) throws IOException {
-        final var blobInfo = buildBlobInfo(bucket, blobName);
-        handleAccessDenied(() -> m_storage.create(blobInfo, content.getBytes(StandardCharsets.UTF_8)));
+    public Blob insertBlob(final String bucket, final String blobName, final String content) throws IOException {
+        final var bytes = content.getBytes(StandardCharsets.UTF_8);
+        return handleAccessDenied(() -> createBlob(BlobId.of(bucket, blobName), bytes));
+    }
+
+    /**
+     * Creates a blob with the provided content in a single request, which is
+     * retried on transient errors. Meant for content of at most
+     * {@value #SINGLE_REQUEST_UPLOAD_LIMIT} bytes.
+     *
+     * @param bucket
+     *            Target bucket name.
+     * @param blobName
+     *            Target blob name.
+     * @param content
+     *            Target blob content.
+     * @return the created blob.
+     * @throws IOException
+     */
+    public Blob insertBlob(final String bucket, final String blobName, final byte[] content) throws IOException {
+        return handleAccessDenied(() -> insertBlobSingleRequest(BlobId.of(bucket, blobName), content));
+    }
+
+    private Blob createBlob(final BlobId blobId, final byte[] bytes) {
+        if (!m_verifyChecksums) {
+            return m_storage.create(BlobInfo.newBuilder(blobId).build(), bytes);
+        }
+
+        // the content is known up front, so the server can reject corrupt data
+        final var crc = new CRC32C();
+        crc.update(bytes);
+        final var blobInfo = BlobInfo.newBuilder(blobId) //
+                .setCrc32c(CloudStorageChecksum.toBase64(crc)) //
+                .build();
+        return m_storage.create(blobInfo, bytes, BlobTargetOption.crc32cMatch());
     }
 
     /**
@@ -376,7 +1124,9 @@ public void deleteBlob(final String bucket, final String blobName) throws IOExce
     }
 
     /**
-     * Performs a copy from a source blob to a destination blob.
+     * Performs a copy from a source blob to a destination blob. Large blobs are
+     * copied with several rewrite calls, failed calls are resumed from the last
+     * completed one.
      *
      * @param srcBucket
      *            Source bucket name.
@@ -386,22 +1136,467 @@ public void deleteBlob(final String bucket, final String blobName) throws IOExce
      *            Destination bucket name.
      * @param dstBlobName
      *            Destination blob name.
+     * @return the copied blob.
      * @throws IOException
      */
-    public void copyBlob(final String srcBucket, final String srcBlobName, final String dstBucket,
+    public Blob copyBlob(final String srcBucket, final String srcBlobName, final String dstBucket,
             final String dstBlobName) throws IOException {
         final var sourceBlobId = BlobId.of(srcBucket, srcBlobName);
         final var destBlobId = BlobId.of(dstBucket, dstBlobName);
         final var request = CopyRequest.newBuilder().setSource(sourceBlobId).setTarget(destBlobId).build();
-        handleAccessDenied(() -> {
-            final var copyWriter = m_storage.copy(request);
+        return handleAccessDenied(() -> {
+            var copyWriter = startCopy(request);
+            var failedAttempts = 0;
             while (!copyWriter.isDone()) {
-                copyWriter.copyChunk();
+                // the captured state carries the rewrite token, restoring it resumes
+                // the rewrite instead of starting over
+                final RestorableState<CopyWriter> state = copyWriter.capture();
+                try {
+                    copyWriter.copyChunk();
+                    failedAttempts = 0;
+                } catch (StorageException e) {
+                    failedAttempts++;
+                    if (!e.isRetryable() || failedAttempts > MAX_REWRITE_RETRIES) {
+                        throw e;
+                    }
+                    copyWriter = state.restore();
+                }
+            }
+            return copyWriter.getResult();
+        });
+    }
+
+    /**
+     * Issues the first rewrite call of a copy, which is retried on transient
+     * errors like the following ones.
+     */
+    private CopyWriter startCopy(final CopyRequest request) {
+        for (var failedAttempts = 0;; failedAttempts++) {
+            try {
+                return m_storage.copy(request);
+            } catch (StorageException e) {
+                if (!e.isRetryable() || failedAttempts >= MAX_REWRITE_RETRIES) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the given blobs with batch requests of up to 100 deletes each. The
+     * names are consumed while earlier batches are already running, at most the
+     * configured number of batches run concurrently. Blobs that do not exist
+     * (anymore) are not considered a failure.
+     *
+     * @param bucket
+     *            the bucket name.
+     * @param blobNames
+     *            the names of the blobs to delete.
+     * @return the failed deletes, by blob name. Empty if all blobs have been
+     *         deleted.
+     * @throws IOException
+     *             if a whole batch request failed.
+     */
+    public Map<String, StorageException> deleteBlobs(final String bucket, final Iterator<String> blobNames)
+            throws IOException {
+        final Map<String, StorageException> failures = new ConcurrentSkipListMap<>();
+        final var permits = new Semaphore(m_maxConcurrentRequests);
+        final var tasks = new TaskGroup();
+        try {
+            while (blobNames.hasNext()) {
+                final List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                while (batch.size() < MAX_BATCH_SIZE && blobNames.hasNext()) {
+                    batch.add(blobNames.next());
+                }
+                tasks.submit(permits, () -> {
+                    deleteBatch(bucket, batch, failures);
+                    return null;
+                });
+            }
+            tasks.awaitAll();
+        } finally {
+            tasks.cancelAll();
+        }
+        return failures;
+    }
+
+    private void deleteBatch(final String bucket, final List<String> blobNames,
+            final Map<String, StorageException> failures) throws IOException {
+        if (!m_batchSupported) {
+            for (final var blobName : blobNames) {
+                try {
+                    m_storage.delete(bucket, blobName);
+                } catch (StorageException e) {
+                    if (e.getCode() != HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+                        failures.put(blobName, e);
+                    }
+                }
+            }
+            return;
+        }
+
+        handleAccessDenied(() -> {
+            final var batch = m_storage.batch();
+            for (final var blobName : blobNames) {
+                batch.delete(bucket, blobName).notify(new BatchResult.Callback<Boolean, StorageException>() {
+                    @Override
+                    public void success(final Boolean result) {
+                        // false means that the blob does not exist (anymore), which is fine
+                    }
+
+                    @Override
+                    public void error(final StorageException exception) {
+                        if (exception.getCode() != HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+                            failures.put(blobName, exception);
+                        }
+                    }
+                });
+            }
+            batch.submit();
+            return null;
+        });
+    }
+
+    /**
+     * Copies all blobs whose name starts with the given source prefix to the
+     * destination bucket, replacing the source prefix by the destination prefix.
+     * The source is listed once, the copies are performed as server-side rewrites
+     * of which at most the configured number run concurrently. No data flows
+     * through this client, also not across buckets and locations.
+     *
+     * @param srcBucket
+     *            Source bucket name.
+     * @param srcPrefix
+     *            (Optional) Separator-terminated source blob name prefix.
+     * @param dstBucket
+     *            Destination bucket name.
+     * @param dstPrefix
+     *            (Optional) Separator-terminated destination blob name prefix.
+     * @return the failed copies, by source blob name. Empty if all blobs have
+     *         been copied.
+     * @throws IOException
+     *             if the source could not be listed.
+     */
+    public Map<String, IOException> copyBlobs(final String srcBucket, final String srcPrefix, final String dstBucket,
+            final String dstPrefix) throws IOException {
+        try (final var srcNames = streamAllBlobNames(srcBucket, srcPrefix)) {
+            return copyBlobs(srcBucket, srcPrefix, srcNames.iterator(), dstBucket, dstPrefix);
+        }
+    }
+
+    /**
+     * Copies the given blobs, see
+     * {@link #copyBlobs(String, String, String, String)}.
+     *
+     * @param srcNames
+     *            the names of the source blobs, which all start with the source
+     *            prefix.
+     */
+    Map<String, IOException> copyBlobs(final String srcBucket, final String srcPrefix, final Iterator<String> srcNames,
+            final String dstBucket, final String dstPrefix) throws IOException {
+        final var srcPrefixLength = StringUtils.length(srcPrefix);
+        final var dstPrefixOrEmpty = StringUtils.defaultString(dstPrefix);
+
+        final Map<String, IOException> failures = new ConcurrentSkipListMap<>();
+        final var permits = new Semaphore(m_maxConcurrentRequests);
+        final var tasks = new TaskGroup();
+        try {
+            while (srcNames.hasNext()) {
+                final var srcName = srcNames.next();
+                final var dstName = dstPrefixOrEmpty + srcName.substring(srcPrefixLength);
+                if (dstName.isEmpty()) {
+                    // marker object of the source directory copied to a bucket
+                    continue;
+                }
+                tasks.submit(permits, () -> {
+                    try {
+                        copyBlob(srcBucket, srcName, dstBucket, dstName);
+                    } catch (IOException e) {
+                        failures.put(srcName, e);
+                    } catch (StorageException e) {
+                        failures.put(srcName, new IOException(e.getMessage(), e));
+                    }
+                    return null;
+                });
+            }
+            tasks.awaitAll();
+        } finally {
+            tasks.cancelAll();
+        }
+        return failures;
+    }
+
+    /**
+     * Uploads many local files concurrently, using at most the configured number
+     * of concurrent requests. Small files are uploaded with a single request each,
+     * larger files as in {@link #insertBlob(String, String, Path)}. A failing
+     * file does not stop the others. Not used by the file handling nodes, see
+     * {@link CloudStorageFileSystem#uploadFiles(Map, CloudStorageTransferListener)}.
+     *
+     * @param transfers
+     *            the files to upload.
+     * @param listener
+     *            receives the progress, may be <code>null</code>.
+     * @return the failed uploads. Empty if all files have been uploaded.
+     * @throws IOException
+     *             if the uploads were interrupted.
+     */
+    public Map<CloudStorageTransfer, IOException> uploadFiles(final List<CloudStorageTransfer> transfers,
+            final CloudStorageTransferListener listener) throws IOException {
+        return transferFiles(transfers, listener, transfer -> {
+            insertBlob(transfer.getBucket(), transfer.getBlobName(), transfer.getLocalFile());
+            return Files.size(transfer.getLocalFile());
+        });
+    }
+
+    /**
+     * Downloads many blobs concurrently to local files, using at most the
+     * configured number of concurrent requests. Existing local files are
+     * replaced. A failing file does not stop the others.
+     *
+     * @param transfers
+     *            the files to download.
+     * @param listener
+     *            receives the progress, may be <code>null</code>.
+     * @return the failed downloads. Empty if all files have been downloaded.
+     * @throws IOException
+     *             if the downloads were interrupted.
+     */
+    public Map<CloudStorageTransfer, IOException> downloadFiles(final List<CloudStorageTransfer> transfers,
+            final CloudStorageTransferListener listener) throws IOException {
+        return transferFiles(transfers, listener, transfer -> {
+            try (final var in = getInputStream(transfer.getBucket(), transfer.getBlobName())) {
+                return Files.copy(in, transfer.getLocalFile(), StandardCopyOption.REPLACE_EXISTING);
             }
-            return true;
         });
     }
 
+    private Map<CloudStorageTransfer, IOException> transferFiles(final List<CloudStorageTransfer> transfers,
+            final CloudStorageTransferListener listener, final TransferFunction function) throws IOException {
+        final Map<CloudStorageTransfer, IOException> failures = new ConcurrentHashMap<>();
+        final var progress = new TransferProgress(transfers.size(), listener);
+        final var permits = new Semaphore(m_maxConcurrentRequests);
+        final var tasks = new TaskGroup();
+        try {
+            for (final var transfer : transfers) {
+                tasks.submit(permits, () -> {
+                    try {
+                        progress.completed(function.transfer(transfer));
+                    } catch (IOException e) {
+                        failures.put(transfer, e);
+                        progress.failed();
+                    } catch (StorageException e) {
+                        failures.put(transfer, new IOException(e.getMessage(), e));
+                        progress.failed();
+                    }
+                    return null;
+                });
+            }
+            tasks.awaitAll();
+        } finally {
+            tasks.cancelAll();
+        }
+        return failures;
+    }
+
+    @FunctionalInterface
+    private interface TransferFunction {
+        /**
+         * @return the number of transferred bytes.
+         */
+        long transfer(CloudStorageTransfer transfer) throws IOException;
+    }
+
+    /**
+     * Aggregates the progress of the files of a bulk transfer.
+     */
+    private static final class TransferProgress {
+
+        private final int m_totalFiles;
+
+        private final CloudStorageTransferListener m_listener;
+
+        private int m_completedFiles;
+
+        private int m_failedFiles;
+
+        private long m_transferredBytes;
+
+        TransferProgress(final int totalFiles, final CloudStorageTransferListener listener) {
+            m_totalFiles = totalFiles;
+            m_listener = listener;
+        }
+
+        synchronized void completed(final long bytes) {
+            m_completedFiles++;
+            m_transferredBytes += bytes;
+            notifyListener();
+        }
+
+        synchronized void failed() {
+            m_failedFiles++;
+            notifyListener();
+        }
+
+        private void notifyListener() {
+            if (m_listener != null) {
+                m_listener.progress(m_completedFiles, m_failedFiles, m_totalFiles, m_transferredBytes);
+            }
+        }
+    }
+
+    /**
+     * Tasks which run on the transfer executor and are awaited or cancelled
+     * together. {@link Future#get()} returns immediately once a future has been
+     * cancelled, so {@link #cancelAll()} tracks the completion of the tasks
+     * itself. It returns only once none of them is running anymore, after which
+     * the resources used by the tasks can be released.
+     */
+    final class TaskGroup {
+
+        private final List<Future<?>> m_futures = new ArrayList<>();
+
+        private final List<TrackedTask> m_tasks = new ArrayList<>();
+
+        void submit(final Callable<?> task) {
+            final var tracked = new TrackedTask(task);
+            m_tasks.add(tracked);
+            m_futures.add(m_executor.submit(tracked));
+        }
+
+        /**
+         * Acquires a permit and submits the given task. The permit is released
+         * when the task is done.
+         */
+        void submit(final Semaphore permits, final Callable<?> task) throws InterruptedIOException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                final var ioe = new InterruptedIOException();
+                ioe.initCause(e);
+                throw ioe;
+            }
+            submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        /**
+         * Waits for all tasks to complete and rethrows the first failure.
+         */
+        void awaitAll() throws IOException {
+            for (final var future : m_futures) {
+                await(future);
+            }
+        }
+
+        /**
+         * Cancels the tasks and waits until none of them is running anymore. Tasks
+         * that have not started yet will not start anymore.
+         */
+        void cancelAll() {
+            m_futures.forEach(f -> f.cancel(true));
+            var interrupted = false;
+            for (final var task : m_tasks) {
+                while (true) {
+                    try {
+                        task.awaitFinished();
+                        break;
+                    } catch (InterruptedException e) { // NOSONAR interrupt status is restored below
+                        // the tasks have been interrupted already, they finish soon
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Task whose completion can be awaited also after its future has been
+     * cancelled.
+     */
+    private static final class TrackedTask implements Callable<Object> {
+
+        private final Callable<?> m_task;
+
+        private final AtomicBoolean m_claimed = new AtomicBoolean();
+
+        private final CountDownLatch m_finished = new CountDownLatch(1);
+
+        TrackedTask(final Callable<?> task) {
+            m_task = task;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            if (!m_claimed.compareAndSet(false, true)) {
+                // cancelled before it started
+                return null;
+            }
+            try {
+                return m_task.call();
+            } finally {
+                m_finished.countDown();
+            }
+        }
+
+        void awaitFinished() throws InterruptedException {
+            if (m_claimed.compareAndSet(false, true)) {
+                // not started yet, it won't run anymore
+                m_finished.countDown();
+            }
+            m_finished.await();
+        }
+    }
+
+    /**
+     * @return a new group of tasks which run on the transfer executor of this
+     *         client.
+     */
+    TaskGroup newTaskGroup() {
+        return new TaskGroup();
+    }
+
+    /**
+     * @return the maximum number of concurrent requests of bulk operations.
+     */
+    int getMaxConcurrentRequests() {
+        return m_maxConcurrentRequests;
+    }
+
+    /**
+     * Runs the given task on the transfer executor of this client.
+     *
+     * @param task
+     *            the task to run.
+     * @return the future of the task.
+     */
+    <T> Future<T> submit(final Callable<T> task) {
+        return m_executor.submit(task);
+    }
+
+    /**
+     * Releases the resources held by this client. The shared {@link Storage} is
+     * closed once the last client using it is closed.
+     */
+    public void close() {
+        m_executor.shutdownNow();
+        if (m_contentCacheSize > 0) {
+            CloudStorageContentCache.getInstance().unregister(m_contentCacheSize);
+        }
+        if (m_storageLease != null) {
+            m_storageLease.release();
+        }
+    }
+
     private static <T> T handleAccessDenied(final IOSupplier<T> r) throws IOException {
         try {
             return r.getWithException();
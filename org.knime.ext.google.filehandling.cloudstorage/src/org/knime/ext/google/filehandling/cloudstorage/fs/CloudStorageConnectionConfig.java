@@ -66,10 +66,65 @@ public class CloudStorageConnectionConfig extends BaseFSConnectionConfig {
      */
     public static final int DEFAULT_TIMEOUT_SECONDS = 20;
 
+    /**
+     * Default chunk size (in bytes) of resumable uploads. Must be a multiple of
+     * 256 KiB.
+     */
+    public static final int DEFAULT_UPLOAD_CHUNK_SIZE = 16 * 1024 * 1024; // 16 MiB
+
+    /**
+     * Default minimum file size (in bytes) for parallel composite uploads, if
+     * they are enabled.
+     */
+    public static final long DEFAULT_COMPOSITE_UPLOAD_THRESHOLD = 150L * 1024 * 1024; // 150 MiB
+
+    /**
+     * Default number of parts of a parallel composite upload.
+     */
+    public static final int DEFAULT_COMPOSITE_UPLOAD_PARTS = 8;
+
+    /**
+     * Default minimum blob size (in bytes) for sliced downloads.
+     */
+    public static final long DEFAULT_SLICED_DOWNLOAD_THRESHOLD = 128L * 1024 * 1024; // 128 MiB
+
+    /**
+     * Default number of concurrent range requests of a sliced download.
+     */
+    public static final int DEFAULT_SLICED_DOWNLOAD_CONNECTIONS = 4;
+
+    /**
+     * Default maximum number of concurrent requests of bulk operations.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+
+    /**
+     * Default time to live (in seconds) of the entries of the attribute cache.
+     */
+    public static final int DEFAULT_ATTRIBUTE_CACHE_TTL_SECONDS = 6;
+
+    /**
+     * Default maximum number of entries of the attribute cache.
+     */
+    public static final int DEFAULT_ATTRIBUTE_CACHE_MAX_ENTRIES = 100_000;
+
     private String m_projectId;
     private boolean m_normalizePaths;
     private Duration m_connectionTimeOut;
     private Duration m_readTimeOut;
+    private int m_uploadChunkSize = DEFAULT_UPLOAD_CHUNK_SIZE;
+    private boolean m_useCompositeUploads;
+    private long m_compositeUploadThreshold = DEFAULT_COMPOSITE_UPLOAD_THRESHOLD;
+    private int m_compositeUploadParts = DEFAULT_COMPOSITE_UPLOAD_PARTS;
+    private long m_slicedDownloadThreshold = DEFAULT_SLICED_DOWNLOAD_THRESHOLD;
+    private int m_slicedDownloadConnections = DEFAULT_SLICED_DOWNLOAD_CONNECTIONS;
+    private int m_maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    private Duration m_attributeCacheTimeToLive = Duration.ofSeconds(DEFAULT_ATTRIBUTE_CACHE_TTL_SECONDS);
+    private int m_attributeCacheMaxEntries = DEFAULT_ATTRIBUTE_CACHE_MAX_ENTRIES;
+    private boolean m_useGrpc;
+    private boolean m_verifyChecksums = true;
+    private long m_contentCacheSize;
+    private String m_endpoint;
 
     private final Credentials m_credentials;
 
@@ -143,6 +198,233 @@ public void setNormalizePaths(final boolean normalizePaths) {
         m_normalizePaths = normalizePaths;
     }
 
+    /**
+     * @return the chunk size (in bytes) used for resumable uploads.
+     */
+    public int getUploadChunkSize() {
+        return m_uploadChunkSize;
+    }
+
+    /**
+     * @param uploadChunkSize
+     *            the chunk size (in bytes) used for resumable uploads. Must be a
+     *            multiple of 256 KiB.
+     */
+    public void setUploadChunkSize(final int uploadChunkSize) {
+        m_uploadChunkSize = uploadChunkSize;
+    }
+
+    /**
+     * @return whether large files are uploaded as parallel composite uploads.
+     */
+    public boolean isUseCompositeUploads() {
+        return m_useCompositeUploads;
+    }
+
+    /**
+     * Enables parallel composite uploads of large files, which are disabled by
+     * default. Composite objects only carry a CRC32C but no MD5 checksum, and
+     * the temporary parts count against early deletion charges and retention
+     * policies of the bucket.
+     *
+     * @param useCompositeUploads
+     *            whether large files are uploaded as parallel composite uploads.
+     */
+    public void setUseCompositeUploads(final boolean useCompositeUploads) {
+        m_useCompositeUploads = useCompositeUploads;
+    }
+
+    /**
+     * @return the minimum file size (in bytes) from which on files are uploaded
+     *         as parallel composite uploads.
+     */
+    public long getCompositeUploadThreshold() {
+        return m_compositeUploadThreshold;
+    }
+
+    /**
+     * @param compositeUploadThreshold
+     *            the minimum file size (in bytes) from which on files are
+     *            uploaded as parallel composite uploads.
+     */
+    public void setCompositeUploadThreshold(final long compositeUploadThreshold) {
+        m_compositeUploadThreshold = compositeUploadThreshold;
+    }
+
+    /**
+     * @return the number of parts that are uploaded concurrently in a parallel
+     *         composite upload.
+     */
+    public int getCompositeUploadParts() {
+        return m_compositeUploadParts;
+    }
+
+    /**
+     * Sets the number of parts that are uploaded concurrently in a parallel
+     * composite upload. Values smaller than two disable composite uploads, at most
+     * 32 parts are used. Note that composite objects only carry a CRC32C but no
+     * MD5 checksum.
+     *
+     * @param compositeUploadParts
+     *            the number of parts.
+     */
+    public void setCompositeUploadParts(final int compositeUploadParts) {
+        m_compositeUploadParts = compositeUploadParts;
+    }
+
+    /**
+     * @return the minimum blob size (in bytes) from which on blobs are
+     *         downloaded with several concurrent range requests.
+     */
+    public long getSlicedDownloadThreshold() {
+        return m_slicedDownloadThreshold;
+    }
+
+    /**
+     * @param slicedDownloadThreshold
+     *            the minimum blob size (in bytes) from which on blobs are
+     *            downloaded with several concurrent range requests.
+     */
+    public void setSlicedDownloadThreshold(final long slicedDownloadThreshold) {
+        m_slicedDownloadThreshold = slicedDownloadThreshold;
+    }
+
+    /**
+     * @return the number of concurrent range requests of a sliced download.
+     */
+    public int getSlicedDownloadConnections() {
+        return m_slicedDownloadConnections;
+    }
+
+    /**
+     * @param slicedDownloadConnections
+     *            the number of concurrent range requests of a sliced download.
+     *            Values smaller than two disable sliced downloads.
+     */
+    public void setSlicedDownloadConnections(final int slicedDownloadConnections) {
+        m_slicedDownloadConnections = slicedDownloadConnections;
+    }
+
+    /**
+     * @return the maximum number of concurrent requests of bulk operations, such
+     *         as batched deletes.
+     */
+    public int getMaxConcurrentRequests() {
+        return m_maxConcurrentRequests;
+    }
+
+    /**
+     * @param maxConcurrentRequests
+     *            the maximum number of concurrent requests of bulk operations,
+     *            such as batched deletes.
+     */
+    public void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+        m_maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * @return the time to live of the entries of the attribute cache.
+     */
+    public Duration getAttributeCacheTimeToLive() {
+        return m_attributeCacheTimeToLive;
+    }
+
+    /**
+     * @param attributeCacheTimeToLive
+     *            the time to live of the entries of the attribute cache. Zero
+     *            disables the cache.
+     */
+    public void setAttributeCacheTimeToLive(final Duration attributeCacheTimeToLive) {
+        m_attributeCacheTimeToLive = attributeCacheTimeToLive;
+    }
+
+    /**
+     * @return the maximum number of entries of the attribute cache.
+     */
+    public int getAttributeCacheMaxEntries() {
+        return m_attributeCacheMaxEntries;
+    }
+
+    /**
+     * @param attributeCacheMaxEntries
+     *            the maximum number of entries of the attribute cache. When it is
+     *            reached, the least recently used entries are evicted. Zero
+     *            disables the cache.
+     */
+    public void setAttributeCacheMaxEntries(final int attributeCacheMaxEntries) {
+        m_attributeCacheMaxEntries = attributeCacheMaxEntries;
+    }
+
+    /**
+     * @return whether to verify the CRC32C checksums of uploaded and downloaded
+     *         data.
+     */
+    public boolean isVerifyChecksums() {
+        return m_verifyChecksums;
+    }
+
+    /**
+     * @param verifyChecksums
+     *            whether to verify the CRC32C checksums of uploaded and
+     *            downloaded data.
+     */
+    public void setVerifyChecksums(final boolean verifyChecksums) {
+        m_verifyChecksums = verifyChecksums;
+    }
+
+    /**
+     * @return the maximum size (in bytes) of the local content cache, zero if
+     *         blob contents are not cached.
+     */
+    public long getContentCacheSize() {
+        return m_contentCacheSize;
+    }
+
+    /**
+     * @param contentCacheSize
+     *            the maximum size (in bytes) of the local content cache, which
+     *            keeps the contents of downloaded blobs on disk until they
+     *            change. Zero disables the cache.
+     */
+    public void setContentCacheSize(final long contentCacheSize) {
+        m_contentCacheSize = contentCacheSize;
+    }
+
+    /**
+     * @return whether to use the gRPC (Storage v2) transport instead of the
+     *         JSON API over HTTP.
+     */
+    public boolean isUseGrpc() {
+        return m_useGrpc;
+    }
+
+    /**
+     * @param useGrpc
+     *            whether to use the gRPC (Storage v2) transport instead of the
+     *            JSON API over HTTP.
+     */
+    public void setUseGrpc(final boolean useGrpc) {
+        m_useGrpc = useGrpc;
+    }
+
+    /**
+     * @return the endpoint which overrides the default endpoint of the selected
+     *         transport, or <code>null</code> to use the default.
+     */
+    public String getEndpoint() {
+        return m_endpoint;
+    }
+
+    /**
+     * @param endpoint
+     *            the endpoint which overrides the default endpoint of the
+     *            selected transport, e.g. the address of a local emulator, or
+     *            <code>null</code> to use the default.
+     */
+    public void setEndpoint(final String endpoint) {
+        m_endpoint = endpoint;
+    }
+
     /**
      * @return the credentials
      */
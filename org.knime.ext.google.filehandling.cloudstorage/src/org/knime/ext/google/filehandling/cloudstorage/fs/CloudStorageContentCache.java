@@ -0,0 +1,492 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.knime.core.node.KNIMEConstants;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.util.FileUtil;
+
+import com.google.cloud.storage.BlobId;
+
+/**
+ * Local on-disk cache of blob contents, shared by all Cloud Storage
+ * connections of this KNIME instance. Entries are keyed by bucket, name and
+ * generation: a new version of an object always has a new generation, so the
+ * metadata request that precedes every download is enough to tell whether a
+ * cached copy is still fresh.
+ *
+ * <p>
+ * Contents are written to the cache while they are downloaded and only become
+ * visible once the download was read completely (and its checksum verified).
+ * The total size of the cache is limited to the largest budget of the
+ * connections that use it, by evicting the least recently used entries. Once
+ * the last connection is closed, the entries are kept within its budget for
+ * the next executions. Entries which are currently being read are never
+ * evicted, deleting their files would fail on Windows.
+ * </p>
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageContentCache {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(CloudStorageContentCache.class);
+
+    private static final CloudStorageContentCache INSTANCE = new CloudStorageContentCache();
+
+    private final Map<String, Entry> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Budgets of the connections that use the cache, with their number. */
+    private final NavigableMap<Long, Integer> m_budgets = new TreeMap<>();
+
+    private long m_maxSize;
+
+    private long m_size;
+
+    private Path m_directory;
+
+    CloudStorageContentCache() {
+    }
+
+    /**
+     * @return the content cache of this KNIME instance.
+     */
+    static CloudStorageContentCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers a connection which uses the cache.
+     *
+     * @param budget
+     *            the maximum total size of the cache the connection asks for.
+     */
+    synchronized void register(final long budget) {
+        m_budgets.merge(budget, 1, Integer::sum);
+        m_maxSize = m_budgets.lastKey();
+    }
+
+    /**
+     * Unregisters a connection which has been registered with the given budget.
+     * The cache shrinks if it was the largest budget of the remaining
+     * connections.
+     *
+     * @param budget
+     *            the budget the connection has been registered with.
+     */
+    synchronized void unregister(final long budget) {
+        m_budgets.computeIfPresent(budget, (b, count) -> count > 1 ? count - 1 : null);
+        if (!m_budgets.isEmpty()) {
+            m_maxSize = m_budgets.lastKey();
+            evict(0);
+        }
+    }
+
+    private static String toKey(final BlobId blobId) {
+        return blobId.getBucket() + "/" + blobId.getName() + "#" + blobId.getGeneration();
+    }
+
+    /**
+     * @param blobId
+     *            the blob id, including the generation.
+     * @return an input stream on the cached content of the blob, or
+     *         <code>null</code> if it is not cached.
+     * @throws IOException
+     */
+    synchronized InputStream newInputStream(final BlobId blobId) throws IOException {
+        final var entry = getEntry(blobId);
+        if (entry == null) {
+            return null;
+        }
+        final var in = Files.newInputStream(entry.m_file);
+        entry.m_readers++;
+        return new FilterInputStream(in) {
+            private boolean m_closed;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!m_closed) {
+                        m_closed = true;
+                        release(entry);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @param blobId
+     *            the blob id, including the generation.
+     * @return a read-only channel on the cached content of the blob, or
+     *         <code>null</code> if it is not cached.
+     * @throws IOException
+     */
+    synchronized SeekableByteChannel newByteChannel(final BlobId blobId) throws IOException {
+        final var entry = getEntry(blobId);
+        if (entry == null) {
+            return null;
+        }
+        final var channel = FileChannel.open(entry.m_file, StandardOpenOption.READ);
+        entry.m_readers++;
+        return new ReaderChannel(channel, entry);
+    }
+
+    private synchronized void release(final Entry entry) {
+        entry.m_readers--;
+    }
+
+    private Entry getEntry(final BlobId blobId) {
+        final var key = toKey(blobId);
+        final var entry = m_entries.get(key);
+        if (entry != null && !Files.isRegularFile(entry.m_file)) {
+            // deleted behind our back, e.g. by a temp directory cleanup
+            m_entries.remove(key);
+            m_size -= entry.m_size;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Wraps the given download stream, so that the content is added to the
+     * cache once it was read completely. If the blob does not fit into the
+     * budget or the cache file cannot be created, the stream is returned as is.
+     *
+     * @param blobId
+     *            the blob id, including the generation.
+     * @param size
+     *            the size of the blob.
+     * @param in
+     *            the download stream of the blob.
+     * @return the wrapped stream.
+     */
+    InputStream cachingInputStream(final BlobId blobId, final long size, final InputStream in) {
+        if (size > getMaxSize()) {
+            return in;
+        }
+
+        try {
+            final var file = Files.createTempFile(getDirectory(), "blob-", ".bin");
+            return new CachingInputStream(in, file, toKey(blobId), size);
+        } catch (IOException ex) {
+            LOGGER.debug("Could not create content cache file: " + ex.getMessage(), ex);
+            return in;
+        }
+    }
+
+    synchronized long getMaxSize() {
+        return m_maxSize;
+    }
+
+    /**
+     * @return the total size of the cached contents.
+     */
+    synchronized long getSize() {
+        return m_size;
+    }
+
+    private synchronized Path getDirectory() throws IOException {
+        if (m_directory == null) {
+            m_directory = FileUtil
+                    .createTempDir("knime-gcs-content-cache", new File(KNIMEConstants.getKNIMETempDir()), true)
+                    .toPath();
+        }
+        return m_directory;
+    }
+
+    private synchronized void commit(final String key, final Path file, final long size) {
+        if (m_entries.containsKey(key)) {
+            // the same generation was downloaded concurrently
+            delete(file);
+            return;
+        }
+
+        evict(size);
+        if (m_size + size > m_maxSize) {
+            // the remaining entries are being read
+            delete(file);
+            return;
+        }
+
+        m_entries.put(key, new Entry(file, size));
+        m_size += size;
+    }
+
+    /**
+     * Evicts the least recently used entries which are not being read, until
+     * the given number of bytes fits into the budget.
+     */
+    private void evict(final long required) {
+        final Iterator<Entry> iter = m_entries.values().iterator();
+        while (m_size + required > m_maxSize && iter.hasNext()) {
+            final var eldest = iter.next();
+            if (eldest.m_readers == 0) {
+                iter.remove();
+                m_size -= eldest.m_size;
+                delete(eldest.m_file);
+            }
+        }
+    }
+
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOGGER.debug("Could not delete content cache file " + file + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Path m_file;
+
+        private final long m_size;
+
+        /** Number of open streams and channels on the file. */
+        private int m_readers;
+
+        Entry(final Path file, final long size) {
+            m_file = file;
+            m_size = size;
+        }
+    }
+
+    /**
+     * Channel on a cached file, which releases the entry when it is closed.
+     */
+    private final class ReaderChannel implements SeekableByteChannel {
+
+        private final FileChannel m_channel;
+
+        private final Entry m_entry;
+
+        private boolean m_closed;
+
+        ReaderChannel(final FileChannel channel, final Entry entry) {
+            m_channel = channel;
+            m_entry = entry;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            return m_channel.read(dst);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            return m_channel.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return m_channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(final long newPosition) throws IOException {
+            m_channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return m_channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long size) throws IOException {
+            m_channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return m_channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                m_channel.close();
+            } finally {
+                if (!m_closed) {
+                    m_closed = true;
+                    release(m_entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies everything that is read into the cache file. Caching is abandoned
+     * (without affecting the reader) if writing fails, the stream is skipped or
+     * closed before its end.
+     */
+    private final class CachingInputStream extends FilterInputStream {
+
+        private final Path m_file;
+
+        private final String m_key;
+
+        private final long m_size;
+
+        private OutputStream m_out;
+
+        private long m_written;
+
+        CachingInputStream(final InputStream in, final Path file, final String key, final long size)
+                throws IOException {
+            super(in);
+            m_file = file;
+            m_key = key;
+            m_size = size;
+            m_out = Files.newOutputStream(file);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b < 0) {
+                finish();
+            } else if (m_out != null) {
+                try {
+                    m_out.write(b);
+                    m_written++;
+                } catch (IOException ex) {
+                    abandon(ex);
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int n = super.read(b, off, len);
+            if (n < 0) {
+                finish();
+            } else if (n > 0 && m_out != null) {
+                try {
+                    m_out.write(b, off, n);
+                    m_written += n;
+                } catch (IOException ex) {
+                    abandon(ex);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            abandon(null);
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon(null);
+            }
+        }
+
+        private void finish() {
+            if (m_out == null) {
+                return;
+            }
+
+            try {
+                m_out.close();
+                m_out = null;
+                if (m_written == m_size) {
+                    commit(m_key, m_file, m_size);
+                } else {
+                    delete(m_file);
+                }
+            } catch (IOException ex) {
+                abandon(ex);
+            }
+        }
+
+        private void abandon(final IOException cause) {
+            if (cause != null) {
+                LOGGER.debug("Could not write content cache file: " + cause.getMessage(), cause);
+            }
+            if (m_out != null) {
+                try {
+                    m_out.close();
+                } catch (IOException ex) { // NOSONAR the file is deleted anyway
+                }
+                m_out = null;
+                delete(m_file);
+            }
+        }
+    }
+}
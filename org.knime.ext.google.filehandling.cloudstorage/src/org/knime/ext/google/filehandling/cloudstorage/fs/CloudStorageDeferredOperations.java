@@ -0,0 +1,247 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Operations on the files of a listed directory whose execution is deferred,
+ * so that they can be sent in batches and run concurrently while the caller
+ * moves on to the next file. Deletes are collected into batch requests of up
+ * to {@value CloudStorageClient#MAX_BATCH_SIZE} deletes, copies run as
+ * concurrent server-side rewrites. At most the configured number of concurrent
+ * requests run at the same time.
+ *
+ * <p>
+ * The operations are owned by the thread iterating the directory. They are
+ * waited for by {@link #flush()}, which reports the failed operations.
+ * </p>
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageDeferredOperations {
+
+    private final CloudStorageFileSystem m_fs;
+
+    private final String m_bucket;
+
+    private final String m_dir;
+
+    private final List<String> m_deletes = new ArrayList<>();
+
+    /**
+     * Paths of the objects with an operation that has not been waited for, i.e.
+     * deleted objects as well as sources and targets of copies.
+     */
+    private final NavigableSet<String> m_pending = new TreeSet<>();
+
+    private final Map<String, FileSystemException> m_failures = new ConcurrentSkipListMap<>();
+
+    private CloudStorageClient.TaskGroup m_tasks;
+
+    private Semaphore m_permits;
+
+    /**
+     * @param fs
+     *            the file system to run the operations on.
+     * @param bucket
+     *            the bucket of the listed directory.
+     * @param dir
+     *            the listed directory, used in error messages.
+     */
+    CloudStorageDeferredOperations(final CloudStorageFileSystem fs, final String bucket, final String dir) {
+        m_fs = fs;
+        m_bucket = bucket;
+        m_dir = dir;
+    }
+
+    /**
+     * Deletes the given blob of the listed bucket. The delete is sent once
+     * enough deletes have been collected for a batch request, or when flushing.
+     *
+     * @param blobName
+     *            the name of the blob to delete.
+     * @throws IOException
+     *             if interrupted while waiting for a free request slot, or if the
+     *             blob is the source of a failed copy.
+     */
+    void delete(final String blobName) throws IOException {
+        final var path = toPath(m_bucket, blobName);
+        if (m_pending.contains(path)) {
+            // the blob is copied, e.g. when moving it
+            flush();
+        }
+        m_pending.add(path);
+        m_deletes.add(blobName);
+        if (m_deletes.size() >= CloudStorageClient.MAX_BATCH_SIZE) {
+            submitDeletes();
+        }
+    }
+
+    /**
+     * Copies the given file with a server-side rewrite, which starts right away.
+     * The attributes of the target are cached once it has been written.
+     *
+     * @param source
+     *            the file to copy.
+     * @param target
+     *            the target file.
+     * @throws IOException
+     *             if interrupted while waiting for a free request slot.
+     */
+    @SuppressWarnings("resource")
+    void copy(final CloudStoragePath source, final CloudStoragePath target) throws IOException {
+        final var sourcePath = toPath(source.getBucketName(), source.getBlobName());
+        final var targetPath = toPath(target.getBucketName(), target.getBlobName());
+        m_pending.add(sourcePath);
+        m_pending.add(targetPath);
+
+        final var client = m_fs.getClient();
+        submit(() -> {
+            try {
+                final var blob = client.copyBlob(source.getBucketName(), source.getBlobName(),
+                        target.getBucketName(), target.getBlobName());
+                m_fs.cacheWrittenBlob(target, blob);
+            } catch (IOException | RuntimeException e) {
+                m_fs.cacheWrittenBlob(target, null);
+                m_failures.put(sourcePath, new FileSystemException(sourcePath, targetPath, e.getMessage()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @param path
+     *            a path in the form <code>/bucket/name</code>.
+     * @return whether an operation on the given path, or below it, has not been
+     *         waited for.
+     */
+    boolean isPending(final String path) {
+        final var next = m_pending.ceiling(path);
+        return next != null && next.startsWith(path);
+    }
+
+    /**
+     * Sends the collected operations and waits for all operations to finish.
+     *
+     * @throws IOException
+     *             if some of the operations failed. The failed objects are
+     *             attached as suppressed exceptions.
+     */
+    void flush() throws IOException {
+        if (m_pending.isEmpty()) {
+            return;
+        }
+        try {
+            submitDeletes();
+            if (m_tasks != null) {
+                m_tasks.awaitAll();
+            }
+        } finally {
+            if (m_tasks != null) {
+                m_tasks.cancelAll();
+            }
+            m_tasks = null;
+            m_permits = null;
+            m_deletes.clear();
+            m_pending.clear();
+        }
+
+        if (!m_failures.isEmpty()) {
+            final var ioe = new IOException(
+                    String.format("Failed to delete or copy %d object(s) in %s", m_failures.size(), m_dir));
+            m_failures.values().forEach(ioe::addSuppressed);
+            m_failures.clear();
+            throw ioe;
+        }
+    }
+
+    @SuppressWarnings("resource")
+    private void submitDeletes() throws IOException {
+        if (m_deletes.isEmpty()) {
+            return;
+        }
+        final var names = List.copyOf(m_deletes);
+        m_deletes.clear();
+        final var client = m_fs.getClient();
+        submit(() -> {
+            try {
+                client.deleteBlobs(m_bucket, names.iterator()).forEach((name, e) -> addDeleteFailure(name, e));
+            } catch (IOException | RuntimeException e) {
+                // the whole batch request failed
+                names.forEach(name -> addDeleteFailure(name, e));
+            }
+            return null;
+        });
+    }
+
+    private void addDeleteFailure(final String blobName, final Exception e) {
+        final var path = toPath(m_bucket, blobName);
+        m_failures.put(path, new FileSystemException(path, null, e.getMessage()));
+    }
+
+    @SuppressWarnings("resource")
+    private void submit(final Callable<?> task) throws IOException {
+        if (m_tasks == null) {
+            m_tasks = m_fs.getClient().newTaskGroup();
+            m_permits = new Semaphore(m_fs.getClient().getMaxConcurrentRequests());
+        }
+        m_tasks.submit(m_permits, task);
+    }
+
+    private static String toPath(final String bucket, final String blobName) {
+        return CloudStorageFileSystem.PATH_SEPARATOR + bucket + CloudStorageFileSystem.PATH_SEPARATOR + blobName;
+    }
+}
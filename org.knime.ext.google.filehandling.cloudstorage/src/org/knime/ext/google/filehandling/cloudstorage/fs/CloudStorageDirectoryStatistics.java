@@ -0,0 +1,135 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Total size and number of the objects below a directory, as computed by
+ * {@link CloudStorageFileSystem#aggregateStatistics(CloudStoragePath)}.
+ * Directory marker objects are not counted.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class CloudStorageDirectoryStatistics {
+
+    private final Map<String, CloudStorageDirectoryStatistics> m_folders = new TreeMap<>();
+
+    private long m_size;
+
+    private long m_objectCount;
+
+    CloudStorageDirectoryStatistics() {
+    }
+
+    /**
+     * Adds an object below the directory to these statistics, and to the
+     * statistics of its top-level folder unless it is directly in the directory.
+     * Directory marker objects only make their folder known.
+     *
+     * @param relativeName
+     *            the name of the object relative to the directory.
+     * @param size
+     *            the size of the object.
+     */
+    void addObject(final String relativeName, final long size) {
+        final var separator = relativeName.indexOf(CloudStorageFileSystem.PATH_SEPARATOR);
+        final var folder = separator < 0 ? null : getOrCreateFolder(relativeName.substring(0, separator));
+        if (relativeName.isEmpty() || relativeName.endsWith(CloudStorageFileSystem.PATH_SEPARATOR)) {
+            return;
+        }
+
+        add(size);
+        if (folder != null) {
+            folder.add(size);
+        }
+    }
+
+    private void add(final long size) {
+        m_size += size;
+        m_objectCount++;
+    }
+
+    /**
+     * @param name
+     *            the name of a top-level folder.
+     * @return the statistics of the folder, which are created if necessary.
+     */
+    CloudStorageDirectoryStatistics getOrCreateFolder(final String name) {
+        return m_folders.computeIfAbsent(name, n -> new CloudStorageDirectoryStatistics());
+    }
+
+    /**
+     * @return the total size in bytes of all objects below the directory.
+     */
+    public long getSize() {
+        return m_size;
+    }
+
+    /**
+     * @return the number of objects below the directory.
+     */
+    public long getObjectCount() {
+        return m_objectCount;
+    }
+
+    /**
+     * @return the statistics of the top-level folders (buckets, for the root
+     *         directory) of the directory, by folder name. Objects directly in
+     *         the directory are only included in the totals. The statistics of
+     *         the folders do not have folders themselves.
+     */
+    public Map<String, CloudStorageDirectoryStatistics> getFolders() {
+        return Collections.unmodifiableMap(m_folders);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, objects=%d, folders=%d", m_size, m_objectCount, m_folders.size());
+    }
+}
@@ -59,8 +59,6 @@
  */
 public class CloudStorageFSConnection extends BaseFSConnection {
 
-    private static final long CACHE_TTL_MILLIS = 6000;
-
     private final CloudStorageFileSystem m_filesystem;
 
     /**
@@ -72,7 +70,7 @@ public class CloudStorageFSConnection extends BaseFSConnection {
      */
     @SuppressWarnings("unused")
     public CloudStorageFSConnection(final CloudStorageConnectionConfig config) {
-        m_filesystem = new CloudStorageFileSystem(config, CACHE_TTL_MILLIS);
+        m_filesystem = new CloudStorageFileSystem(config, config.getAttributeCacheTimeToLive().toMillis());
     }
 
     @Override
@@ -48,13 +48,31 @@
  */
 package org.knime.ext.google.filehandling.cloudstorage.fs;
 
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang3.StringUtils;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
 import org.knime.filehandling.core.connections.base.BaseFileSystem;
+import org.knime.filehandling.core.connections.base.attributes.BaseFileAttributes;
 
 import com.google.auth.Credentials;
+import com.google.cloud.storage.BlobInfo;
 
 /**
  * Google Cloud Storage implementation of the {@link FileSystem} interface.
@@ -63,6 +81,8 @@
  */
 public class CloudStorageFileSystem extends BaseFileSystem<CloudStoragePath> {
 
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(CloudStorageFileSystem.class);
+
     /**
      * Character to use as path separator
      */
@@ -74,6 +94,12 @@ public class CloudStorageFileSystem extends BaseFileSystem<CloudStoragePath> {
 
     private final Credentials m_credentials;
 
+    private final CloudStorageAttributesCache m_attributesCache;
+
+    private final Map<Duration, CloudStorageUrlSigner> m_urlSigners = new ConcurrentHashMap<>();
+
+    private final CloudStorageTreeWalker m_treeWalker;
+
     /**
      * Constructs {@link CloudStorageFileSystem} for a given URI.
      *
@@ -83,17 +109,37 @@ public class CloudStorageFileSystem extends BaseFileSystem<CloudStoragePath> {
      *            The time to live for cached elements in milliseconds.
      */
     public CloudStorageFileSystem(final CloudStorageConnectionConfig config, final long cacheTTL) {
+        this(config, cacheTTL, new CloudStorageClient(config));
+    }
+
+    /**
+     * Constructs {@link CloudStorageFileSystem} with the given client, e.g. one
+     * that works with a stand-in storage.
+     *
+     * @param config
+     *            Connection configuration
+     * @param cacheTTL
+     *            The time to live for cached elements in milliseconds.
+     * @param client
+     *            The client to use, closed together with the file system.
+     */
+    CloudStorageFileSystem(final CloudStorageConnectionConfig config, final long cacheTTL,
+            final CloudStorageClient client) {
 
+        // attributes are cached by this class, which also limits the number of entries
         super(new CloudStorageFileSystemProvider(), //
-                cacheTTL, //
+                0, //
                 config.getWorkingDirectory().isEmpty() //
                         ? PATH_SEPARATOR //
                         : config.getWorkingDirectory(), //
                 CloudStorageFSDescriptorProvider.FS_LOCATION_SPEC);
 
         m_credentials = config.getCredentials();
-        m_client = new CloudStorageClient(config);
+        m_client = client;
         m_normalizePaths = config.isNormalizePaths();
+        m_attributesCache = new CloudStorageAttributesCache(cacheTTL, config.getAttributeCacheMaxEntries());
+        m_treeWalker = new CloudStorageTreeWalker(this,
+                (bucket, prefix) -> m_client.streamAllBlobs(bucket, prefix).iterator());
     }
 
     /**
@@ -103,9 +149,352 @@ public CloudStorageClient getClient() {
         return m_client;
     }
 
+    /**
+     * @return the tree walker, which serves the directory listings of recursive
+     *         walks from flat listings.
+     */
+    CloudStorageTreeWalker getTreeWalker() {
+        return m_treeWalker;
+    }
+
+    /**
+     * Deletes the given directory with all its contents. The contents are
+     * streamed from a flat listing into concurrent batch requests, instead of
+     * deleting one object per request. If the path denotes a bucket, the bucket
+     * itself is deleted as well. A path which denotes a file is deleted as usual.
+     *
+     * @param dir
+     *            the directory to delete.
+     * @throws IOException
+     *             if the directory does not exist or if some of the objects could
+     *             not be deleted. Failed objects are attached as suppressed
+     *             exceptions.
+     */
+    public void deleteRecursively(final CloudStoragePath dir) throws IOException {
+        final var absoluteDir = (CloudStoragePath) dir.toAbsolutePath().normalize();
+        if (absoluteDir.getBucketName() == null) {
+            throw new AccessDeniedException(absoluteDir.toString(), null, "The root directory cannot be deleted");
+        }
+        if (!Files.isDirectory(absoluteDir)) {
+            Files.delete(absoluteDir);
+            return;
+        }
+
+        final var bucket = absoluteDir.getBucketName();
+        final var prefix = absoluteDir.getBlobName() == null //
+                ? null //
+                : absoluteDir.toDirectoryPath().getBlobName();
+        try (final var names = m_client.streamAllBlobNames(bucket, prefix)) {
+            final var failures = m_client.deleteBlobs(bucket, names.iterator());
+            throwIfFailed("delete", absoluteDir, failures);
+            if (prefix == null) {
+                m_client.deleteBucket(bucket);
+            }
+        } finally {
+            removeFromAttributeCacheDeep(absoluteDir);
+        }
+    }
+
+    /**
+     * Copies the given directory with all its contents to the given target
+     * directory, which must not exist or be empty. The source is listed once and
+     * the objects are copied concurrently with server-side rewrites, so no data
+     * flows through the KNIME host, also not across buckets and locations. A path
+     * which denotes a file is copied as usual.
+     *
+     * @param source
+     *            the directory to copy.
+     * @param target
+     *            the target directory.
+     * @throws IOException
+     *             if the target directory is not empty or if some of the objects
+     *             could not be copied. Failed objects are attached as suppressed
+     *             exceptions.
+     */
+    public void copyTree(final CloudStoragePath source, final CloudStoragePath target) throws IOException {
+        final var absoluteSource = (CloudStoragePath) source.toAbsolutePath().normalize();
+        final var absoluteTarget = (CloudStoragePath) target.toAbsolutePath().normalize();
+        if (absoluteSource.getBucketName() == null || absoluteTarget.getBucketName() == null) {
+            throw new FileSystemException(absoluteSource.toString(), absoluteTarget.toString(),
+                    "The root directory cannot be copied or be copied to");
+        }
+        if (!Files.isDirectory(absoluteSource)) {
+            Files.copy(absoluteSource, absoluteTarget);
+            return;
+        }
+
+        final var srcPrefix = absoluteSource.getBlobName() == null //
+                ? null //
+                : absoluteSource.toDirectoryPath().getBlobName();
+        final var dstPrefix = absoluteTarget.getBlobName() == null //
+                ? null //
+                : absoluteTarget.toDirectoryPath().getBlobName();
+        if (absoluteSource.getBucketName().equals(absoluteTarget.getBucketName())
+                && StringUtils.startsWith(StringUtils.defaultString(dstPrefix), StringUtils.defaultString(srcPrefix))) {
+            throw new FileSystemException(absoluteSource.toString(), absoluteTarget.toString(),
+                    "A directory cannot be copied into itself");
+        }
+        if (m_client.isNotEmpty(absoluteTarget.getBucketName(), dstPrefix)) {
+            throw new DirectoryNotEmptyException(absoluteTarget.toString());
+        }
+
+        try {
+            final var failures = m_client.copyBlobs(absoluteSource.getBucketName(), srcPrefix,
+                    absoluteTarget.getBucketName(), dstPrefix);
+            throwIfFailed("copy", absoluteSource, failures);
+        } finally {
+            removeFromAttributeCacheDeep(absoluteTarget);
+        }
+    }
+
+    /**
+     * Computes the total size and number of the objects below the given
+     * directory, with a breakdown by top-level folder. The objects are streamed
+     * from a flat listing which only carries names and sizes, so this needs
+     * roughly one request per 1000 objects and does not hold the listing in
+     * memory. For the root directory, the top-level folders are the buckets.
+     * <p>
+     * This is API for programmatic callers only. The file handling framework
+     * has no hook through which nodes could ask a file system for the size of
+     * a directory; they walk the tree and read the attributes of each file,
+     * which {@link CloudStorageTreeWalker} already serves from flat listings.
+     *
+     * @param dir
+     *            the directory.
+     * @return the statistics.
+     * @throws IOException
+     *             if the path does not denote a directory or the listing fails.
+     */
+    public CloudStorageDirectoryStatistics aggregateStatistics(final CloudStoragePath dir) throws IOException {
+        final var absoluteDir = (CloudStoragePath) dir.toAbsolutePath().normalize();
+        if (!Files.isDirectory(absoluteDir)) {
+            throw new NotDirectoryException(absoluteDir.toString());
+        }
+
+        final var statistics = new CloudStorageDirectoryStatistics();
+        if (absoluteDir.getBucketName() == null) {
+            String pageToken = null;
+            do {
+                final var page = m_client.listBuckets(pageToken);
+                for (final var bucket : page.getValues()) {
+                    // also empty buckets are listed as folders
+                    statistics.getOrCreateFolder(bucket.getName());
+                    aggregateStatistics(bucket.getName(), null, bucket.getName() + PATH_SEPARATOR, statistics);
+                }
+                pageToken = page.getNextPageToken();
+            } while (StringUtils.isNotBlank(pageToken));
+        } else {
+            final var prefix = absoluteDir.getBlobName() == null //
+                    ? null //
+                    : absoluteDir.toDirectoryPath().getBlobName();
+            aggregateStatistics(absoluteDir.getBucketName(), prefix, "", statistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Adds the objects below the given prefix to the given statistics. Their
+     * names relative to the directory are the names without the prefix,
+     * preceded by the given name prefix.
+     */
+    private void aggregateStatistics(final String bucket, final String prefix, final String namePrefix,
+            final CloudStorageDirectoryStatistics statistics) throws IOException {
+        final var prefixLength = StringUtils.length(prefix);
+        try (final var blobs = m_client.streamAllBlobSizes(bucket, prefix)) {
+            final var iter = blobs.iterator();
+            while (iter.hasNext()) {
+                final var blob = iter.next();
+                final long size = blob.getSize() != null ? blob.getSize() : 0;
+                statistics.addObject(namePrefix + blob.getName().substring(prefixLength), size);
+            }
+        }
+    }
+
+    /**
+     * Uploads many local files concurrently, see
+     * {@link CloudStorageClient#uploadFiles(List, CloudStorageTransferListener)}.
+     * Existing target files are replaced.
+     * <p>
+     * This is API for programmatic callers only. The file handling nodes,
+     * including Transfer Files, write one file at a time through
+     * {@link CloudStorageFileSystemProvider}, and there is no
+     * hook through which they could hand over many files at once. Of this
+     * API, they only benefit from the single-request upload of small files,
+     * which {@link CloudStorageOutputStream} uses as well.
+     *
+     * @param files
+     *            the local files to upload, mapped to their target paths.
+     * @param listener
+     *            receives the progress, may be <code>null</code>.
+     * @return the failed uploads, by local file. Empty if all files have been
+     *         uploaded.
+     * @throws IOException
+     *             if the uploads were interrupted.
+     */
+    public Map<Path, IOException> uploadFiles(final Map<Path, CloudStoragePath> files,
+            final CloudStorageTransferListener listener) throws IOException {
+        final Map<Path, IOException> failures = new HashMap<>();
+        final Map<CloudStorageTransfer, Path> sources = new HashMap<>();
+        final List<CloudStorageTransfer> transfers = new ArrayList<>();
+        for (final var entry : files.entrySet()) {
+            final var target = (CloudStoragePath) entry.getValue().toAbsolutePath().normalize();
+            if (target.getBlobName() == null) {
+                failures.put(entry.getKey(), new FileSystemException(entry.getKey().toString(), target.toString(),
+                        "Cannot upload a file to the root directory or as a bucket"));
+                continue;
+            }
+            final var transfer = new CloudStorageTransfer(entry.getKey(), target.getBucketName(),
+                    target.getBlobName());
+            sources.put(transfer, entry.getKey());
+            transfers.add(transfer);
+        }
+
+        try {
+            m_client.uploadFiles(transfers, listener)
+                    .forEach((transfer, e) -> failures.put(sources.get(transfer), e));
+        } finally {
+            files.values().forEach(this::removeFromAttributeCache);
+        }
+        return failures;
+    }
+
+    /**
+     * Downloads many files concurrently to local files, see
+     * {@link CloudStorageClient#downloadFiles(List, CloudStorageTransferListener)}.
+     * Existing local files are replaced.
+     * <p>
+     * This is API for programmatic callers only, see
+     * {@link #uploadFiles(Map, CloudStorageTransferListener)}.
+     *
+     * @param files
+     *            the files to download, mapped to their local target files.
+     * @param listener
+     *            receives the progress, may be <code>null</code>.
+     * @return the failed downloads, by source path. Empty if all files have been
+     *         downloaded.
+     * @throws IOException
+     *             if the downloads were interrupted.
+     */
+    public Map<CloudStoragePath, IOException> downloadFiles(final Map<CloudStoragePath, Path> files,
+            final CloudStorageTransferListener listener) throws IOException {
+        final Map<CloudStoragePath, IOException> failures = new HashMap<>();
+        final Map<CloudStorageTransfer, CloudStoragePath> sources = new HashMap<>();
+        final List<CloudStorageTransfer> transfers = new ArrayList<>();
+        for (final var entry : files.entrySet()) {
+            final var source = (CloudStoragePath) entry.getKey().toAbsolutePath().normalize();
+            if (source.getBlobName() == null) {
+                failures.put(entry.getKey(), new FileSystemException(source.toString(),
+                        entry.getValue().toString(), "The root directory or a bucket cannot be downloaded"));
+                continue;
+            }
+            final var transfer = new CloudStorageTransfer(entry.getValue(), source.getBucketName(),
+                    source.getBlobName());
+            sources.put(transfer, entry.getKey());
+            transfers.add(transfer);
+        }
+
+        m_client.downloadFiles(transfers, listener)
+                .forEach((transfer, e) -> failures.put(sources.get(transfer), e));
+        return failures;
+    }
+
+    private static void throwIfFailed(final String operation, final CloudStoragePath dir,
+            final Map<String, ? extends Exception> failures) throws IOException {
+        if (!failures.isEmpty()) {
+            final var ioe = new IOException(
+                    String.format("Failed to %s %d object(s) below %s", operation, failures.size(), dir));
+            failures.forEach((name, e) -> ioe.addSuppressed(new FileSystemException(
+                    PATH_SEPARATOR + dir.getBucketName() + PATH_SEPARATOR + name, null, e.getMessage())));
+            throw ioe;
+        }
+    }
+
+    @Override
+    public void addToAttributeCache(final Path path, final BaseFileAttributes attributes) {
+        m_attributesCache.put(toCacheKey(path), attributes);
+    }
+
+    @Override
+    public Optional<BaseFileAttributes> getCachedAttributes(final Path path) {
+        return m_attributesCache.get(toCacheKey(path));
+    }
+
+    @Override
+    public boolean hasCachedAttributes(final Path path) {
+        return getCachedAttributes(path).isPresent();
+    }
+
+    @Override
+    public void removeFromAttributeCache(final Path path) {
+        m_attributesCache.remove(toCacheKey(path));
+    }
+
+    @Override
+    public void removeFromAttributeCacheDeep(final Path path) {
+        m_attributesCache.removeDeep(toCacheKey(path));
+    }
+
+    @Override
+    public void clearAttributesCache() {
+        m_attributesCache.clear();
+    }
+
+    /**
+     * Puts the attributes of a just written blob into the attribute cache, so
+     * that the next access does not need a request. Negative entries of its
+     * parent directories are dropped. If the metadata of the blob is unknown, the
+     * path is removed from the cache instead.
+     *
+     * @param path
+     *            the written path, in directory notation for directory markers.
+     * @param blob
+     *            the metadata returned by the write, may be <code>null</code>.
+     */
+    void cacheWrittenBlob(final CloudStoragePath path, final BlobInfo blob) {
+        if (blob == null) {
+            removeFromAttributeCache(path);
+        } else {
+            addToAttributeCache(path, CloudStoragePathIteratorFactory.createAttributes(path, blob));
+        }
+    }
+
+    /**
+     * Remembers in the attribute cache that the given path does not exist. The
+     * entry is dropped once the path or anything below it is added to or removed
+     * from the cache.
+     *
+     * @param path
+     *            the missing path.
+     */
+    void addMissingToAttributeCache(final Path path) {
+        m_attributesCache.putMissing(toCacheKey(path));
+    }
+
+    /**
+     * @param path
+     *            the path to check.
+     * @return whether the attribute cache knows that the given path does not
+     *         exist.
+     */
+    boolean isCachedAsMissing(final Path path) {
+        return m_attributesCache.isMissing(toCacheKey(path));
+    }
+
+    private static String toCacheKey(final Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * @return the current hit, miss and eviction counters of the attribute cache.
+     */
+    public CloudStorageAttributeCacheStatistics getAttributeCacheStatistics() {
+        return m_attributesCache.getStatistics();
+    }
+
     @Override
     protected void prepareClose() {
-        // nothing to close
+        LOGGER.debug("Attribute cache statistics: " + m_attributesCache.getStatistics());
+        m_client.close();
     }
 
     @Override
@@ -136,4 +525,28 @@ public boolean normalizePaths() {
     public Credentials getCredentials() {
         return m_credentials;
     }
+
+    /**
+     * Returns a signer for URLs with the given validity. Signers are kept for the
+     * lifetime of this file system, so that exporting many URLs does not set up
+     * the signing state again for every path.
+     *
+     * @param validity
+     *            how long the signed URLs are valid.
+     * @return the signer.
+     * @throws InvalidSettingsException
+     *             if the credentials of this file system cannot sign URLs, or
+     *             the validity is too long.
+     */
+    public CloudStorageUrlSigner getUrlSigner(final Duration validity) throws InvalidSettingsException {
+        var signer = m_urlSigners.get(validity);
+        if (signer == null) {
+            signer = new CloudStorageUrlSigner(m_credentials, validity);
+            final var existing = m_urlSigners.putIfAbsent(validity, signer);
+            if (existing != null) {
+                signer = existing;
+            }
+        }
+        return signer;
+    }
 }
@@ -57,22 +57,27 @@
 import java.nio.file.CopyOption;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileTime;
-import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
 import org.knime.filehandling.core.connections.base.BaseFileSystemProvider;
 import org.knime.filehandling.core.connections.base.attributes.BaseFileAttributes;
 
 import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.gax.paging.Page;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.StorageException;
 
 /**
@@ -87,6 +92,7 @@ class CloudStorageFileSystemProvider extends BaseFileSystemProvider<CloudStorage
     @Override
     protected InputStream newInputStreamInternal(final CloudStoragePath path, final OpenOption... options)
             throws IOException {
+        awaitDeferred(path);
         try {
             return getFileSystemInternal().getClient().getInputStream(path.getBucketName(), path.getBlobName());
         } catch (StorageException e) {
@@ -101,8 +107,43 @@ protected InputStream newInputStreamInternal(final CloudStoragePath path, final
     @Override
     protected OutputStream newOutputStreamInternal(final CloudStoragePath path, final OpenOption... options)
             throws IOException {
+        awaitDeferred(path);
         final Set<OpenOption> opts = new HashSet<>(Arrays.asList(options));
-        return Channels.newOutputStream(newByteChannel(path, opts));
+        if (opts.contains(StandardOpenOption.APPEND)) {
+            // appending needs the existing content, which requires the temp file
+            return Channels.newOutputStream(newByteChannel(path, opts));
+        }
+
+        if (opts.isEmpty()) {
+            opts.addAll(Arrays.asList(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE));
+        }
+        checkStreamingWritePossible(path, opts);
+
+        return new CloudStorageOutputStream(path);
+    }
+
+    private void checkStreamingWritePossible(final CloudStoragePath path, final Set<OpenOption> opts)
+            throws IOException {
+        if (path.getBlobName() == null || path.isDirectory()) {
+            throw new FileSystemException(path.toString(), null, "Cannot write to a directory");
+        }
+
+        final var parent = (CloudStoragePath) path.getParent();
+        if (parent != null && !existsCached(parent)) {
+            throw new NoSuchFileException(parent.toString());
+        }
+
+        final boolean exists = existsCached(path);
+        if (exists && opts.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+        if (!exists && !opts.contains(StandardOpenOption.CREATE) && !opts.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (exists && isDirectory(path)) {
+            throw new FileSystemException(path.toString(), null, "Cannot write to a directory");
+        }
     }
 
     @Override
@@ -113,78 +154,136 @@ protected Iterator<CloudStoragePath> createPathIterator(final CloudStoragePath d
 
     @Override
     protected boolean exists(final CloudStoragePath path) throws IOException {
+        awaitDeferred(path);
         if (path.getBucketName() == null) {
             // This is the fake root
             return true;
         }
 
-        @SuppressWarnings("resource")
-        CloudStorageClient client = getFileSystemInternal().getClient();
-        boolean exists = false;
+        if (path.getBlobName() == null) {
+            @SuppressWarnings("resource")
+            final var client = getFileSystemInternal().getClient();
+            return client.exists(path.getBucketName(), null);
+        }
+
+        return resolve(path) != null;
+    }
 
-        if (path.getBlobName() != null) {// check if exact object exists
-            exists = client.getBlob(path.getBucketName(), path.getBlobName()) != null;
+    /**
+     * Resolves whether the given blob path denotes a file, a directory or
+     * nothing, usually with a single listing request. The result is put into the
+     * attribute cache, missing paths as negative entries.
+     *
+     * @param path
+     *            a path with a blob name.
+     * @return the attributes of the path, or <code>null</code> if it does not
+     *         exist.
+     * @throws IOException
+     */
+    @SuppressWarnings("resource")
+    private BaseFileAttributes resolve(final CloudStoragePath path) throws IOException {
+        final var fs = getFileSystemInternal();
+        if (fs.isCachedAsMissing(path)) {
+            return null;
         }
 
-        if (!exists) {// check if prefix and bucket exists
-            // it is required to have trailing '/' at this point. Otherwise client.exists()
-            // will return true for '/bucket/foo' even if only '/bucket/foobar' exists.
-            String prefix = path.toDirectoryPath().getBlobName();
-            exists = client.exists(path.getBucketName(), prefix);
+        final var bucket = path.getBucketName();
+        final var name = StringUtils.removeEnd(path.getBlobName(), CloudStorageFileSystem.PATH_SEPARATOR);
+        final var dirName = name + CloudStorageFileSystem.PATH_SEPARATOR;
+
+        Page<Blob> candidates;
+        try {
+            candidates = fs.getClient().listNameCandidates(bucket, name);
+        } catch (StorageException e) {
+            if (e.getCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+                // bucket does not exist
+                fs.addMissingToAttributeCache(path);
+                return null;
+            }
+            throw e;
+        }
+
+        Blob file = null;
+        Blob dirMarker = null;
+        var dirExists = false;
+        for (final Blob candidate : candidates.getValues()) {
+            if (!candidate.isDirectory() && candidate.getName().equals(name)) {
+                file = candidate;
+            } else if (candidate.getName().equals(dirName)) {
+                dirExists = true;
+                if (!candidate.isDirectory()) {
+                    dirMarker = candidate;
+                }
+            }
         }
 
-        return exists;
+        BaseFileAttributes attributes = null;
+        if (file != null && !path.isDirectory()) {
+            attributes = CloudStoragePathIteratorFactory.createAttributes(path, file);
+        } else if (dirMarker != null) {
+            attributes = CloudStoragePathIteratorFactory.createAttributes(path.toDirectoryPath(), dirMarker);
+        } else if (dirExists || (candidates.hasNextPage() && fs.getClient().exists(bucket, dirName))) {
+            // directory without marker object, or too many names sharing the prefix to
+            // decide from the first page
+            final var epoch = FileTime.fromMillis(0);
+            attributes = new BaseFileAttributes(false, path, epoch, epoch, epoch, 0, false, false, null);
+        }
+
+        if (attributes != null) {
+            fs.addToAttributeCache(path, attributes);
+        } else {
+            fs.addMissingToAttributeCache(path);
+        }
+        return attributes;
     }
 
     @Override
     protected BaseFileAttributes fetchAttributesInternal(final CloudStoragePath path, final Class<?> type)
             throws IOException {
+        awaitDeferred(path);
         FileTime createdAt = FileTime.fromMillis(0);
         FileTime modifiedAt = createdAt;
-        long size = 0;
-        boolean objectExists = false;
 
         if (path.getBucketName() != null) {
-            @SuppressWarnings("resource")
-            final var client = getFileSystemInternal().getClient();
-            OffsetDateTime createTimeOffsetDateTime = null;
-            OffsetDateTime updateTimeOffsetDateTime = null;
-            if (path.getBlobName() == null) {
-                final var bucket = client.getBucket(path.getBucketName());
-                createTimeOffsetDateTime = bucket.getCreateTimeOffsetDateTime();
-                updateTimeOffsetDateTime = bucket.getUpdateTimeOffsetDateTime();
-            } else {
-                final var blob = client.getBlob(path.getBucketName(), path.getBlobName());
-                if (blob != null) {
-                    createTimeOffsetDateTime = blob.getCreateTimeOffsetDateTime();
-                    updateTimeOffsetDateTime = blob.getUpdateTimeOffsetDateTime();
-                    size = blob.getSize();
-                    objectExists = true;
+            if (path.getBlobName() != null) {
+                final var attributes = resolve(path);
+                if (attributes != null) {
+                    return attributes;
                 }
+                return new BaseFileAttributes(false, path, modifiedAt, modifiedAt, createdAt, 0, false, false, null);
             }
-            if (createTimeOffsetDateTime != null) {
-                createdAt = FileTime.from(createTimeOffsetDateTime.toInstant());
+
+            @SuppressWarnings("resource")
+            final var client = getFileSystemInternal().getClient();
+            final var bucket = client.getBucket(path.getBucketName());
+            if (bucket.getCreateTimeOffsetDateTime() != null) {
+                createdAt = FileTime.from(bucket.getCreateTimeOffsetDateTime().toInstant());
             }
-            if (updateTimeOffsetDateTime != null) {
-                modifiedAt = FileTime.from(updateTimeOffsetDateTime.toInstant());
+            if (bucket.getUpdateTimeOffsetDateTime() != null) {
+                modifiedAt = FileTime.from(bucket.getUpdateTimeOffsetDateTime().toInstant());
             }
         }
-        return new BaseFileAttributes(!path.isDirectory() && objectExists, path, modifiedAt, modifiedAt, createdAt,
-                size, false, false, null);
-
+        return new BaseFileAttributes(false, path, modifiedAt, modifiedAt, createdAt, 0, false, false, null);
     }
 
     @Override
     protected void deleteInternal(final CloudStoragePath path) throws IOException {
+        final var fs = getFileSystemInternal();
         @SuppressWarnings("resource")
-        CloudStorageClient client = getFileSystemInternal().getClient();
+        CloudStorageClient client = fs.getClient();
         String blobName = path.getBlobName();
 
         if (isDirectory(path)) {
+            // the contents may still be deleted in batches
+            awaitDeferred(path.toDirectoryPath());
             blobName = path.toDirectoryPath().getBlobName();
             if (client.isNotEmpty(path.getBucketName(), blobName)) {
                 throw new DirectoryNotEmptyException(path.toString());
             }
+        } else if (fs.getTreeWalker().deferDelete(path)) {
+            // deleted in a batch together with the other files of the listed directory
+            fs.addMissingToAttributeCache(path);
+            return;
         }
 
         if (path.getBlobName() != null) {
@@ -204,19 +303,25 @@ public void copyInternal(final CloudStoragePath source, final CloudStoragePath t
             throws IOException {
         @SuppressWarnings("resource")
         CloudStorageClient client = getFileSystemInternal().getClient();
+        awaitDeferred(source);
+        awaitDeferred(target);
 
         if (!isDirectory(source)) {
-            client.copyBlob(source.getBucketName(), source.getBlobName(), target.getBucketName(),
+            if (getFileSystemInternal().getTreeWalker().deferCopy(source, target)) {
+                return;
+            }
+            final var blob = client.copyBlob(source.getBucketName(), source.getBlobName(), target.getBucketName(),
                     target.getBlobName());
+            getFileSystemInternal().cacheWrittenBlob(target, blob);
         } else {
 
             if (client.isNotEmpty(target.getBucketName(), target.toDirectoryPath().getBlobName())) {
                 throw new DirectoryNotEmptyException(
                         String.format("Target directory %s exists and is not empty", target.toString()));
             }
+            // caches the attributes of the new directory
             createDirectory(target);
         }
-
     }
 
     private boolean isDirectory(final CloudStoragePath path) throws IOException {
@@ -227,20 +332,59 @@ private boolean isDirectory(final CloudStoragePath path) throws IOException {
     @Override
     protected void createDirectoryInternal(final CloudStoragePath path, final FileAttribute<?>... arg1)
             throws IOException {
-
+        awaitDeferred(path);
         CloudStorageClient client = getFileSystemInternal().getClient();
 
         final CloudStoragePath dirPath = path.toDirectoryPath();
+        final BaseFileAttributes attributes;
         if (path.getBlobName() != null) {
-            client.insertBlob(dirPath.getBucketName(), dirPath.getBlobName(), "");
+            final var marker = client.insertBlob(dirPath.getBucketName(), dirPath.getBlobName(), "");
+            attributes = CloudStoragePathIteratorFactory.createAttributes(dirPath, marker);
         } else {
-            client.insertBucket(dirPath.getBucketName());
+            final var bucket = client.insertBucket(dirPath.getBucketName());
+            attributes = CloudStoragePathIteratorFactory.createAttributes(dirPath, bucket);
         }
+
+        // the directory is usually accessed next, in either notation
+        final var fs = getFileSystemInternal();
+        fs.addToAttributeCache(dirPath, attributes);
+        fs.addToAttributeCache(path, attributes);
     }
 
     @Override
     protected SeekableByteChannel newByteChannelInternal(final CloudStoragePath path,
             final Set<? extends OpenOption> options, final FileAttribute<?>... attrs) throws IOException {
+        awaitDeferred(path);
+        final boolean readOnly = !options.contains(StandardOpenOption.WRITE)
+                && !options.contains(StandardOpenOption.APPEND);
+        if (readOnly && path.getBlobName() != null && !path.isDirectory()) {
+            final var channel = newReadChannel(path);
+            if (channel != null) {
+                return channel;
+            }
+            // size unknown, read the whole blob instead of ranges
+        }
         return new CloudStorageSeekableByteChannel(path, options);
     }
+
+    /**
+     * Waits for the deferred deletes of the current thread on the given path, or
+     * below it, so that it is accessed in its current state.
+     */
+    @SuppressWarnings("resource")
+    private void awaitDeferred(final CloudStoragePath path) throws IOException {
+        getFileSystemInternal().getTreeWalker().awaitDeferred(path);
+    }
+
+    @SuppressWarnings("resource")
+    private SeekableByteChannel newReadChannel(final CloudStoragePath path) throws IOException {
+        try {
+            return getFileSystemInternal().getClient().newReadChannel(path.getBucketName(), path.getBlobName());
+        } catch (StorageException e) {
+            if (e.getCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+                throw new NoSuchFileException(path.toString());
+            }
+            throw new IOException(e);
+        }
+    }
 }
@@ -0,0 +1,316 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * {@link DirectoryStream.Filter} which accepts files by a glob pattern or by
+ * their extensions, and accepts all directories. When a Cloud Storage
+ * directory is listed with this filter, the pattern is passed on to the
+ * listing request as {@code matchGlob}, so that objects which do not match are
+ * not even transferred. Only filters of this type are recognized, so callers
+ * have to pass an instance to
+ * {@link Files#newDirectoryStream(Path, DirectoryStream.Filter)}; the filter
+ * created by {@link Files#newDirectoryStream(Path, String)} is only applied
+ * locally. Patterns that Cloud Storage cannot express (escapes, {@code **},
+ * negated character classes, more than {@value #MAX_ALTERNATIVES}
+ * alternatives) are only evaluated locally.
+ *
+ * @see <a href=
+ *      "https://cloud.google.com/storage/docs/json_api/v1/objects/list#list-objects-and-prefixes-using-glob">Google
+ *      docs</a>
+ * @author KNIME AG, Zurich, Switzerland
+ */
+public final class CloudStorageGlobFilter implements DirectoryStream.Filter<Path>, PathMatcher {
+
+    private static final int MAX_ALTERNATIVES = 64;
+
+    /**
+     * Characters with a special meaning in Cloud Storage glob patterns, and the
+     * path separator.
+     */
+    private static final String GLOB_SPECIAL_CHARS = "*?[]{}\\,/!";
+
+    private final Pattern m_pattern;
+
+    /**
+     * Brace-free alternatives of the pattern in Cloud Storage glob syntax, or
+     * <code>null</code> if the pattern cannot be expressed.
+     */
+    private final List<String> m_alternatives;
+
+    private CloudStorageGlobFilter(final Pattern pattern, final List<String> alternatives) {
+        m_pattern = pattern;
+        m_alternatives = alternatives;
+    }
+
+    /**
+     * Creates a filter which accepts the files whose name matches the given glob
+     * pattern, using the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+     *
+     * @param glob
+     *            the glob pattern.
+     * @return the filter.
+     * @throws IllegalArgumentException
+     *             if the pattern is invalid.
+     */
+    public static CloudStorageGlobFilter ofGlob(final String glob) {
+        final var pattern = Pattern.compile(toRegex(glob));
+        // negated character classes are not supported by Cloud Storage
+        final var translatable = !glob.isEmpty() && !StringUtils.containsAny(glob, "\\/") && !glob.contains("**")
+                && !glob.contains("[!");
+        return new CloudStorageGlobFilter(pattern, translatable ? expandBraces(glob) : null);
+    }
+
+    /**
+     * Creates a filter which accepts the files with one of the given extensions.
+     *
+     * @param extensions
+     *            the extensions, with or without leading dot.
+     * @param caseSensitive
+     *            whether the extensions are matched case sensitive.
+     * @return the filter.
+     */
+    public static CloudStorageGlobFilter ofExtensions(final Collection<String> extensions,
+            final boolean caseSensitive) {
+        final var regex = new StringBuilder(".*\\.(?:");
+        List<String> alternatives = new ArrayList<>();
+        for (final var extension : extensions) {
+            final var ext = StringUtils.removeStart(extension, ".");
+            if (regex.charAt(regex.length() - 1) != ':') {
+                regex.append('|');
+            }
+            regex.append(Pattern.quote(ext));
+
+            if (alternatives != null && !StringUtils.containsAny(ext, GLOB_SPECIAL_CHARS)) {
+                alternatives.add("*." + (caseSensitive ? ext : toCaseInsensitiveGlob(ext)));
+            } else {
+                alternatives = null;
+            }
+        }
+        regex.append(')');
+
+        final var flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        if (alternatives != null && (alternatives.isEmpty() || alternatives.size() > MAX_ALTERNATIVES)) {
+            alternatives = null;
+        }
+        return new CloudStorageGlobFilter(Pattern.compile(regex.toString(), flags), alternatives);
+    }
+
+    private static String toCaseInsensitiveGlob(final String ext) {
+        final var sb = new StringBuilder();
+        ext.codePoints().forEach(c -> {
+            final int lower = Character.toLowerCase(c);
+            final int upper = Character.toUpperCase(c);
+            if (lower == upper) {
+                sb.appendCodePoint(c);
+            } else {
+                sb.append('[').appendCodePoint(lower).appendCodePoint(upper).append(']');
+            }
+        });
+        return sb.toString();
+    }
+
+    @Override
+    public boolean accept(final Path entry) throws IOException {
+        if (entry instanceof CloudStoragePath csPath ? csPath.isDirectory() : Files.isDirectory(entry)) {
+            return true;
+        }
+        final var fileName = entry.getFileName();
+        return fileName != null && matches(fileName);
+    }
+
+    /**
+     * Matches the whole given path against the pattern, as the matchers of
+     * {@link java.nio.file.FileSystem#getPathMatcher(String)} do. Unlike
+     * {@link #accept(Path)}, directories are not accepted unconditionally.
+     */
+    @Override
+    public boolean matches(final Path path) {
+        return m_pattern.matcher(path.toString()).matches();
+    }
+
+    /**
+     * Returns the {@code matchGlob} for listing the direct children of the given
+     * directory. The glob also matches all sub directories, since this filter
+     * accepts them.
+     *
+     * @param prefix
+     *            the separator-terminated blob name prefix of the directory, or
+     *            <code>null</code> for a bucket.
+     * @return the glob, or <code>null</code> if this filter cannot be expressed
+     *         in Cloud Storage glob syntax.
+     */
+    String toMatchGlob(final String prefix) {
+        if (m_alternatives == null || StringUtils.containsAny(prefix, GLOB_SPECIAL_CHARS.replace("/", ""))) {
+            return null;
+        }
+        return StringUtils.defaultString(prefix) + "{" + String.join(",", m_alternatives) + ",*/}";
+    }
+
+    /**
+     * Converts a glob pattern into a regular expression, following the syntax of
+     * {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+     */
+    private static String toRegex(final String glob) {
+        final var regex = new StringBuilder();
+        var inGroup = false;
+        for (var i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    if (++i == glob.length()) {
+                        throw new IllegalArgumentException("Missing escaped character in glob: " + glob);
+                    }
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                }
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        regex.append(".*");
+                        i++;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '[' -> i = appendCharClass(glob, i, regex);
+                case '{' -> {
+                    if (inGroup) {
+                        throw new IllegalArgumentException("Cannot nest groups in glob: " + glob);
+                    }
+                    inGroup = true;
+                    regex.append("(?:");
+                }
+                case '}' -> {
+                    if (inGroup) {
+                        inGroup = false;
+                        regex.append(')');
+                    } else {
+                        regex.append("\\}");
+                    }
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        if (inGroup) {
+            throw new IllegalArgumentException("Missing '}' in glob: " + glob);
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Appends the character class starting at the given index and returns the
+     * index of its closing bracket.
+     */
+    private static int appendCharClass(final String glob, final int start, final StringBuilder regex) {
+        var i = start + 1;
+        regex.append('[');
+        if (i < glob.length() && glob.charAt(i) == '!') {
+            regex.append('^');
+            i++;
+        }
+        for (; i < glob.length() && glob.charAt(i) != ']'; i++) {
+            final char c = glob.charAt(i);
+            if (c == '\\' || c == '[' || c == '&' || c == '^') {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+        if (i == glob.length()) {
+            throw new IllegalArgumentException("Missing ']' in glob: " + glob);
+        }
+        regex.append(']');
+        return i;
+    }
+
+    /**
+     * Expands the groups of a glob pattern without escapes, e.g.
+     * {@code *.{csv,txt}} becomes {@code *.csv} and {@code *.txt}.
+     *
+     * @return the alternatives, or <code>null</code> if there are too many or an
+     *         alternative is empty or contains a comma or an unmatched brace.
+     */
+    private static List<String> expandBraces(final String glob) {
+        List<String> alternatives = List.of("");
+        var i = 0;
+        while (i < glob.length()) {
+            final int open = glob.indexOf('{', i);
+            final int close = open < 0 ? -1 : glob.indexOf('}', open);
+            final var literal = glob.substring(i, open < 0 || close < 0 ? glob.length() : open);
+            final var options = open < 0 || close < 0 //
+                    ? List.of(literal) //
+                    : List.of(glob.substring(open + 1, close).split(",", -1)).stream() //
+                            .map(option -> literal + option) //
+                            .toList();
+
+            final List<String> expanded = new ArrayList<>();
+            for (final var alternative : alternatives) {
+                for (final var option : options) {
+                    expanded.add(alternative + option);
+                }
+            }
+            if (expanded.size() > MAX_ALTERNATIVES) {
+                return null; // NOSONAR null means not translatable
+            }
+            alternatives = expanded;
+            i = open < 0 || close < 0 ? glob.length() : close + 1;
+        }
+        return alternatives.stream().anyMatch(a -> a.isEmpty() || StringUtils.containsAny(a, ",{}")) ? null
+                : alternatives;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.util.zip.CRC32C;
+
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.BlobWriteSession;
+import com.google.cloud.storage.StorageException;
+
+/**
+ * {@link OutputStream} that writes a Google Cloud Storage blob without spooling
+ * the data to a temporary file. Data of up to
+ * {@value CloudStorageClient#SINGLE_REQUEST_UPLOAD_LIMIT} bytes is kept in
+ * memory and uploaded with a single request when the stream is closed, along
+ * with its checksum. Once more data is written, it is streamed into a
+ * resumable upload session, whose result is verified against the checksum
+ * computed from the written bytes when the stream is closed, see
+ * {@link CloudStorageClient#finishWriteSession(BlobInfo, CRC32C, String)}. If
+ * writing fails, the upload is abandoned: closing the stream does not finalize
+ * it, so no partial blob is created and an existing blob is left unchanged.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageOutputStream extends OutputStream {
+
+    private final CloudStoragePath m_path;
+
+    private final CloudStorageClient m_client;
+
+    /**
+     * The data written so far, <code>null</code> once it is streamed into an
+     * upload session.
+     */
+    private ByteArrayOutputStream m_buffer = new ByteArrayOutputStream();
+
+    private BlobWriteSession m_session;
+
+    private WritableByteChannel m_channel;
+
+    private final byte[] m_singleByte = new byte[1];
+
+    private final CRC32C m_crc = new CRC32C();
+
+    private boolean m_closed;
+
+    private boolean m_failed;
+
+    /**
+     * @param path
+     *            The path of the blob that is written.
+     */
+    @SuppressWarnings("resource")
+    CloudStorageOutputStream(final CloudStoragePath path) {
+        m_path = path;
+        m_client = path.getFileSystem().getClient();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        m_singleByte[0] = (byte) b;
+        write(m_singleByte, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        if (m_buffer != null && m_buffer.size() + len <= CloudStorageClient.SINGLE_REQUEST_UPLOAD_LIMIT) {
+            m_buffer.write(b, off, len);
+            return;
+        }
+        try {
+            if (m_buffer != null) {
+                openSession();
+            }
+            writeToSession(ByteBuffer.wrap(b, off, len));
+        } catch (StorageException e) {
+            m_failed = true;
+            throw toIOException(e);
+        } catch (IOException | RuntimeException e) {
+            m_failed = true;
+            throw e;
+        }
+    }
+
+    private void openSession() throws IOException {
+        m_session = m_client.newWriteSession(m_path.getBucketName(), m_path.getBlobName());
+        m_channel = m_session.open();
+        final var buffered = ByteBuffer.wrap(m_buffer.toByteArray());
+        m_buffer = null;
+        writeToSession(buffered);
+    }
+
+    private void writeToSession(final ByteBuffer buffer) throws IOException {
+        m_crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            m_channel.write(buffer);
+        }
+    }
+
+    @SuppressWarnings("resource")
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        if (m_failed) {
+            // closing the channel would finalize the incomplete upload, the
+            // abandoned resumable session expires on its own
+            return;
+        }
+
+        BlobInfo blob = null;
+        try {
+            if (m_buffer != null) {
+                blob = m_client.insertBlob(m_path.getBucketName(), m_path.getBlobName(), m_buffer.toByteArray());
+                m_buffer = null;
+            } else {
+                m_channel.close();
+                blob = m_client.finishWriteSession(CloudStorageClient.await(m_session.getResult()), m_crc,
+                        m_path.getBlobName());
+            }
+        } catch (StorageException e) {
+            throw toIOException(e);
+        } finally {
+            m_path.getFileSystem().cacheWrittenBlob(m_path, blob);
+        }
+    }
+    private void ensureOpen() throws IOException {
+        if (m_closed) {
+            throw new IOException("Stream closed");
+        }
+        if (m_failed) {
+            throw new IOException("Upload of " + m_path + " has been abandoned after a failed write");
+        }
+    }
+
+    private IOException toIOException(final StorageException e) {
+        if (e.getCode() == HttpStatusCodes.STATUS_CODE_FORBIDDEN) {
+            final var ade = new AccessDeniedException(m_path.toString(), null, e.getMessage());
+            ade.initCause(e);
+            return ade;
+        }
+        return new IOException(e);
+    }
+}
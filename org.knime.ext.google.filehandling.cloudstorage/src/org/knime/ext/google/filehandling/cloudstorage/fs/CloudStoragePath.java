@@ -55,7 +55,6 @@
 
 import org.knime.core.node.NodeLogger;
 import org.knime.filehandling.core.connections.base.BlobStorePath;
-import org.knime.google.cloud.storage.signedurl.GoogleCSUrlSignature;
 
 /**
  * {@link Path} implementation for {@link CloudStorageFileSystem}.
@@ -147,13 +146,10 @@ public CloudStoragePath toDirectoryPath() {
      *             Throws exception which encompasses multiple inner exceptions
      */
     public URL getPreSignedUrl(final Duration expirationDuration) throws URISyntaxException {
-        final var credentials = ((CloudStorageFileSystem) m_fileSystem).getCredentials();
-
-        String signedUrl;
         try {
-            signedUrl = GoogleCSUrlSignature.getSigningURL(credentials, expirationDuration.getSeconds(),
-                    getBucketName(), getBlobName());
-            return new URL(signedUrl);
+            return ((CloudStorageFileSystem) m_fileSystem).getUrlSigner(expirationDuration) //
+                    .sign(getBucketName(), getBlobName()) //
+                    .toURL();
         } catch (Exception ex) {
             LOGGER.error(ex);
             throw new URISyntaxException("Unable to generated Signed URI for path", ex.getMessage());
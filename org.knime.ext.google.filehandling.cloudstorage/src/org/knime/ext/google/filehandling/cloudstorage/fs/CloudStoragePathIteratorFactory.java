@@ -48,6 +48,7 @@
  */
 package org.knime.ext.google.filehandling.cloudstorage.fs;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.Path;
@@ -56,6 +57,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.knime.filehandling.core.connections.base.PagedPathIterator;
@@ -63,6 +65,7 @@
 
 import com.google.api.gax.paging.Page;
 import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Bucket;
 
 /**
@@ -91,31 +94,116 @@ public static Iterator<CloudStoragePath> create(
             final Filter<? super Path> filter) throws IOException {
         if (path.getNameCount() == 0) {
             return new BucketIterator(path, filter);
-        } else {
-            return new BlobIterator(path, filter);
         }
+
+        @SuppressWarnings("resource")
+        final var walked = path.getFileSystem().getTreeWalker().listChildren(path, filter);
+        if (walked != null) {
+            return walked;
+        }
+        return new BlobIterator(path, filter);
     }
 
-    private static final class BucketIterator extends PagedPathIterator<CloudStoragePath> {
+    /**
+     * Base class for the paged iterators, which requests the next page in the
+     * background while the current one is consumed. At most one page is in
+     * flight at any time. While open, the listing is known to the
+     * {@link CloudStorageTreeWalker}, so that listing a subdirectory in the
+     * meantime starts a flat walk, and deletes of its files are deferred until
+     * it is closed.
+     *
+     * @param <T>
+     *            the type of the listed items.
+     */
+    private abstract static class PrefetchingIterator<T> extends PagedPathIterator<CloudStoragePath>
+            implements Closeable {
+
+        private Future<Page<T>> m_nextPage;
+
+        private CloudStorageTreeWalker.OpenListing m_openListing;
+
+        protected PrefetchingIterator(final CloudStoragePath path, final Filter<? super Path> filter) {
+            super(path, filter);
+        }
+
+        /**
+         * Loads the first page synchronously and schedules the second one.
+         *
+         * @throws IOException
+         */
+        @SuppressWarnings("resource")
+        protected final void init() throws IOException {
+            setFirstPage(toPaths(prefetchAfter(fetchPage(null))));
+            m_openListing = m_path.getFileSystem().getTreeWalker().listingOpened(m_path);
+        }
+
+        @Override
+        protected final boolean hasNextPage() {
+            return m_nextPage != null;
+        }
+
+        @Override
+        protected final Iterator<CloudStoragePath> loadNextPage() throws IOException {
+            final var future = m_nextPage;
+            m_nextPage = null;
+            return toPaths(prefetchAfter(CloudStorageClient.await(future)));
+        }
+
+        @SuppressWarnings("resource")
+        private Page<T> prefetchAfter(final Page<T> page) {
+            final var pageToken = page.getNextPageToken();
+            if (StringUtils.isNotBlank(pageToken)) {
+                m_nextPage = m_path.getFileSystem().getClient().submit(() -> fetchPage(pageToken));
+            }
+            return page;
+        }
+
+        @Override
+        @SuppressWarnings("resource")
+        public void close() throws IOException {
+            if (m_nextPage != null) {
+                m_nextPage.cancel(true);
+                m_nextPage = null;
+            }
+            if (m_openListing != null) {
+                m_path.getFileSystem().getTreeWalker().listingClosed(m_openListing);
+                m_openListing = null;
+            }
+        }
 
-        private String m_nextPageToken = null;
+        /**
+         * @param pageToken
+         *            the continuation token, <code>null</code> for the first page.
+         * @return the requested page.
+         * @throws IOException
+         */
+        protected abstract Page<T> fetchPage(String pageToken) throws IOException;
+
+        /**
+         * @param page
+         *            the fetched page.
+         * @return an iterator over the paths of the page, may be <code>null</code>
+         *         if the page is empty.
+         */
+        protected abstract Iterator<CloudStoragePath> toPaths(Page<T> page);
+    }
+
+    private static final class BucketIterator extends PrefetchingIterator<Bucket> {
 
         private BucketIterator(final CloudStoragePath path, final Filter<? super Path> filter)
                 throws IOException {
             super(path, filter);
-            setFirstPage(loadNextPage());
+            init();
         }
 
+        @SuppressWarnings("resource")
         @Override
-        protected boolean hasNextPage() {
-            return StringUtils.isNotBlank(m_nextPageToken);
+        protected Page<Bucket> fetchPage(final String pageToken) throws IOException {
+            return m_path.getFileSystem().getClient().listBuckets(pageToken);
         }
 
         @Override
-        protected Iterator<CloudStoragePath> loadNextPage() throws IOException {
-            @SuppressWarnings("resource")
-            final Page<Bucket> page = m_path.getFileSystem().getClient().listBuckets(m_nextPageToken);
-            m_nextPageToken = page.getNextPageToken();
+        protected Iterator<CloudStoragePath> toPaths(final Page<Bucket> page) {
             final var hasElements = page.getValues().iterator().hasNext();
 
             if (hasElements) {
@@ -130,59 +218,45 @@ private CloudStoragePath createPath(final Bucket bucket) {
             final CloudStorageFileSystem fs = m_path.getFileSystem();
 
             final CloudStoragePath path = fs.getPath(fs.getSeparator() + bucket.getName(), fs.getSeparator());
-            var createdAt = FileTime.fromMillis(0);
-            var modifiedAt = createdAt;
-            if (bucket.getCreateTimeOffsetDateTime() != null) {
-                createdAt = FileTime.from(bucket.getCreateTimeOffsetDateTime().toInstant());
-            }
-            if (bucket.getUpdateTimeOffsetDateTime() != null) {
-                modifiedAt = FileTime.from(bucket.getUpdateTimeOffsetDateTime().toInstant());
-            }
-            final BaseFileAttributes attrs = new BaseFileAttributes(false, //
-                    path, //
-                    modifiedAt, //
-                    modifiedAt, //
-                    createdAt, //
-                    0, //
-                    false, //
-                    false, //
-                    null);
-            fs.addToAttributeCache(path, attrs);
+            fs.addToAttributeCache(path, createAttributes(path, bucket));
 
             return path;
         }
     }
 
-    private static final class BlobIterator extends PagedPathIterator<CloudStoragePath> {
+    private static final class BlobIterator extends PrefetchingIterator<Blob> {
 
-        private String m_nextPageToken;
+        /**
+         * Glob pattern which lets Cloud Storage apply the filter, if possible.
+         * The filter is evaluated locally as well.
+         */
+        private final String m_matchGlob;
 
         private BlobIterator(final CloudStoragePath path, final Filter<? super Path> filter) throws IOException {
             super(path, filter);
-            setFirstPage(loadNextPage());
+            m_matchGlob = filter instanceof CloudStorageGlobFilter globFilter //
+                    ? globFilter.toMatchGlob(path.getBlobName()) //
+                    : null;
+            init();
         }
 
+        @SuppressWarnings("resource")
         @Override
-        protected boolean hasNextPage() {
-            return StringUtils.isNotBlank(m_nextPageToken);
+        protected Page<Blob> fetchPage(final String pageToken) throws IOException {
+            return m_path.getFileSystem().getClient().listBlobs(m_path.getBucketName(), m_path.getBlobName(),
+                    pageToken, m_matchGlob);
         }
 
-        @SuppressWarnings("resource")
         @Override
-        protected Iterator<CloudStoragePath> loadNextPage() throws IOException {
-            final CloudStorageFileSystem fs = m_path.getFileSystem();
+        protected Iterator<CloudStoragePath> toPaths(final Page<Blob> page) {
             final String prefix = m_path.getBlobName();
-
-            Page<Blob> blobs = fs.getClient().listBlobs(m_path.getBucketName(), prefix, m_nextPageToken);
             final List<CloudStoragePath> paths = new ArrayList<>();
 
-            blobs.streamValues() //
+            page.streamValues() //
                     .filter(obj -> !Objects.equals(prefix, obj.getName())) //
                     .map(this::createPath) //
                     .forEach(paths::add); // NOSONAR we want a mutable list
 
-            m_nextPageToken = blobs.getNextPageToken();
-
             return paths.iterator();
         }
 
@@ -190,20 +264,63 @@ protected Iterator<CloudStoragePath> loadNextPage() throws IOException {
         private CloudStoragePath createPath(final Blob blob) {
             final CloudStorageFileSystem fs = m_path.getFileSystem();
             CloudStoragePath path = new CloudStoragePath(fs, m_path.getBucketName(), blob.getName());
-            var createdAt = FileTime.fromMillis(0);
-            var modifiedAt = createdAt;
-            if (blob.getCreateTimeOffsetDateTime() != null) {
-                createdAt = FileTime.from(blob.getCreateTimeOffsetDateTime().toInstant());
-            }
-            if (blob.getUpdateTimeOffsetDateTime() != null) {
-                modifiedAt = FileTime.from(blob.getUpdateTimeOffsetDateTime().toInstant());
-            }
-            BaseFileAttributes attrs = new BaseFileAttributes(!path.isDirectory(), path, modifiedAt, modifiedAt,
-                    createdAt, blob.getSize(), false, false, null);
-            fs.addToAttributeCache(path, attrs);
+            fs.addToAttributeCache(path, createAttributes(path, blob));
 
             return path;
         }
 
     }
+
+    /**
+     * Creates the attributes of the given bucket path.
+     *
+     * @param path
+     *            the path of the bucket.
+     * @param bucket
+     *            the listed or created bucket.
+     * @return the attributes.
+     */
+    static BaseFileAttributes createAttributes(final CloudStoragePath path, final Bucket bucket) {
+        var createdAt = FileTime.fromMillis(0);
+        var modifiedAt = createdAt;
+        if (bucket.getCreateTimeOffsetDateTime() != null) {
+            createdAt = FileTime.from(bucket.getCreateTimeOffsetDateTime().toInstant());
+        }
+        if (bucket.getUpdateTimeOffsetDateTime() != null) {
+            modifiedAt = FileTime.from(bucket.getUpdateTimeOffsetDateTime().toInstant());
+        }
+        return new BaseFileAttributes(false, //
+                path, //
+                modifiedAt, //
+                modifiedAt, //
+                createdAt, //
+                0, //
+                false, //
+                false, //
+                null);
+    }
+
+    /**
+     * Creates the attributes of the given path from the blob it has been listed
+     * with.
+     *
+     * @param path
+     *            the path of the blob.
+     * @param blob
+     *            the listed blob.
+     * @return the attributes.
+     */
+    static BaseFileAttributes createAttributes(final CloudStoragePath path, final BlobInfo blob) {
+        var createdAt = FileTime.fromMillis(0);
+        var modifiedAt = createdAt;
+        if (blob.getCreateTimeOffsetDateTime() != null) {
+            createdAt = FileTime.from(blob.getCreateTimeOffsetDateTime().toInstant());
+        }
+        if (blob.getUpdateTimeOffsetDateTime() != null) {
+            modifiedAt = FileTime.from(blob.getUpdateTimeOffsetDateTime().toInstant());
+        }
+        final long size = blob.getSize() != null ? blob.getSize() : 0;
+        return new BaseFileAttributes(!path.isDirectory(), path, modifiedAt, modifiedAt, createdAt, size, false, false,
+                null);
+    }
 }
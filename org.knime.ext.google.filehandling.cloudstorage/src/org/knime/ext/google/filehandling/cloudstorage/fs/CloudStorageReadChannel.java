@@ -0,0 +1,213 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.cloud.storage.BlobId;
+
+/**
+ * Read-only {@link SeekableByteChannel} for Google Cloud Storage blobs, which
+ * only fetches the byte ranges that are actually read. Fetched data is kept in
+ * a small LRU cache of fixed-size blocks. When the channel is read
+ * sequentially, the number of blocks fetched per request grows, so that
+ * sequential reads do not degrade into many tiny range requests.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageReadChannel implements SeekableByteChannel {
+
+    private static final int BLOCK_SIZE = 512 * 1024; // 512 KiB
+
+    private static final int MAX_CACHED_BLOCKS = 32;
+
+    /**
+     * Maximum number of blocks that are fetched with a single range request.
+     */
+    private static final int MAX_BLOCKS_PER_REQUEST = 16;
+
+    private final CloudStorageClient m_client;
+
+    private final BlobId m_blobId;
+
+    private final long m_size;
+
+    private final Map<Long, ByteBuffer> m_blocks = new LinkedHashMap<>(MAX_CACHED_BLOCKS, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, ByteBuffer> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+
+    private long m_position;
+
+    private long m_lastFetchedBlock = -1;
+
+    private int m_blocksPerRequest = 1;
+
+    private boolean m_open = true;
+
+    /**
+     * @param client
+     *            The client to read the ranges with.
+     * @param blobId
+     *            The blob id including the generation.
+     * @param size
+     *            The size of the blob.
+     */
+    CloudStorageReadChannel(final CloudStorageClient client, final BlobId blobId, final long size) {
+        m_client = client;
+        m_blobId = blobId;
+        m_size = size;
+    }
+
+    @Override
+    public synchronized int read(final ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (m_position >= m_size) {
+            return -1;
+        }
+
+        int read = 0;
+        while (dst.hasRemaining() && m_position < m_size) {
+            final long blockIndex = m_position / BLOCK_SIZE;
+            final var block = getBlock(blockIndex).duplicate();
+            block.position((int) (m_position - blockIndex * BLOCK_SIZE));
+
+            final int n = Math.min(dst.remaining(), block.remaining());
+            dst.put(block.limit(block.position() + n));
+            m_position += n;
+            read += n;
+        }
+        return read;
+    }
+
+    private ByteBuffer getBlock(final long blockIndex) throws IOException {
+        final var block = m_blocks.get(blockIndex);
+        if (block != null) {
+            return block;
+        }
+
+        if (blockIndex == m_lastFetchedBlock + 1) {
+            m_blocksPerRequest = Math.min(2 * m_blocksPerRequest, MAX_BLOCKS_PER_REQUEST);
+        } else {
+            m_blocksPerRequest = 1;
+        }
+
+        final long start = blockIndex * BLOCK_SIZE;
+        final int length = (int) Math.min((long) m_blocksPerRequest * BLOCK_SIZE, m_size - start);
+        final var data = m_client.readRange(m_blobId, start, length);
+
+        ByteBuffer first = null;
+        for (var offset = 0; offset < length; offset += BLOCK_SIZE) {
+            final var slice = data.slice(offset, Math.min(BLOCK_SIZE, length - offset));
+            final long index = blockIndex + offset / BLOCK_SIZE;
+            m_blocks.put(index, slice);
+            m_lastFetchedBlock = index;
+            if (first == null) {
+                first = slice;
+            }
+        }
+        return first;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return m_position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(final long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position must not be negative");
+        }
+        m_position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return m_size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return m_open;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        m_open = false;
+        m_blocks.clear();
+    }
+
+    private synchronized void ensureOpen() throws IOException {
+        if (!m_open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -85,8 +85,9 @@ public void copyFromRemote(final CloudStoragePath remoteFile, final Path tempFil
     @SuppressWarnings("resource")
     @Override
     public void copyToRemote(final CloudStoragePath remoteFile, final Path tempFile) throws IOException {
-        remoteFile.getFileSystem().getClient().insertBlob(remoteFile.getBucketName(), remoteFile.getBlobName(),
-                tempFile);
+        final var blob = remoteFile.getFileSystem().getClient().insertBlob(remoteFile.getBucketName(),
+                remoteFile.getBlobName(), tempFile);
+        remoteFile.getFileSystem().cacheWrittenBlob(remoteFile, blob);
     }
 
 }
@@ -0,0 +1,335 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.knime.core.node.NodeLogger;
+
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.OAuth2Credentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.auth.oauth2.UserCredentials;
+import com.google.cloud.storage.Storage;
+
+/**
+ * Shares {@link Storage} instances between all clients that connect with the
+ * same credentials, project, timeouts, transport, endpoint and upload chunk
+ * size, so that connector nodes in loops or many connectors with the same
+ * settings do not set up a new service (and warm up new connections) every
+ * time. Instances are reference counted and closed when the last client
+ * releases them.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageServicePool {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(CloudStorageServicePool.class);
+
+    private static final Map<Key, PooledStorage> POOL = new HashMap<>();
+
+    private CloudStorageServicePool() {
+    }
+
+    /**
+     * Acquires a shared {@link Storage} instance for the given configuration,
+     * which is created with the given factory if there is none yet. The storage
+     * is created outside of the pool lock, so that acquiring storages for other
+     * configurations does not wait for it. The returned lease must be released
+     * once the storage is no longer used.
+     *
+     * @param config
+     *            the connection configuration.
+     * @param factory
+     *            creates a new storage for a configuration.
+     * @return the lease of the storage.
+     */
+    static Lease acquire(final CloudStorageConnectionConfig config,
+            final Function<CloudStorageConnectionConfig, Storage> factory) {
+        final var key = new Key(config);
+        final PooledStorage pooled;
+        final boolean create;
+        synchronized (POOL) {
+            final var existing = POOL.get(key);
+            create = existing == null;
+            pooled = create ? new PooledStorage() : existing;
+            if (create) {
+                POOL.put(key, pooled);
+            }
+            pooled.m_references++;
+        }
+
+        if (create) {
+            try {
+                pooled.m_storage.complete(Objects.requireNonNull(factory.apply(config)));
+            } catch (RuntimeException | Error ex) { // NOSONAR waiting clients must not hang
+                discard(key, pooled);
+                pooled.m_storage.completeExceptionally(ex);
+                throw ex;
+            }
+        } else {
+            try {
+                pooled.m_storage.join();
+            } catch (CompletionException ex) { // NOSONAR the cause is rethrown
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+        return new Lease(key, pooled);
+    }
+
+    private static void discard(final Key key, final PooledStorage pooled) {
+        synchronized (POOL) {
+            POOL.remove(key, pooled);
+        }
+    }
+
+    private static void release(final Key key, final PooledStorage pooled) {
+        synchronized (POOL) {
+            if (--pooled.m_references > 0) {
+                return;
+            }
+            POOL.remove(key, pooled);
+        }
+
+        try {
+            pooled.m_storage.join().close();
+        } catch (Exception ex) { // NOSONAR closing is best effort
+            LOGGER.debug("Failed to close Cloud Storage service: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * A reference to a shared {@link Storage} instance.
+     */
+    static final class Lease {
+
+        private final Key m_key;
+
+        private final PooledStorage m_pooled;
+
+        private boolean m_released;
+
+        private Lease(final Key key, final PooledStorage pooled) {
+            m_key = key;
+            m_pooled = pooled;
+        }
+
+        /**
+         * @return the shared storage.
+         */
+        Storage getStorage() {
+            return m_pooled.m_storage.join();
+        }
+
+        /**
+         * Releases this reference, closing the storage if it was the last one.
+         * Subsequent calls have no effect.
+         */
+        synchronized void release() {
+            if (!m_released) {
+                m_released = true;
+                CloudStorageServicePool.release(m_key, m_pooled);
+            }
+        }
+    }
+
+    private static final class PooledStorage {
+
+        /** Completed by the client which created the entry. */
+        private final CompletableFuture<Storage> m_storage = new CompletableFuture<>();
+
+        private int m_references;
+    }
+
+    /**
+     * The settings a {@link Storage} instance is built from. Credentials are
+     * compared by a fingerprint of what identifies the account they
+     * authenticate, see {@link #fingerprint(Credentials)}.
+     */
+    private static final class Key {
+
+        private final Object m_credentials;
+
+        private final String m_projectId;
+
+        private final Duration m_connectionTimeOut;
+
+        private final Duration m_readTimeOut;
+
+        private final boolean m_useGrpc;
+
+        private final String m_endpoint;
+
+        private final int m_uploadChunkSize;
+
+        Key(final CloudStorageConnectionConfig config) {
+            m_credentials = fingerprint(config.getCredentials());
+            m_projectId = config.getProjectId();
+            m_connectionTimeOut = config.getConnectionTimeOut();
+            m_readTimeOut = config.getReadTimeOut();
+            m_useGrpc = config.isUseGrpc();
+            m_endpoint = config.getEndpoint();
+            m_uploadChunkSize = config.getUploadChunkSize();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key other)) {
+                return false;
+            }
+            return m_useGrpc == other.m_useGrpc //
+                    && m_uploadChunkSize == other.m_uploadChunkSize //
+                    && m_credentials.equals(other.m_credentials) //
+                    && Objects.equals(m_projectId, other.m_projectId) //
+                    && Objects.equals(m_connectionTimeOut, other.m_connectionTimeOut) //
+                    && Objects.equals(m_readTimeOut, other.m_readTimeOut) //
+                    && Objects.equals(m_endpoint, other.m_endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(m_credentials, m_projectId, m_connectionTimeOut, m_readTimeOut, m_useGrpc,
+                    m_endpoint, m_uploadChunkSize);
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the given credentials which is equal for all
+     * instances that authenticate the same account in the same way, and which
+     * does not change when the credentials refresh their access token.
+     * Secrets only enter the fingerprint as their SHA-256 hash.
+     * <ul>
+     * <li>Service account credentials are identified by the client email, the
+     * key, the scopes and the impersonated user.</li>
+     * <li>User credentials are identified by the client ID and the refresh
+     * token.</li>
+     * <li>Other OAuth2 credentials, such as the ones created from a KNIME
+     * credential, can only be refreshed by the instance itself and are
+     * identified by their current access token.</li>
+     * </ul>
+     * Credentials of any other kind, or without the identifying values, are
+     * compared by identity.
+     *
+     * @param credentials
+     *            the credentials.
+     * @return the fingerprint, either a {@link String} or the credentials
+     *         instance itself.
+     */
+    static Object fingerprint(final Credentials credentials) {
+        if (credentials instanceof ServiceAccountCredentials sa) {
+            String key = sa.getPrivateKeyId();
+            if (key == null && sa.getPrivateKey() != null) {
+                key = sha256(HexFormat.of().formatHex(sa.getPrivateKey().getEncoded()));
+            }
+            if (sa.getClientEmail() != null && key != null) {
+                return String.join("\n", "service-account", sa.getClientEmail(), key,
+                        String.valueOf(sa.getScopes()), String.valueOf(sa.getServiceAccountUser()));
+            }
+        } else if (credentials instanceof UserCredentials user) {
+            if (user.getClientId() != null && user.getRefreshToken() != null) {
+                return String.join("\n", "user", user.getClientId(), sha256(user.getRefreshToken()));
+            }
+        } else if (credentials instanceof OAuth2Credentials oauth2 && isPlainOAuth2(oauth2)) {
+            final var token = oauth2.getAccessToken();
+            if (token != null && token.getTokenValue() != null) {
+                return String.join("\n", "access-token", sha256(token.getTokenValue()));
+            }
+        }
+        return new Identity(credentials);
+    }
+
+    /**
+     * @return whether the given credentials are a plain {@link OAuth2Credentials}
+     *         instance or the ad-hoc subclass created from a KNIME credential,
+     *         rather than credentials with further identifying state.
+     */
+    private static boolean isPlainOAuth2(final OAuth2Credentials credentials) {
+        return credentials.getClass() == OAuth2Credentials.class || credentials.getClass().isAnonymousClass();
+    }
+
+    private static String sha256(final String secret) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(secret.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Compares credentials by identity: their equality may include the access
+     * token, which changes when the token is refreshed.
+     */
+    private record Identity(Credentials credentials) {
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Identity other && credentials == other.credentials;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(credentials);
+        }
+    }
+}
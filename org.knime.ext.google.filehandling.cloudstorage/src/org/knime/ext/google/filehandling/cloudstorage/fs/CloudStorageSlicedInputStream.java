@@ -0,0 +1,199 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.cloud.storage.StorageException;
+
+/**
+ * {@link InputStream} that downloads a blob with several concurrent range
+ * requests. The blob is split into slices of fixed size, of which at most a
+ * given number are downloaded ahead of the consumer. Slices are handed out
+ * strictly in order, so the consumer sees a plain sequential stream.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageSlicedInputStream extends InputStream {
+
+    /**
+     * Size of a single slice (range request).
+     */
+    static final int SLICE_SIZE = 8 * 1024 * 1024; // 8 MiB
+
+    private final RangeReader m_reader;
+
+    private final long m_size;
+
+    private final int m_maxSlicesAhead;
+
+    private final ExecutorService m_executor;
+
+    private final Deque<Future<ByteBuffer>> m_pendingSlices = new ArrayDeque<>();
+
+    private long m_nextSliceOffset;
+
+    private ByteBuffer m_currentSlice;
+
+    private boolean m_closed;
+
+    /**
+     * @param reader
+     *            Reads the ranges, all from the same generation of the blob.
+     * @param size
+     *            The size of the blob.
+     * @param maxSlicesAhead
+     *            The maximum number of slices that are downloaded ahead of the
+     *            consumer, i.e. the number of concurrent range requests.
+     * @param executor
+     *            The executor to download the slices with.
+     */
+    CloudStorageSlicedInputStream(final RangeReader reader, final long size, final int maxSlicesAhead,
+            final ExecutorService executor) {
+        m_reader = reader;
+        m_size = size;
+        m_maxSlicesAhead = maxSlicesAhead;
+        m_executor = executor;
+        scheduleSlices();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureCurrentSlice()) {
+            return -1;
+        }
+        return m_currentSlice.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureCurrentSlice()) {
+            return -1;
+        }
+
+        final int n = Math.min(len, m_currentSlice.remaining());
+        m_currentSlice.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return m_currentSlice == null ? 0 : m_currentSlice.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        m_currentSlice = null;
+        m_pendingSlices.forEach(f -> f.cancel(true));
+        m_pendingSlices.clear();
+    }
+
+    private boolean ensureCurrentSlice() throws IOException {
+        ensureOpen();
+        while (m_currentSlice == null || !m_currentSlice.hasRemaining()) {
+            final var next = m_pendingSlices.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                m_currentSlice = CloudStorageClient.await(next);
+            } catch (StorageException e) {
+                throw new IOException(e);
+            }
+            // top up only once the awaited request is done, to bound the concurrent requests
+            scheduleSlices();
+        }
+        return true;
+    }
+
+    private void scheduleSlices() {
+        while (m_pendingSlices.size() < m_maxSlicesAhead && m_nextSliceOffset < m_size) {
+            final long offset = m_nextSliceOffset;
+            final int length = (int) Math.min(SLICE_SIZE, m_size - offset);
+            m_pendingSlices.add(m_executor.submit(() -> m_reader.readRange(offset, length)));
+            m_nextSliceOffset += length;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (m_closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Reads a single slice of the blob.
+     */
+    @FunctionalInterface
+    interface RangeReader {
+
+        /**
+         * @param position
+         *            Start of the range.
+         * @param length
+         *            Length of the range.
+         * @return a buffer holding the bytes of the range, ready to be read.
+         * @throws IOException
+         */
+        ByteBuffer readRange(long position, int length) throws IOException;
+    }
+}
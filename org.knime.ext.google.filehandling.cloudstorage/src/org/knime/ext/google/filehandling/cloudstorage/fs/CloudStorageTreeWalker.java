@@ -0,0 +1,558 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.knime.filehandling.core.connections.base.attributes.BaseFileAttributes;
+
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.StorageException;
+
+/**
+ * Serves the directory listings of a recursive tree walk from a single flat
+ * (non-delimited) listing of the walked subtree, instead of one delimited
+ * listing per directory. This reduces a walk of a deep tree to roughly one
+ * request per 1000 objects.
+ *
+ * <p>
+ * A walk as done by {@link java.nio.file.Files#walkFileTree} is depth-first:
+ * while iterating a directory, the listing of a returned subdirectory is opened
+ * before the iteration continues. A flat listing is started when this pattern
+ * is seen, i.e. when a directory is listed while the delimited listing of its
+ * parent is still open in the same thread. The listings of the directories
+ * below it are then served from the same flat listing, as long as each one is
+ * opened for the directory that the enclosing listing returned last. Since
+ * object names are listed in lexicographic order, all names below a directory
+ * are contiguous: a listing returns a subdirectory without consuming its names
+ * and skips the names that have not been consumed by a nested listing when it
+ * advances. Listings opened in any other order are served by delimited
+ * listings as before.
+ * </p>
+ *
+ * <p>
+ * The attributes of every returned path, including directories which only
+ * exist implicitly, are put into the attribute cache.
+ * </p>
+ *
+ * <p>
+ * Deletes and copies of files returned by an open listing, delimited or not,
+ * are deferred to {@link CloudStorageDeferredOperations} of the listing, so
+ * that a recursive delete sends batch requests instead of one request per file
+ * and a recursive copy runs its copies concurrently. They are waited for when
+ * the listing is closed, and before the same thread accesses a deleted, copied
+ * or written file, or a directory containing one. Other threads may see the
+ * previous state until then.
+ * </p>
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class CloudStorageTreeWalker {
+
+    private static final FileTime EPOCH = FileTime.fromMillis(0);
+
+    private final CloudStorageFileSystem m_fs;
+
+    private final FlatLister m_lister;
+
+    /**
+     * The directories with an open delimited listing.
+     */
+    private final List<OpenListing> m_openListings = new ArrayList<>();
+
+    /**
+     * The running flat walks.
+     */
+    private final List<Walk> m_walks = new ArrayList<>();
+
+    /**
+     * @param fs
+     *            the file system of the walked paths.
+     * @param lister
+     *            lists all blobs below a prefix in lexicographic order.
+     */
+    CloudStorageTreeWalker(final CloudStorageFileSystem fs, final FlatLister lister) {
+        m_fs = fs;
+        m_lister = lister;
+    }
+
+    /**
+     * Notes that a delimited listing of the given directory has been opened in
+     * the current thread.
+     *
+     * @param dir
+     *            the listed directory.
+     * @return the handle to pass to {@link #listingClosed(OpenListing)}.
+     */
+    synchronized OpenListing listingOpened(final CloudStoragePath dir) {
+        final var listing = new OpenListing(Thread.currentThread(), dir.getBucketName(), toKey(dir));
+        m_openListings.add(listing);
+        return listing;
+    }
+
+    /**
+     * Notes that a delimited listing has been closed and waits for the deferred
+     * operations on its files.
+     *
+     * @param handle
+     *            the handle returned by {@link #listingOpened(CloudStoragePath)}.
+     * @throws IOException
+     *             if some of the deferred operations failed.
+     */
+    void listingClosed(final OpenListing handle) throws IOException {
+        synchronized (this) {
+            m_openListings.remove(handle);
+        }
+        handle.flush();
+    }
+
+    /**
+     * Defers the delete of the given file if it is a file of a directory that
+     * is listed by the current thread.
+     *
+     * @param file
+     *            the file to delete.
+     * @return whether the delete has been deferred, otherwise the caller has to
+     *         delete the file.
+     * @throws IOException
+     */
+    boolean deferDelete(final CloudStoragePath file) throws IOException {
+        final var parent = findParentListing(file);
+        if (parent == null) {
+            return false;
+        }
+        parent.deferred().delete(file.getBlobName());
+        return true;
+    }
+
+    /**
+     * Defers the copy of the given file if it is a file of a directory that is
+     * listed by the current thread. The copy starts right away, but is waited
+     * for like a deferred delete.
+     *
+     * @param source
+     *            the file to copy.
+     * @param target
+     *            the target file.
+     * @return whether the copy has been deferred, otherwise the caller has to
+     *         copy the file.
+     * @throws IOException
+     */
+    boolean deferCopy(final CloudStoragePath source, final CloudStoragePath target) throws IOException {
+        if (target.getBucketName() == null || target.getBlobName() == null || target.isDirectory()) {
+            return false;
+        }
+        final var parent = findParentListing(source);
+        if (parent == null) {
+            return false;
+        }
+        parent.deferred().copy(source, target);
+        return true;
+    }
+
+    private OpenListing findParentListing(final CloudStoragePath file) {
+        if (file.getBucketName() == null || file.getBlobName() == null || file.isDirectory()) {
+            return null;
+        }
+        final var parentKey = toParentKey(toKey(file));
+        synchronized (this) {
+            for (final var listing : listingsOfCurrentThread()) {
+                if (listing.m_key.equals(parentKey)) {
+                    return listing;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the deferred operations of the current thread on the given path
+     * and, if it is a directory, on anything below it.
+     *
+     * @param path
+     *            the path that is about to be accessed.
+     * @throws IOException
+     *             if some of the deferred operations failed.
+     */
+    void awaitDeferred(final CloudStoragePath path) throws IOException {
+        final var key = toKey(path);
+        final List<OpenListing> toFlush = new ArrayList<>();
+        synchronized (this) {
+            for (final var listing : listingsOfCurrentThread()) {
+                final var deferred = listing.m_deferred;
+                if (deferred != null && deferred.isPending(key)) {
+                    toFlush.add(listing);
+                }
+            }
+        }
+        for (final var listing : toFlush) {
+            listing.flush();
+        }
+    }
+
+    /**
+     * @return the open delimited and flat listings of the current thread.
+     */
+    private List<OpenListing> listingsOfCurrentThread() {
+        final var thread = Thread.currentThread();
+        final List<OpenListing> listings = new ArrayList<>();
+        for (final var listing : m_openListings) {
+            if (listing.m_thread == thread) {
+                listings.add(listing);
+            }
+        }
+        for (final var walk : m_walks) {
+            if (walk.m_owner == thread) {
+                listings.addAll(walk.m_listings);
+            }
+        }
+        return listings;
+    }
+
+    /**
+     * Returns an iterator over the direct children of the given directory served
+     * from a flat listing, if the directory is listed as part of a depth-first
+     * walk.
+     *
+     * @param dir
+     *            the directory to list, with a trailing separator.
+     * @param filter
+     *            the filter to apply.
+     * @return the iterator, which should be closed, or <code>null</code> if the
+     *         directory is not listed as part of a walk.
+     * @throws IOException
+     */
+    Iterator<CloudStoragePath> listChildren(final CloudStoragePath dir, final Filter<? super Path> filter)
+            throws IOException {
+        if (dir.getBucketName() == null) {
+            return null;
+        }
+        final var thread = Thread.currentThread();
+        final var prefix = dir.getBlobName() == null ? "" : dir.getBlobName();
+
+        synchronized (this) {
+            for (final var running : m_walks) {
+                if (running.m_owner == thread && running.m_bucket.equals(dir.getBucketName())
+                        && running.descend(prefix)) {
+                    return running.newListing(prefix, filter);
+                }
+            }
+
+            final var parentKey = toParentKey(toKey(dir));
+            if (m_openListings.stream().noneMatch(l -> l.m_thread == thread && l.m_key.equals(parentKey))) {
+                return null;
+            }
+        }
+
+        final var walk = new Walk(thread, dir.getBucketName(), m_lister.list(dir.getBucketName(), prefix));
+        final var listing = walk.newListing(prefix, filter);
+        synchronized (this) {
+            m_walks.add(walk);
+        }
+        return listing;
+    }
+
+    private static String toKey(final CloudStoragePath dir) {
+        if (dir.getBucketName() == null) {
+            return CloudStorageFileSystem.PATH_SEPARATOR;
+        }
+        final var blobName = dir.getBlobName() == null ? "" : dir.getBlobName();
+        return CloudStorageFileSystem.PATH_SEPARATOR + dir.getBucketName() + CloudStorageFileSystem.PATH_SEPARATOR
+                + blobName;
+    }
+
+    private static String toParentKey(final String key) {
+        final var end = key.lastIndexOf(CloudStorageFileSystem.PATH_SEPARATOR, key.length() - 2);
+        return key.substring(0, end + 1);
+    }
+
+    /**
+     * Lists all blobs below a prefix.
+     */
+    @FunctionalInterface
+    interface FlatLister {
+
+        /**
+         * @param bucket
+         *            the bucket name.
+         * @param prefix
+         *            the separator-terminated prefix, empty for the whole bucket.
+         * @return the blobs, ordered by name.
+         * @throws IOException
+         */
+        Iterator<? extends BlobInfo> list(String bucket, String prefix) throws IOException;
+    }
+
+    /**
+     * An open listing of a directory, with the deferred operations on its files.
+     */
+    class OpenListing {
+
+        private final Thread m_thread;
+
+        private final String m_bucket;
+
+        private final String m_key;
+
+        private CloudStorageDeferredOperations m_deferred;
+
+        private OpenListing(final Thread thread, final String bucket, final String key) {
+            m_thread = thread;
+            m_bucket = bucket;
+            m_key = key;
+        }
+
+        CloudStorageDeferredOperations deferred() {
+            if (m_deferred == null) {
+                m_deferred = new CloudStorageDeferredOperations(m_fs, m_bucket, m_key);
+            }
+            return m_deferred;
+        }
+
+        void flush() throws IOException {
+            if (m_deferred != null) {
+                m_deferred.flush();
+            }
+        }
+    }
+
+    /**
+     * A flat listing shared by the listings of a walk. Only used by the thread
+     * which started it.
+     */
+    private final class Walk {
+
+        private final Thread m_owner;
+
+        private final String m_bucket;
+
+        private final List<Listing> m_listings = new ArrayList<>();
+
+        private final Iterator<? extends BlobInfo> m_blobs;
+
+        private BlobInfo m_next;
+
+        private Walk(final Thread owner, final String bucket, final Iterator<? extends BlobInfo> blobs) {
+            m_owner = owner;
+            m_bucket = bucket;
+            m_blobs = blobs;
+        }
+
+        /**
+         * @return whether the given directory has just been returned by an open
+         *         listing of this walk and none of its names has been consumed.
+         */
+        private boolean descend(final String prefix) {
+            for (final var listing : m_listings) {
+                if (prefix.equals(listing.m_returnedDir)) {
+                    // skipping the names of the directory is left to the nested listing
+                    listing.m_returnedDir = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Listing newListing(final String prefix, final Filter<? super Path> filter) {
+            final var listing = new Listing(this, prefix, filter);
+            synchronized (CloudStorageTreeWalker.this) {
+                m_listings.add(listing);
+            }
+            return listing;
+        }
+
+        private void listingClosed(final Listing listing) {
+            synchronized (CloudStorageTreeWalker.this) {
+                m_listings.remove(listing);
+                if (m_listings.isEmpty()) {
+                    m_walks.remove(this);
+                }
+            }
+        }
+
+        private BlobInfo peek() {
+            if (m_next == null) {
+                try {
+                    if (m_blobs.hasNext()) {
+                        m_next = m_blobs.next();
+                    }
+                } catch (StorageException e) {
+                    throw new UncheckedIOException(new IOException(e.getMessage(), e));
+                }
+            }
+            return m_next;
+        }
+
+        private void consume() {
+            m_next = null;
+        }
+
+        /**
+         * Skips all names below the given separator-terminated prefix.
+         */
+        private void skip(final String prefix) {
+            for (var blob = peek(); blob != null && blob.getName().startsWith(prefix); blob = peek()) {
+                consume();
+            }
+        }
+    }
+
+    /**
+     * Iterator over the direct children of a directory, served from the flat
+     * listing of a walk.
+     */
+    private final class Listing extends OpenListing implements Iterator<CloudStoragePath>, Closeable {
+
+        private final Walk m_walk;
+
+        private final String m_prefix;
+
+        private final Filter<? super Path> m_filter;
+
+        /**
+         * The name of the directory which has been returned last and whose names
+         * have not been skipped yet, <code>null</code> if there is none.
+         */
+        private String m_returnedDir;
+
+        private CloudStoragePath m_nextPath;
+
+        private boolean m_closed;
+
+        private Listing(final Walk walk, final String prefix, final Filter<? super Path> filter) {
+            super(walk.m_owner, walk.m_bucket, CloudStorageFileSystem.PATH_SEPARATOR + walk.m_bucket
+                    + CloudStorageFileSystem.PATH_SEPARATOR + prefix);
+            m_walk = walk;
+            m_prefix = prefix;
+            m_filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (m_nextPath == null && !m_closed) {
+                m_nextPath = advance();
+            }
+            return m_nextPath != null;
+        }
+
+        @Override
+        public CloudStoragePath next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final var path = m_nextPath;
+            m_nextPath = null;
+            return path;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!m_closed) {
+                m_closed = true;
+                m_walk.listingClosed(this);
+                flush();
+            }
+        }
+
+        private CloudStoragePath advance() {
+            while (true) {
+                if (m_returnedDir != null) {
+                    final var dirName = m_returnedDir;
+                    m_returnedDir = null;
+                    m_walk.skip(dirName);
+                }
+
+                final var blob = m_walk.peek();
+                if (blob == null || !blob.getName().startsWith(m_prefix)) {
+                    return null;
+                }
+                final var name = blob.getName();
+                final var sep = name.indexOf(CloudStorageFileSystem.PATH_SEPARATOR, m_prefix.length());
+                if (name.equals(m_prefix)) {
+                    // marker object of the listed directory itself
+                    m_walk.consume();
+                    continue;
+                }
+
+                final CloudStoragePath path;
+                if (sep < 0) {
+                    m_walk.consume();
+                    path = new CloudStoragePath(m_fs, m_walk.m_bucket, name);
+                    m_fs.addToAttributeCache(path, CloudStoragePathIteratorFactory.createAttributes(path, blob));
+                } else {
+                    // the names below the directory are left to a nested listing
+                    final var dirName = name.substring(0, sep + 1);
+                    m_returnedDir = dirName;
+                    path = new CloudStoragePath(m_fs, m_walk.m_bucket, dirName);
+                    m_fs.addToAttributeCache(path, name.equals(dirName) //
+                            ? CloudStoragePathIteratorFactory.createAttributes(path, blob) //
+                            : new BaseFileAttributes(false, path, EPOCH, EPOCH, EPOCH, 0, false, false, null));
+                }
+
+                if (accept(path)) {
+                    return path;
+                }
+            }
+        }
+
+        private boolean accept(final CloudStoragePath path) {
+            try {
+                return m_filter.accept(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ */
+package org.knime.ext.google.filehandling.cloudstorage.fs;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.google.cloud.storage.signedurl.GoogleCSUrlSignature;
+
+import com.google.auth.Credentials;
+
+/**
+ * Signs Cloud Storage URLs using the V4 signing process. The parts of the
+ * process are built by {@link GoogleCSUrlSignature}, so the URLs are the same,
+ * but everything that does not depend on the object is kept across calls: the
+ * credential scope and the canonical query are computed once per second, and
+ * every thread keeps its own initialized {@link Signature} and
+ * {@link MessageDigest}. Instances are thread safe, {@link #signAll(List)}
+ * signs on all cores.
+ *
+ * @see <a href=
+ *      "https://cloud.google.com/storage/docs/access-control/signing-urls-manually">Google
+ *      docs</a>
+ * @author KNIME AG, Zurich, Switzerland
+ */
+@SuppressWarnings("deprecation")
+public final class CloudStorageUrlSigner {
+
+    private static final DateTimeFormatter YEAR_MONTH_DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd")
+            .withZone(ZoneOffset.UTC);
+
+    private static final DateTimeFormatter EXACT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final String m_serviceEmail;
+
+    private final long m_expirationSeconds;
+
+    private final ThreadLocal<Signature> m_signature;
+
+    private final ThreadLocal<MessageDigest> m_digest;
+
+    private volatile SigningScope m_scope;
+
+    /**
+     * Creates a new signer.
+     *
+     * @param credentials
+     *            the credentials to sign with, must be service account
+     *            credentials with a private key.
+     * @param validity
+     *            how long the signed URLs are valid, at most seven days.
+     * @throws InvalidSettingsException
+     *             if the credentials or the validity cannot be used for
+     *             signing.
+     */
+    public CloudStorageUrlSigner(final Credentials credentials, final Duration validity)
+            throws InvalidSettingsException {
+        m_expirationSeconds = validity.getSeconds();
+        final var serviceAccount = GoogleCSUrlSignature.checkSigningCredentials(credentials, m_expirationSeconds);
+        m_serviceEmail = serviceAccount.getClientEmail();
+        final PrivateKey privateKey = serviceAccount.getPrivateKey();
+        m_signature = ThreadLocal.withInitial(() -> createSignature(privateKey));
+        m_digest = ThreadLocal.withInitial(CloudStorageUrlSigner::createDigest);
+    }
+
+    private static Signature createSignature(final PrivateKey privateKey) {
+        try {
+            final var signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(privateKey);
+            return signature;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Signs a URL for a single object.
+     *
+     * @param bucketName
+     *            the bucket name.
+     * @param objectName
+     *            the object name.
+     * @return the signed https:// URL.
+     * @throws URISyntaxException
+     *             if signing fails or the result is not a valid URI.
+     */
+    public URI sign(final String bucketName, final String objectName) throws URISyntaxException {
+        final var scope = getScope();
+        final String canonicalUri = "/" + bucketName + "/" + objectName;
+        final String canonicalReqHash = hash(canonicalUri, scope.m_canonicalQuery);
+
+        final String signature;
+        try {
+            signature = signString(GoogleCSUrlSignature.constructV4UnsignedPayload(scope.m_exactDate,
+                    scope.m_yearMonthDay, canonicalReqHash));
+        } catch (GeneralSecurityException ex) {
+            throw (URISyntaxException) new URISyntaxException(canonicalUri,
+                    "Unable to sign the URL: " + ex.getMessage()).initCause(ex);
+        }
+
+        return new URI(GoogleCSUrlSignature.constructV4SignedURL(canonicalUri, scope.m_canonicalQuery, signature));
+    }
+
+    /**
+     * Signs the URLs of the given paths in parallel. The paths must be absolute,
+     * normalized paths of objects.
+     *
+     * @param paths
+     *            the paths to sign.
+     * @return the signed URLs, in the order of the given paths.
+     * @throws URISyntaxException
+     *             if signing fails for any of the paths.
+     */
+    public List<URI> signAll(final List<CloudStoragePath> paths) throws URISyntaxException {
+        try {
+            return paths.parallelStream() //
+                    .map(this::signUnchecked) //
+                    .toList();
+        } catch (UncheckedSigningException ex) { // NOSONAR the cause is rethrown
+            throw ex.getCause();
+        }
+    }
+
+    private URI signUnchecked(final CloudStoragePath path) {
+        try {
+            return sign(path.getBucketName(), path.getBlobName());
+        } catch (URISyntaxException ex) {
+            throw new UncheckedSigningException(ex);
+        }
+    }
+
+    private SigningScope getScope() {
+        final long now = Instant.now().getEpochSecond();
+        var scope = m_scope;
+        if (scope == null || scope.m_epochSecond != now) {
+            scope = new SigningScope(now, m_serviceEmail, m_expirationSeconds);
+            m_scope = scope;
+        }
+        return scope;
+    }
+
+    private String hash(final String canonicalUri, final String canonicalQuery) {
+        final String canonicalRequest = GoogleCSUrlSignature.constructV4CanonicalRequest(canonicalUri,
+                canonicalQuery);
+        final var digest = m_digest.get();
+        return HexFormat.of().formatHex(digest.digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String signString(final String stringToSign) throws GeneralSecurityException {
+        final var signature = m_signature.get();
+        signature.update(stringToSign.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(signature.sign());
+    }
+
+    /**
+     * The parts of a signed URL that only depend on the signing time, which has
+     * a resolution of one second.
+     */
+    private static final class SigningScope {
+
+        private final long m_epochSecond;
+
+        private final String m_yearMonthDay;
+
+        private final String m_exactDate;
+
+        private final String m_canonicalQuery;
+
+        SigningScope(final long epochSecond, final String serviceEmail, final long expirationSeconds) {
+            m_epochSecond = epochSecond;
+            final var now = Instant.ofEpochSecond(epochSecond);
+            m_yearMonthDay = YEAR_MONTH_DAY_FORMAT.format(now);
+            m_exactDate = EXACT_DATE_FORMAT.format(now);
+            final String credentialScope = GoogleCSUrlSignature.constructV4CredentialScope(serviceEmail,
+                    m_yearMonthDay);
+            m_canonicalQuery = GoogleCSUrlSignature.constructV4CanonicalQueryString(credentialScope, m_exactDate,
+                    expirationSeconds);
+        }
+    }
+
+    private static final class UncheckedSigningException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UncheckedSigningException(final URISyntaxException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized URISyntaxException getCause() {
+            return (URISyntaxException) super.getCause();
+        }
+    }
+}
@@ -107,6 +107,12 @@ interface FileSystemSection {
     interface TimeoutsSection {
     }
 
+    @Advanced
+    @Section(title = "Caching")
+    @After(TimeoutsSection.class)
+    interface CachingSection {
+    }
+
     @Layout(ConnectionSection.class)
     @Widget(title = "Project ID", description = """
                 Specifies the <a href="https://cloud.google.com/storage/docs/key-terms#projects">project</a> to which
@@ -118,6 +124,27 @@ interface TimeoutsSection {
     @ValueReference(ProjectIdRef.class)
     String m_projectId = "";
 
+    @Advanced
+    @Layout(ConnectionSection.class)
+    @Widget(title = "Use gRPC", description = """
+            If checked, the connector talks to Cloud Storage with the gRPC based Storage v2 API over HTTP/2 instead
+            of the JSON API over HTTP. This can increase the throughput of reads and writes, especially when KNIME
+            runs on Google Compute Engine. The timeouts then limit the duration of each request. gRPC connections do
+            not use the proxy configured in the KNIME preferences, leave this option unchecked if Cloud Storage can
+            only be reached through a proxy.
+            """)
+    boolean m_useGrpc;
+
+    @Advanced
+    @Layout(ConnectionSection.class)
+    @Widget(title = "Use parallel composite uploads", description = """
+            If checked, files of 150 MB and more are split into parts which are uploaded concurrently and then
+            composed into the target file. This can speed up uploads of large files considerably. Composite files
+            carry no MD5 hash, only a CRC32C checksum, and the temporary parts may incur early deletion charges in
+            buckets with a Nearline, Coldline or Archive storage class, or be kept by retention policies.
+            """)
+    boolean m_useCompositeUploads;
+
     @Layout(FileSystemSection.class)
     @Widget(title = "Working directory", description = """
             Specifies the <i>working directory</i> using the path syntax explained above. The working directory must
@@ -231,6 +258,34 @@ public FSConnectionProvider computeState(final NodeParametersInput parametersInp
     @ValueReference(ReadTimeoutRef.class)
     int m_readTimeout = CloudStorageConnectionConfig.DEFAULT_TIMEOUT_SECONDS;
 
+    @Layout(CachingSection.class)
+    @Widget(title = "Attribute cache time to live in seconds", description = """
+            Time in seconds for which the attributes of files and folders (existence, size, modification time) are
+            cached, or 0 to disable the cache. For buckets which are not modified while the workflow runs, a much
+            longer time avoids repeated requests for the same files and folders.
+            """)
+    @NumberInputWidget(minValidation = IsNonNegativeValidation.class)
+    int m_attributeCacheTimeToLive = CloudStorageConnectionConfig.DEFAULT_ATTRIBUTE_CACHE_TTL_SECONDS;
+
+    @Layout(CachingSection.class)
+    @Widget(title = "Maximum number of cached attributes", description = """
+            Maximum number of files and folders whose attributes are cached, or 0 to disable the cache. When the
+            limit is reached, the least recently used entries are dropped.
+            """)
+    @NumberInputWidget(minValidation = IsNonNegativeValidation.class)
+    int m_attributeCacheMaxEntries = CloudStorageConnectionConfig.DEFAULT_ATTRIBUTE_CACHE_MAX_ENTRIES;
+
+    @Layout(CachingSection.class)
+    @Widget(title = "Content cache size in MB", description = """
+            Maximum size in megabytes of a local on-disk cache for the contents of downloaded files, or 0 to disable
+            the cache. Files that have not changed since they were cached are read from the local disk instead of
+            being downloaded again, e.g. when a workflow is executed repeatedly. The cache is shared by all Google
+            Cloud Storage connections and limited by the largest size among them. When the limit is reached, the least
+            recently used files that are not currently being read are dropped.
+            """)
+    @NumberInputWidget(minValidation = IsNonNegativeValidation.class)
+    int m_contentCacheSize;
+
     // Legacy field to avoid warnings when loading old workflows or flow variables
     // @Persist(configKey = "temp_file_path")
     // private String m_tempFilePath;
@@ -258,9 +313,14 @@ void validateOnConfigure() throws InvalidSettingsException {
     CloudStorageConnectionConfig createFSConnectionConfig(final Credentials credentials) {
         final var config = new CloudStorageConnectionConfig(m_workingDirectory, credentials);
         config.setProjectId(m_projectId);
+        config.setUseGrpc(m_useGrpc);
+        config.setUseCompositeUploads(m_useCompositeUploads);
         config.setNormalizePaths(m_normalizePaths);
         config.setConnectionTimeOut(Duration.ofSeconds(m_connectionTimeout));
         config.setReadTimeOut(Duration.ofSeconds(m_readTimeout));
+        config.setAttributeCacheTimeToLive(Duration.ofSeconds(m_attributeCacheTimeToLive));
+        config.setAttributeCacheMaxEntries(m_attributeCacheMaxEntries);
+        config.setContentCacheSize(m_contentCacheSize * 1024L * 1024L);
         return config;
     }
 }
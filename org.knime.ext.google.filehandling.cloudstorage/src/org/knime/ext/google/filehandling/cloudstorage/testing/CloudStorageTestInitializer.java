@@ -66,7 +66,7 @@
 import org.knime.filehandling.core.util.IOESupplier;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.StorageException;
 
 /**
  * Cloud storage test initializer.
@@ -158,17 +158,21 @@ protected void beforeTestCaseInternal() throws IOException {
     protected void afterTestCaseInternal() throws IOException {
         final CloudStoragePath scratchDir = getTestCaseScratchDir().toDirectoryPath();
 
-        final List<Future<Void>> futures = new LinkedList<>();
-
-        List<Blob> objects = m_client.listAllBlobs(scratchDir.getBucketName(), scratchDir.getBlobName());
-        for (Blob o : objects) {
-            futures.add(execAndRetry(() -> {
-                m_client.deleteBlob(scratchDir.getBucketName(), o.getName());
-                return null;
-            }));
-        }
-
-        awaitFutures(futures);
+        // a retry lists the scratch dir again, so only the remaining objects are deleted
+        awaitFutures(Collections.singletonList(execAndRetry(() -> {
+            try (final var names = m_client.streamAllBlobNames(scratchDir.getBucketName(), scratchDir.getBlobName())) {
+                final var failures = m_client.deleteBlobs(scratchDir.getBucketName(), names.iterator());
+                final var rateLimited = failures.values().stream() //
+                        .filter(e -> e.getCode() == 429) //
+                        .findFirst();
+                if (rateLimited.isPresent()) {
+                    throw rateLimited.get();
+                } else if (!failures.isEmpty()) {
+                    throw new IOException("Failed to delete " + failures.keySet(), failures.values().iterator().next());
+                }
+            }
+            return null;
+        })));
         getFileSystem().clearAttributesCache();
     }
 
@@ -183,11 +187,13 @@ private static Void doRequestWithRetries(final IOESupplier<Void> request) throws
                 return null;
             } catch (GoogleJsonResponseException ex) {
                 if (ex.getStatusCode() == 429) {// Rate limit exceeded
-                    try {
-                        Thread.sleep(5000);
-                    } catch (InterruptedException ex1) {
-                        Thread.currentThread().interrupt();
-                    }
+                    waitForRateLimit();
+                } else {
+                    throw ex;
+                }
+            } catch (StorageException ex) {
+                if (ex.getCode() == 429) {// Rate limit exceeded
+                    waitForRateLimit();
                 } else {
                     throw ex;
                 }
@@ -195,4 +201,12 @@ private static Void doRequestWithRetries(final IOESupplier<Void> request) throws
         }
         throw new IOException("Rate limit exceeded multiple times");
     }
+
+    private static void waitForRateLimit() {
+        try {
+            Thread.sleep(5000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
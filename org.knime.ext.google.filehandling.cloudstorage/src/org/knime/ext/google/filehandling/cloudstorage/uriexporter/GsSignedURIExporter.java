@@ -47,8 +47,11 @@
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.knime.cloud.core.filehandling.signedurl.SignedUrlConfig;
+import org.knime.core.node.InvalidSettingsException;
 import org.knime.ext.google.filehandling.cloudstorage.fs.CloudStoragePath;
 import org.knime.filehandling.core.connections.FSPath;
 import org.knime.filehandling.core.connections.uriexport.URIExporter;
@@ -75,4 +78,36 @@ public URI toUri(final FSPath path) throws URISyntaxException {
         final CloudStoragePath csPath = (CloudStoragePath) path.toAbsolutePath().normalize();
         return csPath.getPreSignedUrl(getConfig().getValidityDuration()).toURI();
     }
+
+    /**
+     * Generates signed URLs for many paths at once. The signing state is shared
+     * and the URLs are signed in parallel, which is considerably faster than
+     * calling {@link #toUri(FSPath)} for every path.
+     *
+     * @param paths
+     *            the paths to export, which must all belong to the same file
+     *            system.
+     * @return the signed URLs, in the order of the given paths.
+     * @throws URISyntaxException
+     *             if any of the URLs could not be signed.
+     */
+    @SuppressWarnings("resource")
+    public List<URI> toUris(final List<? extends FSPath> paths) throws URISyntaxException {
+        if (paths.isEmpty()) {
+            return List.of();
+        }
+
+        final List<CloudStoragePath> csPaths = new ArrayList<>(paths.size());
+        for (FSPath path : paths) {
+            csPaths.add((CloudStoragePath) path.toAbsolutePath().normalize());
+        }
+
+        try {
+            final var fileSystem = csPaths.get(0).getFileSystem();
+            return fileSystem.getUrlSigner(getConfig().getValidityDuration()).signAll(csPaths);
+        } catch (InvalidSettingsException ex) {
+            throw (URISyntaxException) new URISyntaxException(paths.get(0).toString(), ex.getMessage())
+                    .initCause(ex);
+        }
+    }
 }
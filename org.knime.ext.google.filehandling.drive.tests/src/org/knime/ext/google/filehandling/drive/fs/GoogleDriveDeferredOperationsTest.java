@@ -0,0 +1,142 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-17 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.services.drive.model.File;
+
+/**
+ * Tests which paths are affected by the operations of
+ * {@link GoogleDriveDeferredOperations}, and how the lookups of path segments
+ * are chained by {@link GoogleDriveFileSystemProvider}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveDeferredOperationsTest {
+
+    private GoogleDriveFileSystem m_fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        m_fileSystem = new GoogleDriveFileSystem(new GoogleDriveFSConnectionConfig("/", null));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        m_fileSystem.close();
+    }
+
+    @Test
+    void testDeletedFileIsPending() throws IOException {
+        final GoogleDriveDeferredOperations deferred = newDeferred("/My Drive/dir");
+        deferred.delete(path("/My Drive/dir/a"), "1");
+
+        Assertions.assertTrue(deferred.isPending(path("/My Drive/dir/a"), false));
+        Assertions.assertFalse(deferred.isPending(path("/My Drive/dir/b"), true));
+        Assertions.assertFalse(deferred.isPending(path("/My Drive/dir"), false));
+        Assertions.assertTrue(deferred.isPending(path("/My Drive/dir"), true));
+        Assertions.assertTrue(deferred.isPending(path("/My Drive"), true));
+    }
+
+    @Test
+    void testSiblingWithSamePrefixIsNotPending() throws IOException {
+        final GoogleDriveDeferredOperations deferred = newDeferred("/My Drive/dir");
+        deferred.delete(path("/My Drive/dir/a b"), "1");
+
+        Assertions.assertFalse(deferred.isPending(path("/My Drive/dir/a"), true));
+    }
+
+    @Test
+    void testSourceAndTargetOfMoveArePending() throws IOException {
+        final GoogleDriveDeferredOperations deferred = newDeferred("/My Drive/dir");
+        deferred.move(path("/My Drive/dir/a"), "1", path("/My Drive/other/a"), "2");
+
+        Assertions.assertTrue(deferred.isPending(path("/My Drive/dir/a"), false));
+        Assertions.assertTrue(deferred.isPending(path("/My Drive/other/a"), false));
+        Assertions.assertTrue(deferred.isPending(path("/My Drive/other"), true));
+    }
+
+    @Test
+    void testChildIsSelectedByParent() throws IOException {
+        final List<File> files = List.of(file("a", "1", "p1"), file("a", "2", "p2"));
+
+        Assertions.assertEquals("2", GoogleDriveFileSystemProvider.selectChild(files, "p2", "a", "/a").getId());
+        Assertions.assertThrows(NoSuchFileException.class,
+            () -> GoogleDriveFileSystemProvider.selectChild(files, "p3", "a", "/a"));
+    }
+
+    @Test
+    void testChildOfRestrictedLookupIsSelectedByName() throws IOException {
+        final List<File> files = List.of(file("a", "1", "p1"), file("b", "2", "p1"));
+
+        Assertions.assertEquals("2", GoogleDriveFileSystemProvider.selectChild(files, null, "b", "/b").getId());
+        Assertions.assertThrows(NoSuchFileException.class,
+            () -> GoogleDriveFileSystemProvider.selectChild(List.of(), null, "b", "/b"));
+    }
+
+    private GoogleDriveDeferredOperations newDeferred(final String dir) {
+        return new GoogleDriveDeferredOperations(m_fileSystem.provider().getHelper(), path(dir));
+    }
+
+    private GoogleDrivePath path(final String path) {
+        return m_fileSystem.getPath(path);
+    }
+
+    private static File file(final String name, final String id, final String parentId) {
+        return new File().setName(name).setId(id).setParents(List.of(parentId));
+    }
+}
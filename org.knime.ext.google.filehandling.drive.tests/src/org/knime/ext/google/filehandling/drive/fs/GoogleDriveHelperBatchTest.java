@@ -0,0 +1,413 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+/**
+ * Tests the batch requests of {@link GoogleDriveHelper} against a stand-in for
+ * Google Drive, which answers with scripted responses.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveHelperBatchTest {
+
+    private static final String BOUNDARY = "batch_boundary";
+
+    private static final String NO_CONTENT = "HTTP/1.1 204 No Content\r\n\r\n";
+
+    private static final String NOT_FOUND = "HTTP/1.1 404 Not Found\r\nContent-Type: application/json\r\n\r\n"
+        + "{\"error\":{\"code\":404,\"message\":\"File not found\"}}";
+
+    private static final String RATE_LIMITED = "HTTP/1.1 403 Forbidden\r\nContent-Type: application/json\r\n\r\n"
+        + "{\"error\":{\"code\":403,\"message\":\"Rate limit exceeded\","
+        + "\"errors\":[{\"domain\":\"usageLimits\",\"reason\":\"userRateLimitExceeded\"}]}}";
+
+    private final ScriptedTransport m_transport = new ScriptedTransport();
+
+    private GoogleDriveHelper m_helper;
+
+    @BeforeEach
+    void setUp() {
+        m_helper = new GoogleDriveHelper(new GoogleDriveFSConnectionConfig("/", null), m_transport, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        m_helper.close();
+    }
+
+    @Test
+    void testMissingFileIsReported() throws IOException {
+        m_transport.respondWithBatch(NOT_FOUND, NO_CONTENT);
+
+        final Map<String, IOException> failures = m_helper.deleteFiles(List.of("a", "b"));
+
+        Assertions.assertEquals(Set.of("a"), failures.keySet());
+        Assertions.assertTrue(failures.get("a") instanceof NoSuchFileException);
+    }
+
+    @Test
+    void testOnlyRateLimitedCallsAreRetried() throws IOException {
+        m_transport.respondWithBatch(RATE_LIMITED, NO_CONTENT);
+        m_transport.respondWithBatch(NO_CONTENT);
+
+        Assertions.assertTrue(m_helper.deleteFiles(List.of("a", "b")).isEmpty());
+
+        Assertions.assertEquals(2, m_transport.m_requests.size());
+        Assertions.assertTrue(m_transport.m_requests.get(1).contains("/files/a "));
+        Assertions.assertFalse(m_transport.m_requests.get(1).contains("/files/b "));
+    }
+
+    @Test
+    void testMissingFileAfterRetriedCallIsReported() throws IOException {
+        m_transport.respondWithBatch(RATE_LIMITED, NO_CONTENT);
+        m_transport.respondWithBatch(NOT_FOUND);
+
+        // a rate limited delete has not been applied, so the file has been gone before
+        Assertions.assertEquals(Set.of("a"), m_helper.deleteFiles(List.of("a", "b")).keySet());
+    }
+
+    @Test
+    void testUnansweredDeletesAreResent() throws IOException {
+        m_transport.respond(503, "text/plain", "Service Unavailable");
+        m_transport.respondWithBatch(NOT_FOUND, NO_CONTENT);
+
+        // the first, unanswered attempt may have deleted 'a' already
+        Assertions.assertTrue(m_helper.deleteFiles(List.of("a", "b")).isEmpty());
+
+        Assertions.assertEquals(2, m_transport.m_requests.size());
+        Assertions.assertTrue(m_transport.m_requests.get(1).contains("/files/a "));
+        Assertions.assertTrue(m_transport.m_requests.get(1).contains("/files/b "));
+    }
+
+    @Test
+    void testRejectedBatchFails() {
+        m_transport.respond(400, "text/plain", "Bad Request");
+
+        Assertions.assertThrows(IOException.class, () -> m_helper.deleteFiles(List.of("a", "b")));
+        Assertions.assertEquals(1, m_transport.m_requests.size());
+    }
+
+    @Test
+    void testSequentialCallIsNotDelayed() {
+        final GoogleDriveHelper helper = newHelper(Duration.ofMinutes(1));
+        m_transport.respond(204, "text/plain", "");
+
+        try {
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> helper.deleteFile("a"));
+        } finally {
+            helper.close();
+        }
+        Assertions.assertFalse(m_transport.m_requests.get(0).contains(BOUNDARY));
+    }
+
+    @Test
+    void testConcurrentCallsAreCoalesced() throws Exception {
+        final GoogleDriveHelper helper = newHelper(Duration.ofSeconds(1));
+        m_transport.respond(204, "text/plain", "");
+        m_transport.respondWithBatch(NO_CONTENT, NO_CONTENT);
+        m_transport.holdFirstResponse();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final Future<?> a = executor.submit(() -> deleteFile(helper, "a"));
+            m_transport.awaitFirstRequest();
+            // while the first call is in flight, the next ones wait for each other
+            final Future<?> b = executor.submit(() -> deleteFile(helper, "b"));
+            final Future<?> c = executor.submit(() -> deleteFile(helper, "c"));
+            b.get(10, TimeUnit.SECONDS);
+            c.get(10, TimeUnit.SECONDS);
+
+            m_transport.releaseFirstResponse();
+            a.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+            helper.close();
+        }
+
+        Assertions.assertEquals(2, m_transport.m_requests.size());
+        Assertions.assertTrue(m_transport.m_requests.get(1).contains("/files/b "));
+        Assertions.assertTrue(m_transport.m_requests.get(1).contains("/files/c "));
+    }
+
+    @Test
+    void testFailedCallOfCoalescedBatchFailsItsCallerOnly() throws Exception {
+        final GoogleDriveHelper helper = newHelper(Duration.ofSeconds(1));
+        m_transport.respond(204, "text/plain", "");
+        m_transport.respondWithBatch(NOT_FOUND, NO_CONTENT);
+        m_transport.holdFirstResponse();
+
+        final List<Throwable> failures = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final Future<?> a = executor.submit(() -> deleteFile(helper, "a"));
+            m_transport.awaitFirstRequest();
+            final List<Future<?>> coalesced = List.of(executor.submit(() -> deleteFile(helper, "b")),
+                executor.submit(() -> deleteFile(helper, "c")));
+            for (Future<?> call : coalesced) {
+                try {
+                    call.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+
+            m_transport.releaseFirstResponse();
+            a.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+            helper.close();
+        }
+
+        // the call failed like a single request, so that it is handled the same way
+        Assertions.assertEquals(1, failures.size());
+        Assertions.assertTrue(failures.get(0) instanceof GoogleJsonResponseException);
+        Assertions.assertEquals(404, ((GoogleJsonResponseException) failures.get(0)).getStatusCode());
+        Assertions.assertEquals(2, m_transport.m_requests.size());
+    }
+
+    private GoogleDriveHelper newHelper(final Duration batchWindow) {
+        final GoogleDriveFSConnectionConfig config = new GoogleDriveFSConnectionConfig("/", null);
+        config.setBatchWindow(batchWindow);
+        return new GoogleDriveHelper(config, m_transport, null);
+    }
+
+    private static Void deleteFile(final GoogleDriveHelper helper, final String id) throws IOException {
+        helper.deleteFile(id);
+        return null;
+    }
+
+    /**
+     * HTTP transport which records the bodies of the requests and answers them
+     * with the scripted responses in order.
+     */
+    private static final class ScriptedTransport extends HttpTransport {
+
+        private final Deque<ScriptedResponse> m_responses = new ArrayDeque<>();
+
+        private final List<String> m_requests = new ArrayList<>();
+
+        private final CountDownLatch m_firstRequest = new CountDownLatch(1);
+
+        /**
+         * Holds back the response to the first request while set.
+         */
+        private volatile CountDownLatch m_firstResponse;
+
+        synchronized void respond(final int status, final String contentType, final String body) {
+            m_responses.add(new ScriptedResponse(status, contentType, body));
+        }
+
+        void holdFirstResponse() {
+            m_firstResponse = new CountDownLatch(1);
+        }
+
+        void releaseFirstResponse() {
+            m_firstResponse.countDown();
+        }
+
+        void awaitFirstRequest() throws InterruptedException {
+            Assertions.assertTrue(m_firstRequest.await(10, TimeUnit.SECONDS));
+        }
+
+        private void awaitFirstResponse() throws InterruptedIOException {
+            final CountDownLatch firstResponse = m_firstResponse;
+            if (firstResponse != null) {
+                try {
+                    firstResponse.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+
+        /**
+         * Scripts the response of a batch request, which consists of the given
+         * responses of its calls.
+         */
+        void respondWithBatch(final String... parts) {
+            final StringBuilder body = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                body.append("--").append(BOUNDARY).append("\r\n") //
+                    .append("Content-Type: application/http\r\n") //
+                    .append("Content-ID: <response-").append(i + 1).append(">\r\n\r\n") //
+                    .append(parts[i]).append("\r\n");
+            }
+            body.append("--").append(BOUNDARY).append("--\r\n");
+            respond(200, "multipart/mixed; boundary=" + BOUNDARY, body.toString());
+        }
+
+        @Override
+        protected LowLevelHttpRequest buildRequest(final String method, final String url) {
+            return new LowLevelHttpRequest() {
+                @Override
+                public void addHeader(final String name, final String value) {
+                    // headers are not checked
+                }
+
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    if (getStreamingContent() != null) {
+                        getStreamingContent().writeTo(content);
+                    }
+                    final ScriptedResponse response;
+                    final boolean first;
+                    synchronized (ScriptedTransport.this) {
+                        m_requests.add(content.toString(StandardCharsets.UTF_8));
+                        Assertions.assertFalse(m_responses.isEmpty(), "Unexpected request " + method + " " + url);
+                        response = m_responses.poll();
+                        first = m_requests.size() == 1;
+                    }
+                    if (first) {
+                        m_firstRequest.countDown();
+                        awaitFirstResponse();
+                    }
+                    return response;
+                }
+            };
+        }
+    }
+
+    private static final class ScriptedResponse extends LowLevelHttpResponse {
+
+        private final int m_status;
+
+        private final String m_contentType;
+
+        private final byte[] m_body;
+
+        ScriptedResponse(final int status, final String contentType, final String body) {
+            m_status = status;
+            m_contentType = contentType;
+            m_body = body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream(m_body);
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return m_body.length;
+        }
+
+        @Override
+        public String getContentType() {
+            return m_contentType;
+        }
+
+        @Override
+        public String getStatusLine() {
+            return "HTTP/1.1 " + m_status;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return m_status;
+        }
+
+        @Override
+        public String getReasonPhrase() {
+            return null;
+        }
+
+        @Override
+        public int getHeaderCount() {
+            return 1;
+        }
+
+        @Override
+        public String getHeaderName(final int index) {
+            return "Content-Type";
+        }
+
+        @Override
+        public String getHeaderValue(final int index) {
+            return m_contentType;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the expiry, capacity and invalidation of {@link GoogleDriveIdIndex}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveIdIndexTest {
+
+    private GoogleDriveFileSystem m_fileSystem;
+
+    @BeforeEach
+    void setUp() {
+        m_fileSystem = new GoogleDriveFileSystem(new GoogleDriveFSConnectionConfig("/", null));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        m_fileSystem.close();
+    }
+
+    @Test
+    void testEntriesExpire() throws InterruptedException {
+        final GoogleDriveIdIndex index = new GoogleDriveIdIndex(Duration.ofMillis(1), 10);
+        index.put(path("/My Drive/a"), folder("1"), null);
+        Thread.sleep(20);
+        Assertions.assertNull(index.get(path("/My Drive/a")));
+    }
+
+    @Test
+    void testZeroTimeToLiveDisablesIndex() {
+        final GoogleDriveIdIndex index = new GoogleDriveIdIndex(Duration.ZERO, 10);
+        index.put(path("/My Drive/a"), folder("1"), null);
+        Assertions.assertNull(index.get(path("/My Drive/a")));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsDropped() {
+        final GoogleDriveIdIndex index = new GoogleDriveIdIndex(Duration.ofHours(1), 2);
+        index.put(path("/My Drive/a"), folder("1"), null);
+        index.put(path("/My Drive/b"), folder("2"), null);
+        Assertions.assertNotNull(index.get(path("/My Drive/a")));
+        index.put(path("/My Drive/c"), folder("3"), null);
+
+        Assertions.assertNotNull(index.get(path("/My Drive/a")));
+        Assertions.assertNull(index.get(path("/My Drive/b")));
+        Assertions.assertEquals("3", index.get(path("/My Drive/c")).getMetadata().getId());
+    }
+
+    @Test
+    void testDescendantsAreRemoved() {
+        final GoogleDriveIdIndex index = new GoogleDriveIdIndex(Duration.ofHours(1), 10);
+        index.put(path("/My Drive/a"), folder("1"), null);
+        index.put(path("/My Drive/a/b"), folder("2"), "1");
+        index.put(path("/My Drive/ab"), folder("3"), null);
+        index.removeDeep(path("/My Drive/a"));
+
+        Assertions.assertNull(index.get(path("/My Drive/a")));
+        Assertions.assertNull(index.get(path("/My Drive/a/b")));
+        Assertions.assertNotNull(index.get(path("/My Drive/ab")));
+    }
+
+    private GoogleDrivePath path(final String path) {
+        return m_fileSystem.getPath(path);
+    }
+
+    private static FileMetadata folder(final String id) {
+        return new FileMetadata(id, FileMetadata.FileType.FOLDER);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-17 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.services.drive.model.File;
+
+/**
+ * Tests that {@link GoogleDriveOutputStream} hands the written bytes over to
+ * the upload and reports its failures.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveOutputStreamTest {
+
+    private ExecutorService m_executor;
+
+    private final AtomicReference<File> m_uploaded = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        m_executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m_executor.shutdownNow();
+    }
+
+    @Test
+    void testWrittenBytesAreUploaded() throws IOException {
+        final byte[] content = content(2 * GoogleDriveOutputStream.PIPE_SIZE + 17);
+        final var received = new ByteArrayOutputStream();
+
+        try (OutputStream out = newStream(in -> {
+            in.transferTo(received);
+            return new File().setId("uploaded");
+        })) {
+            out.write(content[0]);
+            for (int off = 1; off < content.length; off += 4096) {
+                out.write(content, off, Math.min(4096, content.length - off));
+            }
+        }
+
+        Assertions.assertArrayEquals(content, received.toByteArray());
+        Assertions.assertEquals("uploaded", m_uploaded.get().getId());
+    }
+
+    @Test
+    void testCloseWithoutWriteUploadsEmptyFile() throws IOException {
+        final var received = new ByteArrayOutputStream();
+
+        newStream(in -> {
+            in.transferTo(received);
+            return new File().setId("empty");
+        }).close();
+
+        Assertions.assertEquals(0, received.size());
+        Assertions.assertEquals("empty", m_uploaded.get().getId());
+    }
+
+    @Test
+    void testWritesOfTerminatedThreadAreUploaded() throws Exception {
+        final byte[] content = content(10);
+        final var received = new ByteArrayOutputStream();
+
+        final OutputStream out = newStream(in -> {
+            in.transferTo(received);
+            return new File();
+        });
+        final var writer = new Thread(() -> {
+            try {
+                out.write(content);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.start();
+        writer.join();
+        // longer than java.io.PipedInputStream tolerates a terminated writer
+        Thread.sleep(2500);
+        out.close();
+
+        Assertions.assertArrayEquals(content, received.toByteArray());
+    }
+
+    @Test
+    void testWriteWakesUpWaitingUpload() throws Exception {
+        final var firstByte = new CountDownLatch(1);
+
+        try (OutputStream out = newStream(in -> {
+            in.read();
+            firstByte.countDown();
+            in.readAllBytes();
+            return new File();
+        })) {
+            // lets the upload wait for the first byte
+            Thread.sleep(100);
+            out.write(42);
+            Assertions.assertTrue(firstByte.await(500, TimeUnit.MILLISECONDS),
+                    "The upload receives the byte without polling");
+        }
+    }
+
+    @Test
+    void testUploadFailureIsReportedByWrite() throws IOException {
+        final OutputStream out = newStream(in -> {
+            in.readNBytes(10);
+            throw new IOException("Upload failed");
+        });
+
+        final byte[] chunk = new byte[GoogleDriveOutputStream.PIPE_SIZE];
+        final IOException e = Assertions.assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 4; i++) {
+                out.write(chunk);
+            }
+        });
+        Assertions.assertEquals("Upload failed", e.getMessage());
+
+        out.close();
+        Assertions.assertNull(m_uploaded.get(), "A failed upload is not cached");
+        Assertions.assertThrows(IOException.class, () -> out.write(1));
+    }
+
+    @Test
+    void testUploadFailureIsReportedByClose() throws IOException {
+        final OutputStream out = newStream(in -> {
+            in.readAllBytes();
+            throw new IOException("Upload failed");
+        });
+        out.write(content(10));
+
+        final IOException e = Assertions.assertThrows(IOException.class, out::close);
+        Assertions.assertEquals("Upload failed", e.getMessage());
+        Assertions.assertNull(m_uploaded.get(), "A failed upload is not cached");
+    }
+
+    private OutputStream newStream(final GoogleDriveOutputStream.Upload upload) {
+        return new GoogleDriveOutputStream(upload, m_executor, m_uploaded::set);
+    }
+
+    private static byte[] content(final int length) {
+        final byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.services.drive.model.File;
+
+/**
+ * Tests the naming of files across the pages of a folder listing in
+ * {@link GoogleDrivePathIterator}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDrivePathIteratorTest {
+
+    @Test
+    void testFilesWithLastNameAreHeldBack() {
+        final List<File> files =
+            new ArrayList<>(List.of(file("a", "1"), file("b", "2"), file("c", "3"), file("C", "4")));
+        final List<File> heldBack = GoogleDrivePathIterator.holdBackLastName(files);
+
+        Assertions.assertEquals(List.of("a", "b"), names(files));
+        Assertions.assertEquals(List.of("c", "C"), names(heldBack));
+    }
+
+    @Test
+    void testAllFilesAreHeldBackIfTheyShareOneName() {
+        final List<File> files = new ArrayList<>(List.of(file("a", "1"), file("a", "2")));
+        final List<File> heldBack = GoogleDrivePathIterator.holdBackLastName(files);
+
+        Assertions.assertTrue(files.isEmpty());
+        Assertions.assertEquals(List.of("a", "a"), names(heldBack));
+    }
+
+    @Test
+    void testEmptyPageHoldsNothingBack() {
+        Assertions.assertTrue(GoogleDrivePathIterator.holdBackLastName(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    void testDuplicatesAcrossPagesAreBothCorrected() {
+        // the first page ends with one of two equally named files
+        final List<File> first = new ArrayList<>(List.of(file("a", "1"), file("b", "2")));
+        final List<File> heldBack = GoogleDrivePathIterator.holdBackLastName(first);
+        GoogleDrivePathIterator.correctFileNames(first);
+        Assertions.assertEquals(List.of("a"), names(first));
+
+        final List<File> second = new ArrayList<>(heldBack);
+        second.addAll(List.of(file("b", "3"), file("c", "4")));
+        GoogleDrivePathIterator.correctFileNames(second);
+        Assertions.assertEquals(List.of("b (2)", "b (3)", "c"), names(second));
+    }
+
+    @Test
+    void testDuplicateNames() {
+        final List<File> files = List.of(file("a", "1"), file("b", "2"), file("a", "3"), file("A", "4"));
+        Assertions.assertEquals(Set.of("a"), GoogleDrivePathIterator.duplicateNames(files));
+        Assertions.assertTrue(GoogleDrivePathIterator.duplicateNames(List.of(file("a", "1"))).isEmpty());
+    }
+
+    private static File file(final String name, final String id) {
+        return new File().setName(name).setId(id);
+    }
+
+    private static List<String> names(final List<File> files) {
+        return files.stream().map(File::getName).collect(Collectors.toList());
+    }
+}
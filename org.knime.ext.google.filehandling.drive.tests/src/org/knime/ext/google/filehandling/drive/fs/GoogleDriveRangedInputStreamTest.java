@@ -0,0 +1,144 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link GoogleDriveRangedInputStream} hands out concurrently
+ * downloaded ranges in order.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveRangedInputStreamTest {
+
+    private static final int SIZE = 3 * GoogleDriveRangedInputStream.RANGE_SIZE + 1000;
+
+    private ExecutorService m_executor;
+
+    @BeforeEach
+    void setUp() {
+        m_executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        m_executor.shutdownNow();
+    }
+
+    @Test
+    void testRangesAreReadInOrder() throws IOException {
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        final GoogleDriveRangedInputStream.RangeReader reader = (offset, length) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // later ranges complete first
+                Thread.sleep((SIZE - offset) / GoogleDriveRangedInputStream.RANGE_SIZE * 50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return content(offset, length);
+        };
+
+        try (InputStream in = new GoogleDriveRangedInputStream(reader, m_executor, SIZE, 3)) {
+            Assertions.assertEquals(Byte.toUnsignedInt(content(0, 1)[0]), in.read());
+            final byte[] rest = in.readAllBytes();
+            Assertions.assertArrayEquals(content(1, SIZE - 1), rest);
+            Assertions.assertEquals(-1, in.read());
+        }
+        Assertions.assertTrue(maxInFlight.get() <= 3, "At most 3 ranges are downloaded ahead");
+    }
+
+    @Test
+    void testFailedRangeIsReported() throws IOException {
+        final GoogleDriveRangedInputStream.RangeReader reader = (offset, length) -> {
+            if (offset > 0) {
+                throw new IOException("range at " + offset);
+            }
+            return content(offset, length);
+        };
+
+        try (InputStream in = new GoogleDriveRangedInputStream(reader, m_executor, SIZE, 2)) {
+            final var e = Assertions.assertThrows(IOException.class, in::readAllBytes);
+            Assertions.assertEquals("range at " + GoogleDriveRangedInputStream.RANGE_SIZE, e.getMessage());
+        }
+    }
+
+    @Test
+    void testReadAfterCloseFails() throws IOException {
+        final InputStream in =
+            new GoogleDriveRangedInputStream((offset, length) -> content(offset, length), m_executor, SIZE, 2);
+        in.close();
+        Assertions.assertThrows(IOException.class, in::read);
+    }
+
+    /**
+     * @return bytes which depend on their position in the file.
+     */
+    private static byte[] content(final long offset, final int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final long pos = offset + i;
+            bytes[i] = (byte)(pos ^ (pos >>> 8) ^ (pos >>> 16));
+        }
+        return bytes;
+    }
+}
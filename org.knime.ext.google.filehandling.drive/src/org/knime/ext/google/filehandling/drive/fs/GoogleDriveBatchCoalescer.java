@@ -0,0 +1,288 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-17 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveRequest;
+
+/**
+ * Combines the calls which several threads issue at about the same time into
+ * batch requests. A call issued while no other call is in flight is sent on
+ * its own right away, so that a thread issuing one call after the other is
+ * never delayed. Otherwise the call is queued, and the first queued call waits
+ * for the configured window, or until a batch request is full, before it
+ * sends all queued calls with one batch request on behalf of their threads.
+ *
+ * <p>
+ * The callers see the same results and exceptions as if they had executed
+ * their calls themselves: a call failing within the batch request fails with a
+ * {@link GoogleJsonResponseException}, so that it is retried like a single
+ * request. If the batch request fails as a whole, all its calls fail with its
+ * exception.
+ * </p>
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveBatchCoalescer {
+
+    private final Drive m_driveService;
+
+    private final HttpRequestInitializer m_requestInitializer;
+
+    private final long m_windowNanos;
+
+    private final int m_maxBatchSize;
+
+    private final Object m_lock = new Object();
+
+    /**
+     * Number of calls which have been issued and not answered yet.
+     */
+    private int m_inFlight;
+
+    /**
+     * The calls waiting for the next batch request, the first one sends it.
+     */
+    private List<QueuedCall<?>> m_queue = new ArrayList<>();
+
+    /**
+     * @param driveService
+     *            the service the calls belong to.
+     * @param requestInitializer
+     *            initializes the batch requests, e.g. with the credentials.
+     * @param window
+     *            how long the first queued call waits for further calls, zero
+     *            to send every call on its own.
+     * @param maxBatchSize
+     *            maximum number of calls per batch request.
+     */
+    GoogleDriveBatchCoalescer(final Drive driveService, final HttpRequestInitializer requestInitializer,
+            final Duration window, final int maxBatchSize) {
+        m_driveService = driveService;
+        m_requestInitializer = requestInitializer;
+        m_windowNanos = window.toNanos();
+        m_maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Executes the given call, possibly together with the calls of other
+     * threads.
+     *
+     * @param request
+     *            the call to execute, must not upload or download content.
+     * @return the result of the call.
+     * @throws IOException
+     *             if the call or its batch request failed, or if the current
+     *             thread has been interrupted while waiting for the answer.
+     */
+    <T> T execute(final DriveRequest<T> request) throws IOException {
+        final QueuedCall<T> call;
+        final List<QueuedCall<?>> queue;
+        final boolean sender;
+        synchronized (m_lock) {
+            m_inFlight++;
+            if (m_windowNanos <= 0 || m_inFlight == 1) {
+                call = null;
+                queue = null;
+                sender = false;
+            } else {
+                if (m_queue.size() >= m_maxBatchSize) {
+                    m_queue = new ArrayList<>();
+                }
+                call = new QueuedCall<>(request);
+                queue = m_queue;
+                queue.add(call);
+                sender = queue.size() == 1;
+                if (queue.size() >= m_maxBatchSize) {
+                    // wakes the sender of the full batch request
+                    m_lock.notifyAll();
+                }
+            }
+        }
+
+        try {
+            if (call == null) {
+                return request.execute();
+            }
+            if (sender) {
+                send(awaitWindow(queue));
+            }
+            return GoogleDriveHelper.await(call.m_result);
+        } finally {
+            synchronized (m_lock) {
+                m_inFlight--;
+            }
+        }
+    }
+
+    /**
+     * Waits until the window has passed or the given queue is full, and closes
+     * the queue for further calls. Interrupts end the wait early, because the
+     * calls of the other threads must be sent in any case.
+     *
+     * @param queue
+     *            the queue whose first call has been issued by the current
+     *            thread.
+     * @return the calls to send.
+     */
+    private List<QueuedCall<?>> awaitWindow(final List<QueuedCall<?>> queue) {
+        boolean interrupted = false;
+        final List<QueuedCall<?>> calls;
+        synchronized (m_lock) {
+            final long deadline = System.nanoTime() + m_windowNanos;
+            long remaining = m_windowNanos;
+            while (!interrupted && queue.size() < m_maxBatchSize && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(m_lock, remaining);
+                } catch (InterruptedException e) { // NOSONAR the interrupt is restored below
+                    interrupted = true;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (m_queue == queue) {
+                m_queue = new ArrayList<>();
+            }
+            calls = List.copyOf(queue);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return calls;
+    }
+
+    /**
+     * Sends the given calls, with a batch request if there are several ones.
+     * Every call is answered afterwards.
+     */
+    private void send(final List<QueuedCall<?>> calls) {
+        if (calls.size() == 1) {
+            calls.get(0).executeAlone();
+            return;
+        }
+
+        try {
+            final BatchRequest batch = m_driveService.batch(m_requestInitializer);
+            for (QueuedCall<?> call : calls) {
+                call.queue(batch);
+            }
+            batch.execute();
+        } catch (IOException | RuntimeException e) {
+            calls.forEach(call -> call.m_result.completeExceptionally(e));
+        } finally {
+            // calls without a response in the batch response, has no effect on answered calls
+            final IOException unanswered = new IOException("Google Drive did not answer the call");
+            calls.forEach(call -> call.m_result.completeExceptionally(unanswered));
+        }
+    }
+
+    /**
+     * @param error
+     *            the error a call of a batch request failed with.
+     * @param headers
+     *            the headers of the response to the call.
+     * @return the exception the call would have failed with if it had been
+     *         sent on its own.
+     */
+    static GoogleJsonResponseException toException(final GoogleJsonError error, final HttpHeaders headers) {
+        final HttpResponseException.Builder builder =
+                new HttpResponseException.Builder(error.getCode(), null, headers != null ? headers : new HttpHeaders());
+        builder.setMessage(error.getCode() + " " + error.getMessage());
+        return new GoogleJsonResponseException(builder, error);
+    }
+
+    /**
+     * A call waiting for its batch request, with the future of its result.
+     */
+    private static final class QueuedCall<T> {
+
+        private final DriveRequest<T> m_request;
+
+        private final CompletableFuture<T> m_result = new CompletableFuture<>();
+
+        private QueuedCall(final DriveRequest<T> request) {
+            m_request = request;
+        }
+
+        private void executeAlone() {
+            try {
+                m_result.complete(m_request.execute());
+            } catch (IOException | RuntimeException e) {
+                m_result.completeExceptionally(e);
+            }
+        }
+
+        private void queue(final BatchRequest batch) throws IOException {
+            m_request.queue(batch, new JsonBatchCallback<T>() {
+                @Override
+                public void onSuccess(final T result, final HttpHeaders responseHeaders) {
+                    m_result.complete(result);
+                }
+
+                @Override
+                public void onFailure(final GoogleJsonError e, final HttpHeaders responseHeaders) {
+                    m_result.completeExceptionally(toException(e, responseHeaders));
+                }
+            });
+        }
+    }
+}
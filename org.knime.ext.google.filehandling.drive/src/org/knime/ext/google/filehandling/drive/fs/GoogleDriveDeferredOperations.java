@@ -0,0 +1,278 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-17 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.api.services.drive.model.File;
+
+/**
+ * Deletes and moves of the files of a listed folder whose execution is
+ * deferred, so that they are sent with batch requests of up to
+ * {@value GoogleDriveHelper#MAX_BATCH_SIZE} calls instead of one request per
+ * file. The operations are sent once a batch request is full, when the
+ * listing is closed, or before the thread listing the folder accesses an
+ * affected path. Other threads may see the previous state until then.
+ *
+ * <p>
+ * The operations are owned by the thread listing the folder. The failed
+ * operations are reported by {@link #flush()}.
+ * </p>
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveDeferredOperations {
+
+    private final GoogleDriveHelper m_helper;
+
+    private final GoogleDrivePath m_dir;
+
+    /**
+     * IDs of the files to delete, mapped to their paths.
+     */
+    private final Map<String, GoogleDrivePath> m_deletes = new LinkedHashMap<>();
+
+    /**
+     * IDs of the files to move, mapped to their moves.
+     */
+    private final Map<String, Move> m_moves = new LinkedHashMap<>();
+
+    /**
+     * Paths of the deleted files as well as of the sources and targets of the
+     * moves whose failures have not been reported yet.
+     */
+    private final NavigableSet<String> m_pending = new TreeSet<>();
+
+    private final Map<String, FileSystemException> m_failures = new TreeMap<>();
+
+    /**
+     * @param helper
+     *            the helper to send the operations with.
+     * @param dir
+     *            the listed folder, absolute and normalized.
+     */
+    GoogleDriveDeferredOperations(final GoogleDriveHelper helper, final GoogleDrivePath dir) {
+        m_helper = helper;
+        m_dir = dir;
+    }
+
+    /**
+     * @return the listed folder.
+     */
+    GoogleDrivePath getDir() {
+        return m_dir;
+    }
+
+    /**
+     * Deletes the given file of the listed folder. The delete is sent once
+     * enough operations have been collected for a batch request, or when
+     * flushing.
+     *
+     * @param file
+     *            the file to delete, absolute and normalized.
+     * @param fileId
+     *            the ID of the file.
+     * @throws IOException
+     *             if the file is affected by a previous operation, which failed.
+     */
+    void delete(final GoogleDrivePath file, final String fileId) throws IOException {
+        if (m_pending.contains(file.toString())) {
+            // e.g. the target of a move
+            flush();
+        }
+        m_pending.add(file.toString());
+        m_deletes.put(fileId, file);
+        sendIfFull();
+    }
+
+    /**
+     * Moves the given file of the listed folder to a target which does not
+     * exist yet. The move is sent like a delete, the attributes of the target
+     * are cached once it has been moved.
+     *
+     * @param source
+     *            the file to move, absolute and normalized.
+     * @param sourceId
+     *            the ID of the file.
+     * @param target
+     *            the target, absolute and normalized.
+     * @param targetParentId
+     *            ID of the folder or shared drive of the target, null for 'My
+     *            Drive'.
+     * @throws IOException
+     *             if the source or target is affected by a previous operation,
+     *             which failed.
+     */
+    void move(final GoogleDrivePath source, final String sourceId, final GoogleDrivePath target,
+            final String targetParentId) throws IOException {
+        if (m_pending.contains(source.toString()) || m_pending.contains(target.toString())) {
+            flush();
+        }
+        m_pending.add(source.toString());
+        m_pending.add(target.toString());
+        m_moves.put(sourceId, new Move(source, target, targetParentId));
+        sendIfFull();
+    }
+
+    /**
+     * @param path
+     *            an absolute, normalized path.
+     * @param includeChildren
+     *            whether the paths below the given one are of interest as well.
+     * @return whether an operation on the given path, or below it, has not been
+     *         waited for.
+     */
+    boolean isPending(final GoogleDrivePath path, final boolean includeChildren) {
+        final String key = path.toString();
+        if (m_pending.contains(key)) {
+            return true;
+        }
+        if (!includeChildren) {
+            return false;
+        }
+        final String prefix = key.endsWith(GoogleDriveFileSystem.PATH_SEPARATOR) ? key
+                : (key + GoogleDriveFileSystem.PATH_SEPARATOR);
+        final String next = m_pending.ceiling(prefix);
+        return next != null && next.startsWith(prefix);
+    }
+
+    /**
+     * Sends the collected operations.
+     *
+     * @throws IOException
+     *             if some of the operations failed. The failed files are
+     *             attached as suppressed exceptions.
+     */
+    void flush() throws IOException {
+        if (m_pending.isEmpty()) {
+            return;
+        }
+        try {
+            send();
+        } finally {
+            m_pending.clear();
+        }
+
+        if (!m_failures.isEmpty()) {
+            final IOException ioe = new IOException(
+                    String.format("Failed to delete or move %d file(s) in %s", m_failures.size(), m_dir));
+            m_failures.values().forEach(ioe::addSuppressed);
+            m_failures.clear();
+            throw ioe;
+        }
+    }
+
+    private void sendIfFull() {
+        if (m_deletes.size() + m_moves.size() >= GoogleDriveHelper.MAX_BATCH_SIZE) {
+            send();
+        }
+    }
+
+    private void send() {
+        if (!m_deletes.isEmpty()) {
+            final Map<String, GoogleDrivePath> deletes = new HashMap<>(m_deletes);
+            m_deletes.clear();
+            try {
+                m_helper.deleteFiles(deletes.keySet()).forEach((id, e) -> addFailure(deletes.get(id), null, e));
+            } catch (IOException | RuntimeException e) {
+                // the whole batch request failed
+                deletes.values().forEach(path -> addFailure(path, null, e));
+            }
+        }
+
+        if (!m_moves.isEmpty()) {
+            final Map<String, Move> moves = new HashMap<>(m_moves);
+            m_moves.clear();
+            final Map<String, String> newParentIds = new HashMap<>();
+            final Map<String, String> newNames = new HashMap<>();
+            moves.forEach((id, move) -> {
+                newParentIds.put(id, move.targetParentId());
+                newNames.put(id, move.target().getFileName().toString());
+            });
+            try {
+                final GoogleDriveHelper.BatchResult<File> moved = m_helper.moveFiles(newParentIds, newNames);
+                moves.forEach((id, move) -> {
+                    final File file = moved.getResults().get(id);
+                    if (file != null) {
+                        cacheMoved(move, file);
+                    } else {
+                        addFailure(move.source(), move.target(), moved.getFailures().get(id));
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                // a whole batch request failed
+                moves.values().forEach(move -> addFailure(move.source(), move.target(), e));
+            }
+        }
+    }
+
+    @SuppressWarnings("resource")
+    private static void cacheMoved(final Move move, final File file) {
+        final FileMetadata meta = new FileMetadata(file);
+        final GoogleDriveFileSystem fs = move.target().getFileSystem();
+        fs.addToAttributeCache(move.target(), new GoogleDriveFileAttributes(move.target(), meta));
+        fs.provider().addToIdIndex(move.target(), meta, move.targetParentId());
+    }
+
+    private void addFailure(final GoogleDrivePath file, final GoogleDrivePath other, final Exception e) {
+        final String reason = e != null ? e.getMessage() : null;
+        m_failures.put(file.toString(),
+                new FileSystemException(file.toString(), other != null ? other.toString() : null, reason));
+    }
+
+    private record Move(GoogleDrivePath source, GoogleDrivePath target, String targetParentId) {
+    }
+}
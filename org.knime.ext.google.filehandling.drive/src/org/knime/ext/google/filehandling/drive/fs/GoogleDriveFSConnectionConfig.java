@@ -69,6 +69,32 @@ public class GoogleDriveFSConnectionConfig extends BaseFSConnectionConfig {
      * Default value for connection timeout in seconds.
      */
     public static final int DEFAULT_CONNECTION_TIMEOUT_SECONDS = 30;
+    /**
+     * Default size of the chunks of resumable uploads in bytes.
+     */
+    public static final int DEFAULT_UPLOAD_CHUNK_SIZE = 8 * 1024 * 1024;
+    /**
+     * Default file size in bytes from which files are downloaded with several
+     * concurrent range requests.
+     */
+    public static final long DEFAULT_RANGED_DOWNLOAD_THRESHOLD = 128L * 1024 * 1024;
+    /**
+     * Default number of concurrent range requests per downloaded file.
+     */
+    public static final int DEFAULT_RANGED_DOWNLOAD_CONNECTIONS = 4;
+    /**
+     * Default time to live of the entries of the path to file ID index.
+     */
+    public static final Duration DEFAULT_ID_INDEX_TIME_TO_LIVE = Duration.ofHours(1);
+    /**
+     * Default maximum number of entries of the path to file ID index.
+     */
+    public static final int DEFAULT_ID_INDEX_MAX_ENTRIES = 10000;
+    /**
+     * Default time to wait for further calls before concurrent calls are sent
+     * together with one batch request.
+     */
+    public static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(10);
 
     /**
      * Connection timeout (seconds), default is 30
@@ -81,6 +107,36 @@ public class GoogleDriveFSConnectionConfig extends BaseFSConnectionConfig {
     private Duration m_readTimeOut = Duration
             .ofSeconds(DEFAULT_READ_TIMEOUT_SECONDS);
 
+    /**
+     * Size of the chunks of resumable uploads in bytes.
+     */
+    private int m_uploadChunkSize = DEFAULT_UPLOAD_CHUNK_SIZE;
+
+    /**
+     * File size in bytes from which files are downloaded with range requests.
+     */
+    private long m_rangedDownloadThreshold = DEFAULT_RANGED_DOWNLOAD_THRESHOLD;
+
+    /**
+     * Number of concurrent range requests per downloaded file.
+     */
+    private int m_rangedDownloadConnections = DEFAULT_RANGED_DOWNLOAD_CONNECTIONS;
+
+    /**
+     * Time to live of the entries of the path to file ID index.
+     */
+    private Duration m_idIndexTimeToLive = DEFAULT_ID_INDEX_TIME_TO_LIVE;
+
+    /**
+     * Maximum number of entries of the path to file ID index.
+     */
+    private int m_idIndexMaxEntries = DEFAULT_ID_INDEX_MAX_ENTRIES;
+
+    /**
+     * Time to wait for further calls before concurrent calls are batched.
+     */
+    private Duration m_batchWindow = DEFAULT_BATCH_WINDOW;
+
     private final Credentials m_credentials;
 
 
@@ -124,6 +180,107 @@ public void setReadTimeOut(final Duration readTimeOut) {
         this.m_readTimeOut = readTimeOut;
     }
 
+    /**
+     * @return size of the chunks of resumable uploads in bytes.
+     */
+    public int getUploadChunkSize() {
+        return m_uploadChunkSize;
+    }
+
+    /**
+     * @param uploadChunkSize
+     *            size of the chunks of resumable uploads in bytes, rounded
+     *            down to a multiple of 256 KiB.
+     */
+    public void setUploadChunkSize(final int uploadChunkSize) {
+        this.m_uploadChunkSize = uploadChunkSize;
+    }
+
+    /**
+     * @return file size in bytes from which files are downloaded with several
+     *         concurrent range requests.
+     */
+    public long getRangedDownloadThreshold() {
+        return m_rangedDownloadThreshold;
+    }
+
+    /**
+     * @param rangedDownloadThreshold
+     *            file size in bytes from which files are downloaded with
+     *            several concurrent range requests.
+     */
+    public void setRangedDownloadThreshold(final long rangedDownloadThreshold) {
+        this.m_rangedDownloadThreshold = rangedDownloadThreshold;
+    }
+
+    /**
+     * @return number of concurrent range requests per downloaded file.
+     */
+    public int getRangedDownloadConnections() {
+        return m_rangedDownloadConnections;
+    }
+
+    /**
+     * @param rangedDownloadConnections
+     *            number of concurrent range requests per downloaded file, 1 to
+     *            always download files with a single request.
+     */
+    public void setRangedDownloadConnections(final int rangedDownloadConnections) {
+        this.m_rangedDownloadConnections = rangedDownloadConnections;
+    }
+
+    /**
+     * @return how long the file ID a path was resolved to is remembered.
+     */
+    public Duration getIdIndexTimeToLive() {
+        return m_idIndexTimeToLive;
+    }
+
+    /**
+     * @param idIndexTimeToLive
+     *            how long the file ID a path was resolved to is remembered,
+     *            zero to resolve paths segment by segment whenever their
+     *            attributes are not cached.
+     */
+    public void setIdIndexTimeToLive(final Duration idIndexTimeToLive) {
+        this.m_idIndexTimeToLive = idIndexTimeToLive;
+    }
+
+    /**
+     * @return maximum number of paths whose file IDs are remembered.
+     */
+    public int getIdIndexMaxEntries() {
+        return m_idIndexMaxEntries;
+    }
+
+    /**
+     * @param idIndexMaxEntries
+     *            maximum number of paths whose file IDs are remembered, the
+     *            least recently used ones are forgotten first.
+     */
+    public void setIdIndexMaxEntries(final int idIndexMaxEntries) {
+        this.m_idIndexMaxEntries = idIndexMaxEntries;
+    }
+
+    /**
+     * @return how long a call waits for calls of other threads to be sent
+     *         together with them in one batch request.
+     */
+    public Duration getBatchWindow() {
+        return m_batchWindow;
+    }
+
+    /**
+     * @param batchWindow
+     *            how long a call waits for calls of other threads to be sent
+     *            together with them in one batch request, zero to send every
+     *            call on its own. A call is only delayed while other calls are
+     *            in flight.
+     */
+    public void setBatchWindow(final Duration batchWindow) {
+        this.m_batchWindow = batchWindow;
+    }
+
     /**
      * @return the credentials
      */
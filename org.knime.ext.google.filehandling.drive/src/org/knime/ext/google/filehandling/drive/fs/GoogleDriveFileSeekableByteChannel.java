@@ -61,6 +61,7 @@
 
 import com.google.api.client.http.AbstractInputStreamContent;
 import com.google.api.client.http.FileContent;
+import com.google.api.services.drive.model.File;
 
 /**
  * Google Drive implementation of {@link SeekableByteChannel}
@@ -88,7 +89,7 @@ public void copyFromRemote(final GoogleDrivePath path, final Path tempFile) thro
         final FileMetadata meta = provider.readAttributes(path).getMetadata();
 
         // copy content from Google Drive to tmp file
-        try (InputStream in = provider.getHelper().readFile(meta.getId())) {
+        try (InputStream in = provider.getHelper().readFile(meta.getId(), meta.getSize())) {
             Files.copy(in, tempFile);
         }
     }
@@ -107,8 +108,9 @@ public void copyToRemote(final GoogleDrivePath path, final Path tempFile) throws
             // create new file
             final String name = path.getFileName().toString();
             final FileMetadata parentMeta = provider.readAttributes(path.getParent()).getMetadata();
-            provider.getHelper().createFile(parentMeta.getDriveId(), parentMeta.getId(),
+            final File created = provider.getHelper().createFile(parentMeta.getDriveId(), parentMeta.getId(),
                     GoogleDriveFileSystemProvider.decodeForwardSlashes(name), content);
+            provider.addToIdIndex(path, new FileMetadata(created), parentMeta.getId());
         }
     }
 }
@@ -48,9 +48,12 @@
  */
 package org.knime.ext.google.filehandling.drive.fs;
 
+import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
 
 import org.knime.filehandling.core.connections.base.BaseFileSystem;
 
@@ -80,9 +83,63 @@ public GoogleDriveFileSystemProvider provider() {
         return (GoogleDriveFileSystemProvider) super.provider();
     }
 
+    /**
+     * Reads the attributes of several paths. Paths whose file IDs are already
+     * known are refreshed with batch requests instead of one request per path.
+     * <p>
+     * This is API for programmatic callers only, the file handling nodes
+     * access one path at a time through the
+     * {@link GoogleDriveFileSystemProvider}.
+     *
+     * @param paths
+     *            paths to read the attributes of.
+     * @return the attributes of the existing paths.
+     * @throws IOException
+     */
+    public Map<GoogleDrivePath, GoogleDriveFileAttributes> readAllAttributes(
+            final Collection<GoogleDrivePath> paths) throws IOException {
+        return provider().readAllAttributes(paths);
+    }
+
+    /**
+     * Deletes several files and empty folders with batch requests. This is API
+     * for programmatic callers only, see {@link #readAllAttributes(Collection)}.
+     *
+     * @param paths
+     *            paths to delete.
+     * @return the exceptions of the paths which could not be deleted, empty if
+     *         all paths have been deleted.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public Map<GoogleDrivePath, IOException> deleteAll(final Collection<GoogleDrivePath> paths) throws IOException {
+        return provider().deleteAll(paths);
+    }
+
+    /**
+     * Moves several files and folders into a folder with batch requests. The
+     * moved files keep their names, existing files are not replaced. This is
+     * API for programmatic callers only, see
+     * {@link #readAllAttributes(Collection)}.
+     *
+     * @param paths
+     *            paths to move.
+     * @param targetDir
+     *            the folder to move the paths into.
+     * @return the exceptions of the paths which could not be moved, empty if
+     *         all paths have been moved.
+     * @throws IOException
+     *             if the target folder cannot be read or a batch request could
+     *             not be executed.
+     */
+    public Map<GoogleDrivePath, IOException> moveAll(final Collection<GoogleDrivePath> paths,
+            final GoogleDrivePath targetDir) throws IOException {
+        return provider().moveAll(paths, targetDir);
+    }
+
     @Override
     protected void prepareClose() {
-        // Nothing need
+        provider().getHelper().close();
     }
 
     @Override
@@ -56,15 +56,23 @@
 import java.nio.file.AccessDeniedException;
 import java.nio.file.AccessMode;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.DirectoryStream.Filter;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -74,6 +82,7 @@
 import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.knime.ext.google.filehandling.drive.fs.FileMetadata.FileType;
 import org.knime.filehandling.core.connections.base.BaseFileSystemProvider;
@@ -81,6 +90,7 @@
 
 import com.google.api.services.drive.model.Drive;
 import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
 
 /**
  * File system provider for {@link GoogleDriveFileSystem}.
@@ -105,12 +115,21 @@ public class GoogleDriveFileSystemProvider extends BaseFileSystemProvider<Google
 
     private final Map<Path, GoogleDriveFileAttributes> m_drives = new HashMap<>();
 
+    private final GoogleDriveIdIndex m_idIndex;
+
+    /**
+     * The folders with an open listing, with the deferred operations on their
+     * files.
+     */
+    private final List<OpenListing> m_openListings = new ArrayList<>();
+
     /**
      * @param config
      *            connection configuration.
      */
     public GoogleDriveFileSystemProvider(final GoogleDriveFSConnectionConfig config) {
-        this(new GoogleDriveHelper(config));
+        this(new GoogleDriveHelper(config),
+                new GoogleDriveIdIndex(config.getIdIndexTimeToLive(), config.getIdIndexMaxEntries()));
     }
 
     private synchronized GoogleDriveFileAttributes getDriveAttrs(final GoogleDrivePath drivePath) throws IOException {
@@ -148,12 +167,19 @@ private void fillDriveMap(final GoogleDrivePath drivePath) throws IOException {
      *            Google Drive Helper.
      */
     protected GoogleDriveFileSystemProvider(final GoogleDriveHelper helper) {
+        this(helper, new GoogleDriveIdIndex(GoogleDriveFSConnectionConfig.DEFAULT_ID_INDEX_TIME_TO_LIVE,
+                GoogleDriveFSConnectionConfig.DEFAULT_ID_INDEX_MAX_ENTRIES));
+    }
+
+    private GoogleDriveFileSystemProvider(final GoogleDriveHelper helper, final GoogleDriveIdIndex idIndex) {
         m_helper = helper;
+        m_idIndex = idIndex;
     }
 
     @Override
     protected SeekableByteChannel newByteChannelInternal(final GoogleDrivePath path,
             final Set<? extends OpenOption> options, final FileAttribute<?>... attrs) throws IOException {
+        awaitDeferred(path, false);
         checkMimeType(path);
         return new GoogleDriveFileSeekableByteChannel(path, options);
     }
@@ -172,12 +198,27 @@ protected void moveInternal(final GoogleDrivePath source, final GoogleDrivePath
             throw new AccessDeniedException(source.toString());
         }
 
-        final GoogleDriveFileAttributes sourceAttrs = readAttributes(source);
-        final GoogleDriveFileAttributes targetParentAttrs = readAttributes(target.getParent());
-        GoogleDriveFileAttributes targetAttrs = null;
-        try {
-            targetAttrs = readAttributes(target);
-        } catch (NoSuchFileException e) { // NOSONAR ignore, just needed for later
+        awaitDeferred(source, true);
+        awaitDeferred(target, true);
+
+        // looked up together
+        final GoogleDrivePath targetParent = target.getParent();
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> attributes = readAllAttributes(
+                List.of(source, targetParent, target));
+        final GoogleDriveFileAttributes sourceAttrs = getExisting(attributes, source);
+        final GoogleDriveFileAttributes targetParentAttrs = getExisting(attributes, targetParent);
+        final GoogleDriveFileAttributes targetAttrs = attributes.get(target);
+
+        if (targetAttrs == null && !target.isDrive() && !sourceAttrs.isDirectory()) {
+            final GoogleDriveDeferredOperations deferred = findParentListing(source);
+            if (deferred != null) {
+                // moved in a batch together with the other files of the listed folder
+                deferred.move(toAbsoluteNormalized(source), sourceAttrs.getMetadata().getId(),
+                        toAbsoluteNormalized(target), targetParentAttrs.getMetadata().getId());
+                m_idIndex.removeDeep(source);
+                getFileSystemInternal().removeFromAttributeCacheDeep(source);
+                return;
+            }
         }
 
         File movedFile = null;
@@ -192,8 +233,12 @@ protected void moveInternal(final GoogleDrivePath source, final GoogleDrivePath
             throw new IOException(String.format("Cannot replace %s with a file", target.toString()));
         }
 
+        m_idIndex.removeDeep(source);
+        m_idIndex.removeDeep(target);
         if (movedFile != null) {
-            cacheAttributes(target, new GoogleDriveFileAttributes(target, new FileMetadata(movedFile)));
+            final FileMetadata movedMeta = new FileMetadata(movedFile);
+            cacheAttributes(target, new GoogleDriveFileAttributes(target, movedMeta));
+            m_idIndex.put(target, movedMeta, targetParentAttrs.getMetadata().getId());
         }
 
         getFileSystemInternal().removeFromAttributeCacheDeep(source);
@@ -246,16 +291,18 @@ protected void copyInternal(final GoogleDrivePath source, final GoogleDrivePath
             throw new AccessDeniedException(target.toString());
         }
 
-        GoogleDriveFileAttributes targetAttrs = null;
-        try {
-            targetAttrs = readAttributes(target);
-        } catch (NoSuchFileException e) { // NOSONAR ignore, just needed for later
-        }
+        awaitDeferred(source, true);
+        awaitDeferred(target, true);
 
-        // copy
-        GoogleDriveFileAttributes sourceAttrs = readAttributes(source);
-        GoogleDriveFileAttributes targetParentAttrs = readAttributes(target.getParent());
+        // looked up together
+        final GoogleDrivePath targetParent = target.getParent();
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> attributes = readAllAttributes(
+                List.of(source, targetParent, target));
+        final GoogleDriveFileAttributes sourceAttrs = getExisting(attributes, source);
+        final GoogleDriveFileAttributes targetParentAttrs = getExisting(attributes, targetParent);
+        final GoogleDriveFileAttributes targetAttrs = attributes.get(target);
 
+        // copy
         if (!sourceAttrs.isDirectory()) {
             // Google drive allows multiple files with same name be the child of same
             // parent. Therefore copy of file not conflicts with already existing target
@@ -270,15 +317,17 @@ protected void copyInternal(final GoogleDrivePath source, final GoogleDrivePath
         if (targetAttrs != null && !target.isDrive()) {
             m_helper.deleteFile(targetAttrs.getMetadata().getId());
         }
+        m_idIndex.removeDeep(target);
         getFileSystemInternal().removeFromAttributeCacheDeep(target);
     }
 
     @Override
     protected InputStream newInputStreamInternal(final GoogleDrivePath path, final OpenOption... options)
             throws IOException {
+        awaitDeferred(path, false);
         checkMimeType(path);
         final GoogleDriveFileAttributes attrs = readAttributes(path);
-        return getHelper().readFile(attrs.getMetadata().getId());
+        return getHelper().readFile(attrs.getMetadata().getId(), attrs.getMetadata().getSize());
     }
 
     @SuppressWarnings("resource")
@@ -286,13 +335,55 @@ protected InputStream newInputStreamInternal(final GoogleDrivePath path, final O
     protected OutputStream newOutputStreamInternal(final GoogleDrivePath path, final OpenOption... options)
             throws IOException {
         final Set<OpenOption> opts = new HashSet<>(Arrays.asList(options));
-        return Channels.newOutputStream(newByteChannel(path, opts));
+        if (opts.contains(StandardOpenOption.APPEND)) {
+            // appending needs the existing content, which requires the temp file
+            return Channels.newOutputStream(newByteChannel(path, opts));
+        }
+
+        if (opts.isEmpty()) {
+            opts.addAll(Arrays.asList(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE));
+        }
+
+        if (path.isRoot() || path.isDrive()) {
+            throw new AccessDeniedException(path.toString());
+        }
+        awaitDeferred(path, false);
+
+        final GoogleDriveFileAttributes parentAttrs = readAttributes(path.getParent());
+        if (!parentAttrs.isDirectory()) {
+            throw new NoSuchFileException(path.getParent().toString());
+        }
+
+        GoogleDriveFileAttributes attrs = null;
+        try {
+            attrs = readAttributes(path);
+        } catch (NoSuchFileException e) { // NOSONAR file is created
+        }
+
+        if (attrs != null && opts.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+        if (attrs == null && !opts.contains(StandardOpenOption.CREATE)
+                && !opts.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (attrs != null && attrs.isDirectory()) {
+            throw new FileSystemException(path.toString(), null, "Cannot write to a directory");
+        }
+        if (attrs != null) {
+            checkMimeType(attrs.getMetadata());
+        }
+
+        return new GoogleDriveOutputStream(path, parentAttrs.getMetadata(),
+                attrs == null ? null : attrs.getMetadata().getId());
     }
 
     @Override
     protected Iterator<GoogleDrivePath> createPathIterator(final GoogleDrivePath dir, final Filter<? super Path> filter)
             throws IOException {
-
+        // the listing must not show files whose delete or move is pending
+        awaitDeferred(dir, true);
         return new GoogleDrivePathIterator(dir, filter);
     }
 
@@ -303,30 +394,32 @@ protected void createDirectoryInternal(final GoogleDrivePath dir, final FileAttr
         if (dir.isRoot() || dir.isDrive()) {
             throw new AccessDeniedException(dir.toString());
         }
+        awaitDeferred(dir, false);
 
         final FileMetadata parentMeta = readAttributes(dir.getParent()).getMetadata();
         final File folder = m_helper.createFolder(parentMeta.getDriveId(), parentMeta.getId(),
                 dir.getFileName().toString());
-        cacheAttributes(dir, new GoogleDriveFileAttributes(dir, new FileMetadata(folder)));
+        final FileMetadata folderMeta = new FileMetadata(folder);
+        cacheAttributes(dir, new GoogleDriveFileAttributes(dir, folderMeta));
+        m_idIndex.removeDeep(dir);
+        m_idIndex.put(dir, folderMeta, parentMeta.getId());
     }
 
     @Override
     protected GoogleDriveFileAttributes fetchAttributesInternal(final GoogleDrivePath path, final Class<?> type)
             throws IOException {
+        awaitDeferred(path, false);
 
         if (path.isRoot()) {
             return createRootAttributes(path);
         } else if (path.isDrive()) {
             return getDriveAttrs(path);
         } else {
-            // find nearest cached parent attributes.
-            // The path segments without attributes supply into list
-            final GoogleDriveFileAttributes attributes = getNearestAvailableCachedAttributes(path);
-
-            // drill down from parent to child
-            final List<String> pathToExpand = getRemainingPathSegments(attributes.fileKey(), path);
-
-            return getChildAttributesRecursively(attributes, pathToExpand);
+            final GoogleDriveFileAttributes attributes = resolveAll(List.of(path)).get(path);
+            if (attributes == null) {
+                throw new NoSuchFileException(path.toString());
+            }
+            return attributes;
         }
     }
 
@@ -340,34 +433,511 @@ private void cacheAttributes(final GoogleDrivePath path, final GoogleDriveFileAt
         getFileSystemInternal().addToAttributeCache(path, attr);
     }
 
+    /**
+     * Remembers the ID of the file or folder the given path resolves to.
+     *
+     * @param path
+     *            file path below a drive.
+     * @param meta
+     *            file metadata.
+     * @param parentId
+     *            ID of the parent folder or shared drive, null if the parent is
+     *            'My Drive'.
+     */
+    void addToIdIndex(final GoogleDrivePath path, final FileMetadata meta, final String parentId) {
+        m_idIndex.put(path, meta, parentId);
+    }
+
+    /**
+     * Forgets the IDs of the given path and all paths below it.
+     *
+     * @param path
+     *            file path below a drive.
+     */
+    void removeFromIdIndex(final GoogleDrivePath path) {
+        m_idIndex.removeDeep(path);
+    }
+
+    /**
+     * Notes that a listing of the given folder has been opened in the current
+     * thread. Until it is closed, the deletes and moves of its files by the
+     * same thread are deferred and sent with batch requests.
+     *
+     * @param dir
+     *            the listed folder.
+     * @return the handle to pass to {@link #listingClosed(OpenListing)}.
+     */
+    OpenListing listingOpened(final GoogleDrivePath dir) {
+        final OpenListing listing = new OpenListing(Thread.currentThread(),
+                new GoogleDriveDeferredOperations(m_helper, toAbsoluteNormalized(dir)));
+        synchronized (m_openListings) {
+            m_openListings.add(listing);
+        }
+        return listing;
+    }
+
+    /**
+     * Notes that a listing has been closed and sends the deferred operations on
+     * its files.
+     *
+     * @param listing
+     *            the handle returned by {@link #listingOpened(GoogleDrivePath)}.
+     * @throws IOException
+     *             if some of the deferred operations failed.
+     */
+    void listingClosed(final OpenListing listing) throws IOException {
+        synchronized (m_openListings) {
+            m_openListings.remove(listing);
+        }
+        listing.m_deferred.flush();
+    }
+
+    /**
+     * @param file
+     *            a file path below a drive.
+     * @return the deferred operations of the listing of the parent folder by
+     *         the current thread, or null if the current thread does not list
+     *         it.
+     */
+    private GoogleDriveDeferredOperations findParentListing(final GoogleDrivePath file) {
+        final GoogleDrivePath parent = toAbsoluteNormalized(file).getParent();
+        synchronized (m_openListings) {
+            for (OpenListing listing : m_openListings) {
+                if (listing.m_thread == Thread.currentThread() && listing.m_deferred.getDir().equals(parent)) {
+                    return listing.m_deferred;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends the deferred operations of the current thread on the given path,
+     * so that it is accessed in its current state.
+     *
+     * @param path
+     *            the path that is about to be accessed.
+     * @param includeChildren
+     *            whether the operations on the paths below the given one are
+     *            sent as well, e.g. before a folder is listed or deleted.
+     * @throws IOException
+     *             if some of the deferred operations failed.
+     */
+    private void awaitDeferred(final GoogleDrivePath path, final boolean includeChildren) throws IOException {
+        final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+        final List<GoogleDriveDeferredOperations> toFlush = new ArrayList<>();
+        synchronized (m_openListings) {
+            for (OpenListing listing : m_openListings) {
+                if (listing.m_thread == Thread.currentThread()
+                        && listing.m_deferred.isPending(absPath, includeChildren)) {
+                    toFlush.add(listing.m_deferred);
+                }
+            }
+        }
+        for (GoogleDriveDeferredOperations deferred : toFlush) {
+            deferred.flush();
+        }
+    }
+
     @Override
     protected void deleteInternal(final GoogleDrivePath path) throws IOException {
         if (path.isRoot() || path.isDrive()) {
             throw new AccessDeniedException(path.toString());
         }
 
-        final FileMetadata meta = readAttributes(path).getMetadata();
-        m_helper.deleteFile(meta.getId());
+        final GoogleDriveFileAttributes attrs = readAttributes(path);
+        final FileMetadata meta = attrs.getMetadata();
+        final GoogleDriveDeferredOperations deferred = attrs.isDirectory() ? null : findParentListing(path);
+        if (deferred != null) {
+            // deleted in a batch together with the other files of the listed folder
+            deferred.delete(toAbsoluteNormalized(path), meta.getId());
+        } else {
+            // the contents may still be deleted in batches
+            awaitDeferred(path, true);
+            m_helper.deleteFile(meta.getId());
+        }
+        m_idIndex.removeDeep(path);
     }
 
     GoogleDriveFileAttributes readAttributes(final GoogleDrivePath path) throws IOException {
         return (GoogleDriveFileAttributes) readAttributes(path, BasicFileAttributes.class);
     }
 
+    /**
+     * Reads the attributes of several paths. Paths with cached attributes cost
+     * nothing, the paths whose file IDs are indexed are refreshed together with
+     * their indexed ancestors with batch requests and the missing path segments
+     * of the remaining ones are looked up together, see
+     * {@link #resolveAll(Collection)}.
+     *
+     * @param paths
+     *            paths to read the attributes of.
+     * @return the attributes of the existing paths.
+     * @throws IOException
+     */
+    Map<GoogleDrivePath, GoogleDriveFileAttributes> readAllAttributes(final Collection<GoogleDrivePath> paths)
+            throws IOException {
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> attributes = new HashMap<>();
+        final Map<GoogleDrivePath, GoogleDrivePath> indexed = new HashMap<>();
+        final List<GoogleDrivePath> unresolved = new ArrayList<>();
+
+        for (GoogleDrivePath path : paths) {
+            final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+            awaitDeferred(absPath, false);
+            final Optional<BaseFileAttributes> cached = getCachedAttributes(absPath);
+            if (cached.isPresent()) {
+                attributes.put(path, (GoogleDriveFileAttributes) cached.get());
+            } else if (absPath.isRoot() || absPath.isDrive() || m_idIndex.get(absPath) == null
+                    || indexed.putIfAbsent(absPath, path) != null) {
+                unresolved.add(path);
+            }
+        }
+
+        // paths which no longer resolve to the indexed files are resolved by name below
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> verified = verifyIndexed(indexed.keySet());
+        for (Map.Entry<GoogleDrivePath, GoogleDrivePath> e : indexed.entrySet()) {
+            final GoogleDriveFileAttributes attrs = verified.get(e.getKey());
+            if (attrs != null) {
+                attributes.put(e.getValue(), attrs);
+            } else {
+                unresolved.add(e.getValue());
+            }
+        }
+
+        final Set<GoogleDrivePath> toResolve = new HashSet<>();
+        for (GoogleDrivePath path : unresolved) {
+            final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+            if (!absPath.isRoot() && !absPath.isDrive()) {
+                toResolve.add(absPath);
+                continue;
+            }
+            try {
+                attributes.put(path, readAttributes(path));
+            } catch (NoSuchFileException e) { // NOSONAR not existing paths are omitted
+            }
+        }
+
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> resolved = resolveAll(toResolve);
+        for (GoogleDrivePath path : unresolved) {
+            final GoogleDriveFileAttributes attrs = resolved.get(toAbsoluteNormalized(path));
+            if (attrs != null) {
+                attributes.put(path, attrs);
+            }
+        }
+
+        return attributes;
+    }
+
+    /**
+     * Resolves several paths below a drive. Starting from the nearest
+     * available ancestor of each path, the missing segments of all paths are
+     * looked up with one round of batch requests. Only the first missing
+     * segment of a path is looked up in a known folder, since the IDs of the
+     * folders of the deeper segments are not known yet. These are looked up by
+     * name in the whole drive and chained by their parents afterwards. A path
+     * whose segment cannot be chained this way, because more equally named
+     * files exist than one lookup returns, is resolved one segment after the
+     * other from there.
+     *
+     * @param paths
+     *            absolute, normalized paths below a drive.
+     * @return the attributes of the existing paths.
+     * @throws IOException
+     */
+    private Map<GoogleDrivePath, GoogleDriveFileAttributes> resolveAll(final Collection<GoogleDrivePath> paths)
+            throws IOException {
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> starts = new HashMap<>();
+        final Map<String, GoogleDriveHelper.NameLookup> lookups = new HashMap<>();
+        for (GoogleDrivePath path : paths) {
+            final GoogleDriveFileAttributes start = getNearestAvailableAttributes(path);
+            starts.put(path, start);
+
+            final FileMetadata startMeta = start.getMetadata();
+            final String driveId = start.fileKey().isDrive() ? startMeta.getId() : startMeta.getDriveId();
+            String parentId = start.fileKey().isDrive() && driveId == null ? "root" : startMeta.getId();
+            GoogleDrivePath current = start.fileKey();
+            for (String segment : getRemainingPathSegments(current, path)) {
+                current = current.resolve(segment);
+                final String name = decodeForwardSlashes(segment);
+                // a lookup in the known folder is preferred if paths share the segment
+                lookups.merge(current.toString(),
+                        new GoogleDriveHelper.NameLookup(driveId, parentId, name, getIdFromSuffixOrNull(name)),
+                        (a, b) -> a.parentId() != null ? a : b);
+                parentId = null;
+            }
+        }
+
+        final GoogleDriveHelper.BatchResult<FileList> found = lookups.isEmpty() ? null
+                : m_helper.findFiles(lookups);
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> resolved = new HashMap<>();
+        for (GoogleDrivePath path : paths) {
+            try {
+                resolved.put(path, chainLookups(starts.get(path), path, found));
+            } catch (NoSuchFileException e) { // NOSONAR not existing paths are omitted
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves a path from the files found by the lookups of its segments.
+     *
+     * @param start
+     *            attributes of the nearest available ancestor of the path.
+     * @param path
+     *            the path to resolve.
+     * @param found
+     *            the results of the lookups, keyed by the path of the looked
+     *            up segment.
+     * @return the attributes of the path.
+     * @throws IOException
+     */
+    private GoogleDriveFileAttributes chainLookups(final GoogleDriveFileAttributes start,
+            final GoogleDrivePath path, final GoogleDriveHelper.BatchResult<FileList> found) throws IOException {
+        final List<String> segments = getRemainingPathSegments(start.fileKey(), path);
+        GoogleDriveFileAttributes attributes = start;
+        for (int i = 0; i < segments.size(); i++) {
+            final GoogleDrivePath current = attributes.fileKey();
+            final GoogleDrivePath child = current.resolve(segments.get(i));
+            final FileList listing = found.getResults().get(child.toString());
+            if (listing == null || listing.getNextPageToken() != null) {
+                // the lookup failed or is incomplete
+                return getChildAttributesRecursively(attributes, segments.subList(i, segments.size()));
+            }
+
+            // lookups below a drive are always restricted to the drive itself
+            final String parentId = attributes.getMetadata().getId();
+            final File file = selectChild(listing.getFiles(), current.isDrive() ? null : parentId,
+                    decodeForwardSlashes(segments.get(i)), child.toString());
+            attributes = new GoogleDriveFileAttributes(child, new FileMetadata(file));
+            m_idIndex.put(child, attributes.getMetadata(), parentId);
+            cacheAttributes(child, attributes);
+        }
+        return attributes;
+    }
+
+    /**
+     * Selects the file of a path segment from the files found by its lookup.
+     *
+     * @param files
+     *            the found files, including their parents.
+     * @param parentId
+     *            ID of the folder of the segment, null if the lookup has been
+     *            restricted to the folder of the segment.
+     * @param name
+     *            the decoded name of the segment.
+     * @param path
+     *            the path of the segment, used in error messages.
+     * @return the file of the segment.
+     * @throws NoSuchFileException
+     *             if none of the files is in the folder of the segment.
+     * @throws IOException
+     *             if none of the files in the folder matches the name.
+     */
+    static File selectChild(final List<File> files, final String parentId, final String name,
+            final String path) throws IOException {
+        final List<File> children = files == null ? List.of() : files.stream() //
+                .filter(f -> parentId == null || (f.getParents() != null && f.getParents().contains(parentId))) //
+                .collect(Collectors.toList());
+        if (children.isEmpty()) {
+            throw new NoSuchFileException(path);
+        }
+        return getBestFile(children, name);
+    }
+
+    private static GoogleDriveFileAttributes getExisting(
+            final Map<GoogleDrivePath, GoogleDriveFileAttributes> attributes, final GoogleDrivePath path)
+            throws NoSuchFileException {
+        final GoogleDriveFileAttributes attrs = attributes.get(path);
+        if (attrs == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return attrs;
+    }
+
+    /**
+     * Deletes several files and empty folders with batch requests. The paths
+     * are resolved as in {@link #readAllAttributes(Collection)} and the folders
+     * are checked for children with one more round of batch requests.
+     *
+     * @param paths
+     *            paths to delete.
+     * @return the exceptions of the paths which could not be deleted.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    @SuppressWarnings("resource")
+    Map<GoogleDrivePath, IOException> deleteAll(final Collection<GoogleDrivePath> paths) throws IOException {
+        final Map<GoogleDrivePath, IOException> failures = new HashMap<>();
+        final List<GoogleDrivePath> deletable = new ArrayList<>();
+        for (GoogleDrivePath path : paths) {
+            final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+            if (absPath.isRoot() || absPath.isDrive()) {
+                failures.put(path, new AccessDeniedException(path.toString()));
+            } else {
+                deletable.add(path);
+            }
+        }
+
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> attributes = readAllAttributes(deletable);
+        final Map<String, GoogleDrivePath> toDelete = new HashMap<>();
+        final Map<String, GoogleDrivePath> folders = new HashMap<>();
+        final Map<String, String> folderDriveIds = new HashMap<>();
+        for (GoogleDrivePath path : deletable) {
+            final GoogleDriveFileAttributes attrs = attributes.get(path);
+            if (attrs == null) {
+                failures.put(path, new NoSuchFileException(path.toString()));
+            } else if (attrs.isDirectory()) {
+                folders.put(attrs.getMetadata().getId(), path);
+                folderDriveIds.put(attrs.getMetadata().getId(), attrs.getMetadata().getDriveId());
+            } else {
+                toDelete.put(attrs.getMetadata().getId(), path);
+            }
+        }
+
+        final GoogleDriveHelper.BatchResult<FileList> children = m_helper.listFirstChildren(folderDriveIds);
+        for (Map.Entry<String, GoogleDrivePath> e : folders.entrySet()) {
+            final GoogleDrivePath path = e.getValue();
+            final FileList listing = children.getResults().get(e.getKey());
+            if (listing == null) {
+                failures.put(path, toPathFailure(path, children.getFailures().get(e.getKey())));
+            } else if (listing.getFiles() != null && !listing.getFiles().isEmpty()) {
+                failures.put(path, new DirectoryNotEmptyException(path.toString()));
+            } else {
+                toDelete.put(e.getKey(), path);
+            }
+        }
+
+        final Map<String, IOException> deleteFailures = m_helper.deleteFiles(toDelete.keySet());
+        for (Map.Entry<String, GoogleDrivePath> e : toDelete.entrySet()) {
+            final GoogleDrivePath path = e.getValue();
+            final IOException failure = deleteFailures.get(e.getKey());
+            if (failure != null) {
+                failures.put(path, toPathFailure(path, failure));
+            } else {
+                final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+                m_idIndex.removeDeep(absPath);
+                getFileSystemInternal().removeFromAttributeCacheDeep(absPath);
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * Moves several files and folders into a folder with batch requests. The
+     * moved files keep their names, existing files are not replaced.
+     *
+     * @param paths
+     *            paths to move.
+     * @param targetDir
+     *            the folder to move the paths into.
+     * @return the exceptions of the paths which could not be moved.
+     * @throws IOException
+     *             if the target folder cannot be read or a batch request could
+     *             not be executed.
+     */
+    @SuppressWarnings("resource")
+    Map<GoogleDrivePath, IOException> moveAll(final Collection<GoogleDrivePath> paths,
+            final GoogleDrivePath targetDir) throws IOException {
+        final GoogleDrivePath absTargetDir = toAbsoluteNormalized(targetDir);
+        if (absTargetDir.isRoot()) {
+            throw new AccessDeniedException(targetDir.toString());
+        }
+        final GoogleDriveFileAttributes targetDirAttrs = readAttributes(absTargetDir);
+        if (!targetDirAttrs.isDirectory()) {
+            throw new NotDirectoryException(targetDir.toString());
+        }
+        final String targetDirId = targetDirAttrs.getMetadata().getId();
+
+        // one listing instead of one lookup per target
+        final Set<String> existingNames = new HashSet<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(absTargetDir)) {
+            children.forEach(child -> existingNames.add(child.getFileName().toString()));
+        }
+
+        final Map<GoogleDrivePath, IOException> failures = new HashMap<>();
+        final List<GoogleDrivePath> movable = new ArrayList<>();
+        for (GoogleDrivePath path : paths) {
+            final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+            if (absPath.isRoot() || absPath.isDrive()) {
+                failures.put(path, new AccessDeniedException(path.toString()));
+                continue;
+            }
+            final String name = absPath.getFileName().toString();
+            if (!existingNames.add(name)) {
+                failures.put(path, new FileAlreadyExistsException(absTargetDir.resolve(name).toString()));
+                continue;
+            }
+            movable.add(path);
+        }
+
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> attributes = readAllAttributes(movable);
+        final Map<String, GoogleDrivePath> toMove = new HashMap<>();
+        final Map<String, String> newParentIds = new HashMap<>();
+        for (GoogleDrivePath path : movable) {
+            final GoogleDriveFileAttributes attrs = attributes.get(path);
+            if (attrs == null) {
+                failures.put(path, new NoSuchFileException(path.toString()));
+            } else {
+                toMove.put(attrs.getMetadata().getId(), path);
+                newParentIds.put(attrs.getMetadata().getId(), targetDirId);
+            }
+        }
+
+        final GoogleDriveHelper.BatchResult<File> moved = m_helper.moveFiles(newParentIds);
+        for (Map.Entry<String, GoogleDrivePath> e : toMove.entrySet()) {
+            final GoogleDrivePath path = e.getValue();
+            final File movedFile = moved.getResults().get(e.getKey());
+            if (movedFile == null) {
+                failures.put(path, toPathFailure(path, moved.getFailures().get(e.getKey())));
+                continue;
+            }
+
+            final GoogleDrivePath absPath = toAbsoluteNormalized(path);
+            final GoogleDrivePath target = absTargetDir.resolve(absPath.getFileName().toString());
+            final FileMetadata movedMeta = new FileMetadata(movedFile);
+            m_idIndex.removeDeep(absPath);
+            getFileSystemInternal().removeFromAttributeCacheDeep(absPath);
+            cacheAttributes(target, new GoogleDriveFileAttributes(target, movedMeta));
+            m_idIndex.put(target, movedMeta, targetDirId);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Batch failures refer to file IDs, replaces them by the path for missing
+     * files.
+     */
+    private static IOException toPathFailure(final GoogleDrivePath path, final IOException failure) {
+        if (failure instanceof NoSuchFileException) {
+            final var ex = new NoSuchFileException(path.toString());
+            ex.initCause(failure);
+            return ex;
+        }
+        return failure;
+    }
+
+    private static GoogleDrivePath toAbsoluteNormalized(final GoogleDrivePath path) {
+        return (GoogleDrivePath) path.toAbsolutePath().normalize();
+    }
+
     private void checkMimeType(final GoogleDrivePath path) throws IOException {
         final GoogleDrivePath absNormalizedPath = (GoogleDrivePath) path.toAbsolutePath().normalize();
 
         if (existsCached(absNormalizedPath)) {
-            final var attrs = readAttributes(absNormalizedPath);
-            final var metaData = attrs.getMetadata();
+            checkMimeType(readAttributes(absNormalizedPath).getMetadata());
+        }
+    }
 
-            if (GOOGLE_APPS_MIME_TYPE.matcher(metaData.getMimeType()).matches()) {
-                if (metaData.getMimeType().endsWith("spreadsheet")) {
-                    throw new IOException("Google Sheets are not supported. "
-                            + "Please use the Google Sheets Reader (https://kni.me/n/poHAFve1qUYVbcyD) node instead.");
-                } else {
-                    throw new IOException("Google Docs/Google Slides are not supported.");
-                }
+    private static void checkMimeType(final File metaData) throws IOException {
+        if (GOOGLE_APPS_MIME_TYPE.matcher(metaData.getMimeType()).matches()) {
+            if (metaData.getMimeType().endsWith("spreadsheet")) {
+                throw new IOException("Google Sheets are not supported. "
+                        + "Please use the Google Sheets Reader (https://kni.me/n/poHAFve1qUYVbcyD) node instead.");
+            } else {
+                throw new IOException("Google Docs/Google Slides are not supported.");
             }
         }
     }
@@ -404,6 +974,7 @@ private GoogleDriveFileAttributes getChildAttributesRecursively(final GoogleDriv
                     attributes = new GoogleDriveFileAttributes(child,
                             new FileMetadata(getFile(meta.getDriveId(), meta.getId(), childName)));
                 }
+                m_idIndex.put(child, attributes.getMetadata(), meta.getId());
             }
 
             current = child;
@@ -434,29 +1005,127 @@ private static List<String> getRemainingPathSegments(final GoogleDrivePath pathA
     }
 
     /**
+     * Walks from the given path to the top and returns the attributes of the
+     * first element found in the attribute cache, the drive map or the ID
+     * index. The nearest indexed element is checked with one batched request
+     * together with its indexed ancestors, because any of them may have been
+     * renamed, moved or deleted by someone else since it was indexed.
+     *
      * @param path
      *            current path.
-     * @return nearest found cached attributes from given element to top
+     * @return nearest available attributes from given element to top
      *         sequentially.
+     * @throws IOException
      */
-    private GoogleDriveFileAttributes getNearestAvailableCachedAttributes(final GoogleDrivePath path) {
-        // find nearest cached parent attributes.
-        // The path segments without attributes supply into list
-        GoogleDriveFileAttributes attributes = null;
+    private GoogleDriveFileAttributes getNearestAvailableAttributes(final GoogleDrivePath path) throws IOException {
         GoogleDrivePath current = path;
 
-        while (attributes == null) {
-            final Optional<BaseFileAttributes> optional = getCachedAttributes(current);
-            if (optional.isPresent()) {
-                attributes = (GoogleDriveFileAttributes) optional.get();
-            } else {
-                current = current.getParent();
-                if (current.isRoot()) {
-                    attributes = createRootAttributes(current);
+        while (!current.isRoot()) {
+            final Optional<BaseFileAttributes> cached = getCachedAttributes(current);
+            if (cached.isPresent()) {
+                return (GoogleDriveFileAttributes) cached.get();
+            }
+            if (current.isDrive()) {
+                return getDriveAttrs(current);
+            }
+
+            if (m_idIndex.get(current) != null) {
+                // the deepest indexed path which still resolves to its file, stale
+                // entries are dropped from the index and skipped below
+                final Optional<GoogleDriveFileAttributes> verified = verifyIndexed(List.of(current)).entrySet()
+                        .stream() //
+                        .max(Comparator.comparingInt(e -> e.getKey().getNameCount())) //
+                        .map(Map.Entry::getValue);
+                if (verified.isPresent()) {
+                    return verified.get();
                 }
             }
+            current = current.getParent();
         }
 
+        return createRootAttributes(current);
+    }
+
+    /**
+     * Checks whether the given indexed paths still resolve to their indexed
+     * files, since these may have been renamed, moved or deleted by someone else
+     * in the meantime. A path only resolves if its file and the files of all its
+     * indexed ancestors still have the indexed name and parent. All of them are
+     * fetched with one round of batch requests. Stale entries are dropped from
+     * the index, the attributes of the resolved paths are cached.
+     *
+     * @param paths
+     *            absolute, normalized paths below a drive.
+     * @return attributes of the indexed paths and ancestors which still resolve
+     *         to their indexed files.
+     * @throws IOException
+     */
+    private Map<GoogleDrivePath, GoogleDriveFileAttributes> verifyIndexed(final Collection<GoogleDrivePath> paths)
+            throws IOException {
+        final Map<GoogleDrivePath, GoogleDriveIdIndex.IndexEntry> entries = new HashMap<>();
+        for (GoogleDrivePath path : paths) {
+            GoogleDrivePath current = path;
+            while (!current.isRoot() && !current.isDrive() && !entries.containsKey(current)) {
+                final GoogleDriveIdIndex.IndexEntry entry = m_idIndex.get(current);
+                if (entry == null) {
+                    break;
+                }
+                entries.put(current, entry);
+                current = current.getParent();
+            }
+        }
+        if (entries.isEmpty()) {
+            return Map.of();
+        }
+
+        final Map<String, File> files = m_helper.getFilesById(entries.values().stream() //
+                .map(e -> e.getMetadata().getId()) //
+                .collect(Collectors.toSet())).getResults();
+
+        // ancestors first, a path does not resolve if one of them does not
+        final List<GoogleDrivePath> sorted = new ArrayList<>(entries.keySet());
+        sorted.sort(Comparator.comparingInt(GoogleDrivePath::getNameCount));
+        final Map<GoogleDrivePath, GoogleDriveFileAttributes> verified = new HashMap<>();
+        for (GoogleDrivePath path : sorted) {
+            final GoogleDrivePath parent = path.getParent();
+            if (entries.containsKey(parent) && !verified.containsKey(parent)) {
+                continue;
+            }
+            final GoogleDriveIdIndex.IndexEntry entry = entries.get(path);
+            final GoogleDriveFileAttributes attrs = verifyIndexed(path, entry,
+                    files.get(entry.getMetadata().getId()));
+            if (attrs != null) {
+                verified.put(path, attrs);
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * @param path
+     *            indexed file path.
+     * @param entry
+     *            index entry of the path.
+     * @param file
+     *            current state of the indexed file, null if it does not exist
+     *            anymore.
+     * @return attributes of the file or null if the path no longer resolves to
+     *         the indexed file.
+     */
+    private GoogleDriveFileAttributes verifyIndexed(final GoogleDrivePath path,
+            final GoogleDriveIdIndex.IndexEntry entry, final File file) {
+        final String name = decodeForwardSlashes(path.getFileName().toString());
+        if (file == null //
+                || Boolean.TRUE.equals(file.getTrashed()) //
+                || getBestItem(List.of(file), name, NameIdAccessor.FILE) == null //
+                || (entry.getParentId() != null
+                        && (file.getParents() == null || !file.getParents().contains(entry.getParentId())))) {
+            m_idIndex.removeDeep(path);
+            return null;
+        }
+
+        final GoogleDriveFileAttributes attributes = new GoogleDriveFileAttributes(path, new FileMetadata(file));
+        cacheAttributes(path, attributes);
         return attributes;
     }
 
@@ -604,4 +1273,19 @@ static String decodeForwardSlashes(final String originName) {
     static String encodeForwardSlashes(final String originName) {
         return originName.replace("/", "$_$");
     }
+
+    /**
+     * An open listing of a folder, with the deferred operations on its files.
+     */
+    static final class OpenListing {
+
+        private final Thread m_thread;
+
+        private final GoogleDriveDeferredOperations m_deferred;
+
+        private OpenListing(final Thread thread, final GoogleDriveDeferredOperations deferred) {
+            m_thread = thread;
+            m_deferred = deferred;
+        }
+    }
 }
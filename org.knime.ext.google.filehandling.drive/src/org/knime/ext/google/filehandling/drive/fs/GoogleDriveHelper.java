@@ -49,20 +49,52 @@
  */
 package org.knime.ext.google.filehandling.drive.fs;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.knime.google.api.nodes.util.GoogleApiUtil;
 
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploader.UploadState;
 import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpBackOffUnsuccessfulResponseHandler;
+import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.client.util.ExponentialBackOff;
 import com.google.api.services.drive.Drive.Files;
 import com.google.api.services.drive.Drive.Files.Create;
 import com.google.api.services.drive.Drive.Files.Update;
+import com.google.api.services.drive.Drive.Revisions;
+import com.google.api.services.drive.DriveRequest;
 import com.google.api.services.drive.model.Drive;
 import com.google.api.services.drive.model.DriveList;
 import com.google.api.services.drive.model.File;
@@ -85,6 +117,11 @@ public class GoogleDriveHelper {
      * be sent by server on the list files request.
      */
     private static final String FILES_FIELDS_QUERY_PART = "files(" + FILE_FIELDS + ")";
+    /**
+     * Google API query part for the files of a lookup, which include their
+     * parents so that lookups of consecutive path segments can be chained.
+     */
+    private static final String LOOKUP_FIELDS_QUERY_PART = "files(" + FILE_FIELDS + ", parents)";
     /**
      * Google API application name.
      */
@@ -99,16 +136,84 @@ public class GoogleDriveHelper {
      */
     public static final String DRIVE_AUTH_SCOPE = "https://www.googleapis.com/auth/drive";
 
+    /**
+     * Maximum number of files Google Drive returns per list request.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Maximum number of calls Google Drive accepts in one batch request.
+     */
+    static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Maximum number of attempts to download a single range.
+     */
+    private static final int MAX_RANGE_ATTEMPTS = 5;
+
     private final com.google.api.services.drive.Drive m_driveService;
 
+    /**
+     * Service for uploads, whose requests are sent again after transient
+     * failures.
+     */
+    private final com.google.api.services.drive.Drive m_uploadService;
+
+    private final HttpRequestInitializer m_requestInitializer;
+
+    private final int m_uploadChunkSize;
+
+    private final long m_rangedDownloadThreshold;
+
+    private final int m_rangedDownloadConnections;
+
+    /**
+     * Sends the metadata calls of concurrent threads together.
+     */
+    private final GoogleDriveBatchCoalescer m_calls;
+
+    private final ExecutorService m_executor = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "knime-gdrive-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * @param config
      *            connection configuration.
      */
     public GoogleDriveHelper(final GoogleDriveFSConnectionConfig config) {
-        m_driveService = new com.google.api.services.drive.Drive.Builder(GoogleApiUtil.getHttpTransport(),
-                GoogleApiUtil.getJsonFactory(), req -> initializeRequest(req, config))
+        this(config, GoogleApiUtil.getHttpTransport(), req -> initializeRequest(req, config));
+    }
+
+    /**
+     * Creates a helper which sends its requests through the given transport,
+     * e.g. a stand-in for Google Drive.
+     *
+     * @param config
+     *            connection configuration.
+     * @param transport
+     *            the HTTP transport to use.
+     * @param requestInitializer
+     *            initializes every request, e.g. with the credentials.
+     */
+    GoogleDriveHelper(final GoogleDriveFSConnectionConfig config, final HttpTransport transport,
+            final HttpRequestInitializer requestInitializer) {
+        m_requestInitializer = requestInitializer;
+        // the resumable upload protocol requires multiples of 256 KiB
+        m_uploadChunkSize = Math.max(MediaHttpUploader.MINIMUM_CHUNK_SIZE,
+                config.getUploadChunkSize() / MediaHttpUploader.MINIMUM_CHUNK_SIZE
+                        * MediaHttpUploader.MINIMUM_CHUNK_SIZE);
+        m_rangedDownloadThreshold = config.getRangedDownloadThreshold();
+        m_rangedDownloadConnections = config.getRangedDownloadConnections();
+        m_driveService = new com.google.api.services.drive.Drive.Builder(transport, GoogleApiUtil.getJsonFactory(),
+                m_requestInitializer)
                         .setApplicationName(APPLICATION_NAME).build();
+        m_uploadService = new com.google.api.services.drive.Drive.Builder(transport, GoogleApiUtil.getJsonFactory(),
+                req -> initializeUploadRequest(req, requestInitializer))
+                        .setApplicationName(APPLICATION_NAME).build();
+        m_calls = new GoogleDriveBatchCoalescer(m_driveService, m_requestInitializer, config.getBatchWindow(),
+                MAX_BATCH_SIZE);
     }
 
     private static void initializeRequest(final HttpRequest req, final GoogleDriveFSConnectionConfig config)
@@ -119,6 +224,29 @@ private static void initializeRequest(final HttpRequest req, final GoogleDriveFS
         req.setReadTimeout((int) config.getReadTimeOut().toMillis());
     }
 
+    /**
+     * Initializes the requests of uploads, so that requests failing with a
+     * server error, a 429 or a broken connection are sent again with
+     * exponential back-off. The uploader wraps these handlers and asks Google
+     * Drive which bytes it has received before it sends a chunk again.
+     */
+    private static void initializeUploadRequest(final HttpRequest req,
+            final HttpRequestInitializer requestInitializer) throws IOException {
+        if (requestInitializer != null) {
+            requestInitializer.initialize(req);
+        }
+
+        // the handler of the credentials refreshes expired access tokens
+        final HttpUnsuccessfulResponseHandler credentials = req.getUnsuccessfulResponseHandler();
+        final HttpBackOffUnsuccessfulResponseHandler backOff =
+                new HttpBackOffUnsuccessfulResponseHandler(new ExponentialBackOff()).setBackOffRequired(
+                        response -> response.getStatusCode() == 429 || response.getStatusCode() / 100 == 5);
+        req.setUnsuccessfulResponseHandler((request, response, supportsRetry) -> (credentials != null
+                && credentials.handleResponse(request, response, supportsRetry))
+                || backOff.handleResponse(request, response, supportsRetry));
+        req.setIOExceptionHandler(new HttpBackOffIOExceptionHandler(new ExponentialBackOff()));
+    }
+
     /**
      * @param driveId
      *            ID of shared drive.
@@ -155,21 +283,7 @@ public List<File> getFilesByNameOrId(final String driveId, final String parentId
 
     private List<File> getFilesByNameOrIdImpl(final String driveId, final String parentId, final String name,
             final String fileId) throws IOException {
-        StringBuilder searchCriterias = new StringBuilder("trashed = false and ")
-                .append(createNameAndIdQueryPart(name, fileId)).append(" and '")
-                .append(parentId)
-                .append("' in parents ");
-
-        Files.List query = m_driveService.files().list()
-                .setQ(searchCriterias.toString())
-                .setPageToken(null).setFields("nextPageToken, " + FILES_FIELDS_QUERY_PART)
-                .setSpaces("drive");
-
-        if (driveId != null) {
-            addDriveIdToQuery(query, driveId);
-        }
-
-        FileList result = query.execute();
+        FileList result = m_calls.execute(newLookup(new NameLookup(driveId, parentId, name, fileId)));
         List<File> files = result.getFiles();
         if (files.isEmpty()) {
             throw new NoSuchFileException("Child file " + name + " of " + parentId + " not found");
@@ -178,6 +292,54 @@ private List<File> getFilesByNameOrIdImpl(final String driveId, final String par
         return files;
     }
 
+    /**
+     * Looks up files by name with batch requests.
+     *
+     * @param lookups
+     *            the lookups, keyed by arbitrary keys.
+     * @return the listings of the found files including their parents, keyed
+     *         like the lookups, and the failures of the lookups which could not
+     *         be executed. A listing with a next page token is incomplete.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public BatchResult<FileList> findFiles(final Map<String, NameLookup> lookups) throws IOException {
+        return executeBatch(lookups.keySet(), key -> newLookup(lookups.get(key)));
+    }
+
+    private Files.List newLookup(final NameLookup lookup) throws IOException {
+        final StringBuilder searchCriterias = new StringBuilder("trashed = false and ")
+                .append(createNameAndIdQueryPart(lookup.name(), lookup.fileId()));
+        if (lookup.parentId() != null) {
+            searchCriterias.append(" and '").append(lookup.parentId()).append("' in parents ");
+        }
+
+        final Files.List query = m_driveService.files().list()
+                .setQ(searchCriterias.toString())
+                .setFields("nextPageToken, " + LOOKUP_FIELDS_QUERY_PART)
+                .setPageSize(MAX_PAGE_SIZE)
+                .setSpaces("drive");
+        if (lookup.driveId() != null) {
+            addDriveIdToQuery(query, lookup.driveId());
+        }
+        return query;
+    }
+
+    /**
+     * Lookup of the files with a name, or of the file with an ID.
+     *
+     * @param driveId
+     *            ID of the shared drive to search, null for 'My Drive'.
+     * @param parentId
+     *            ID of the folder to search, null to search the whole drive.
+     * @param name
+     *            the name of the files.
+     * @param fileId
+     *            ID of a file to find as well, may be null.
+     */
+    public record NameLookup(String driveId, String parentId, String name, String fileId) {
+    }
+
     /**
      * @param name
      *            drive name.
@@ -235,7 +397,7 @@ public void deleteFile(final String id) throws IOException {
     }
 
     private void deleteFileImpl(final String id) throws IOException {
-        m_driveService.files().delete(id).setSupportsAllDrives(true).execute();
+        m_calls.execute(m_driveService.files().delete(id).setSupportsAllDrives(true));
     }
 
     /**
@@ -288,17 +450,8 @@ private File createFileOrFolder(final String driveId, final String parentId, fin
 
     private File createFileOrFolderImpl(final String driveId, final String parentId, final String name,
             final AbstractInputStreamContent content) throws IOException {
-        File file = new File();
-        file.setName(name);
-        file.setDriveId(driveId);
-
-        boolean isDriveFile = driveId != null;
-        if (parentId != null) {
-            file.setParents(Collections.singletonList(parentId));
-        } else if (isDriveFile) { // NOSONAR it is correct
-            // if drive ID is null not need to specify a parent
-            file.setParents(Collections.singletonList(driveId));
-        }
+        final File file = newFile(driveId, parentId, name);
+        final boolean isDriveFile = driveId != null;
 
         Create query;
         if (content != null) {
@@ -318,6 +471,78 @@ private File createFileOrFolderImpl(final String driveId, final String parentId,
         return query.execute();
     }
 
+    private static File newFile(final String driveId, final String parentId, final String name) {
+        File file = new File();
+        file.setName(name);
+        file.setDriveId(driveId);
+
+        if (parentId != null) {
+            file.setParents(Collections.singletonList(parentId));
+        } else if (driveId != null) { // NOSONAR it is correct
+            // if drive ID is null not need to specify a parent
+            file.setParents(Collections.singletonList(driveId));
+        }
+        return file;
+    }
+
+    /**
+     * Uploads the content of the given stream with the resumable upload
+     * protocol, chunk by chunk while the stream is read. Unlike the other
+     * operations the upload is not retried as a whole, because the stream
+     * cannot be read again. Instead, a chunk failing with a server error, a 429
+     * or a broken connection is sent again with exponential back-off from the
+     * first byte Google Drive has not received, see
+     * {@link #initializeUploadRequest(HttpRequest, HttpRequestInitializer)}.
+     * The initiation of the upload session is retried on rate limit errors as
+     * well, since nothing has been read from the stream at that point.
+     *
+     * @param driveId
+     *            shared drive ID.
+     * @param parentId
+     *            folder ID.
+     * @param name
+     *            file name.
+     * @param fileId
+     *            ID of the existing file to replace the content of, or null to
+     *            create a new file.
+     * @param in
+     *            the content to upload, is read until its end.
+     * @return the created or updated file.
+     * @throws IOException
+     */
+    public File uploadFile(final String driveId, final String parentId, final String name, final String fileId,
+            final InputStream in) throws IOException {
+        final InputStreamContent content = new InputStreamContent(null, in);
+
+        Duration sleepTime = Duration.ofSeconds(1);
+        for (int attempt = 1;; attempt++) {
+            final DriveRequest<File> query;
+            if (fileId != null) {
+                query = m_uploadService.files().update(fileId, null, content).setFields(FILE_FIELDS)
+                        .setSupportsAllDrives(true);
+            } else {
+                query = m_uploadService.files().create(newFile(driveId, parentId, name), content)
+                        .setFields(FILE_FIELDS).setSupportsAllDrives(true);
+            }
+
+            final MediaHttpUploader uploader = query.getMediaHttpUploader();
+            uploader.setDirectUploadEnabled(false);
+            uploader.setChunkSize(m_uploadChunkSize);
+            try {
+                return query.execute();
+            } catch (IOException ex) {
+                final boolean initiating = uploader.getUploadState() == UploadState.NOT_STARTED
+                        || uploader.getUploadState() == UploadState.INITIATION_STARTED;
+                if (!initiating || !RetryHelper.isExceededRateLimit(ex)
+                        || attempt >= RetryHelper.DEFAULT_MAX_RETRY_COUNT) {
+                    throw ex;
+                }
+                RetryHelper.doPause(sleepTime);
+                sleepTime = sleepTime.multipliedBy(2);
+            }
+        }
+    }
+
     /**
      * @param fileId
      *            file ID.
@@ -363,11 +588,13 @@ private List<Drive> listSharedDrivesImpl() throws IOException {
     /**
      * @param driveId
      *            drive ID or null in case of 'My Drive'
-     * @return files files.
+     * @param pageToken
+     *            token of the page to list or null for the first page.
+     * @return one page of the files of the drive, ordered by name.
      * @throws IOException
      */
-    public List<File> listDrive(final String driveId) throws IOException {
-        return listParent(driveId, driveId == null ? "root" : driveId);
+    public FileList listDrive(final String driveId, final String pageToken) throws IOException {
+        return listParent(driveId, driveId == null ? "root" : driveId, pageToken);
     }
 
     /**
@@ -375,11 +602,14 @@ public List<File> listDrive(final String driveId) throws IOException {
      *            drive ID or null in case of 'My Drive'
      * @param parentId
      *            parent ID.
-     * @return files files.
+     * @param pageToken
+     *            token of the page to list or null for the first page.
+     * @return one page of the files of the folder, ordered by name.
      * @throws IOException
      */
-    public List<File> listFolder(final String driveId, final String parentId) throws IOException {
-        return listParent(driveId, parentId);
+    public FileList listFolder(final String driveId, final String parentId, final String pageToken)
+            throws IOException {
+        return listParent(driveId, parentId, pageToken);
     }
 
     /**
@@ -387,36 +617,30 @@ public List<File> listFolder(final String driveId, final String parentId) throws
      *            drive ID or null in case of 'My Drive'
      * @param parentId
      *            parent ID.
-     * @return files files.
+     * @param pageToken
+     *            token of the page to list or null for the first page.
+     * @return one page of the files, ordered by name.
      * @throws IOException
      */
-    private List<File> listParent(final String driveId, final String parentId) throws IOException {
-        return doWithRetry(() -> listParentImpl(driveId, parentId));
+    private FileList listParent(final String driveId, final String parentId, final String pageToken)
+            throws IOException {
+        return doWithRetry(() -> listParentImpl(driveId, parentId, pageToken));
     }
 
-    private List<File> listParentImpl(final String driveId, final String parentId) throws IOException {
+    private FileList listParentImpl(final String driveId, final String parentId, final String pageToken)
+            throws IOException {
         final Files.List query = m_driveService.files().list()
                 .setQ("trashed = false and '" + parentId + "' in parents")
                 .setFields("nextPageToken, " + FILES_FIELDS_QUERY_PART)
+                .setPageSize(MAX_PAGE_SIZE)
+                .setOrderBy("name")
+                .setPageToken(pageToken)
                 .setSpaces("drive");
         if (driveId != null) {
             addDriveIdToQuery(query, driveId);
         }
 
-        final List<File> files = new LinkedList<>();
-        String nextPageToken = null;
-        do {
-            query.setPageToken(nextPageToken);
-
-            FileList result = query.execute();
-            nextPageToken = result.getNextPageToken();
-
-            for (File file : result.getFiles()) {
-                files.add(file);
-            }
-        } while (nextPageToken != null);
-
-        return files;
+        return query.execute();
     }
 
     /**
@@ -444,6 +668,88 @@ private InputStream readFileImpl(final String id) throws IOException {
         return m_driveService.files().get(id).setSupportsAllDrives(true).executeMediaAsInputStream();
     }
 
+    /**
+     * Opens the content of a file of the given size. Files at or above the
+     * configured threshold are downloaded with several concurrent range
+     * requests. The ranges are all read from the head revision at the time the
+     * file is opened, so that an update of the file during the download cannot
+     * mix the content of two versions. Files whose revisions the user may not
+     * read are downloaded with a single request.
+     *
+     * @param id
+     *            file ID.
+     * @param size
+     *            file size.
+     * @return file input stream.
+     * @throws IOException
+     */
+    public InputStream readFile(final String id, final long size) throws IOException {
+        if (m_rangedDownloadConnections > 1 && size >= m_rangedDownloadThreshold) {
+            final File head = doWithRetry(() -> m_calls.execute(m_driveService.files().get(id)
+                    .setFields("headRevisionId, size, capabilities/canReadRevisions")
+                    .setSupportsAllDrives(true)));
+            if (head.getHeadRevisionId() != null && head.getSize() != null && head.getCapabilities() != null
+                    && Boolean.TRUE.equals(head.getCapabilities().getCanReadRevisions())) {
+                final String revisionId = head.getHeadRevisionId();
+                return new GoogleDriveRangedInputStream((offset, length) -> readRange(id, revisionId, offset, length),
+                        m_executor, head.getSize(), m_rangedDownloadConnections);
+            }
+        }
+        return readFile(id);
+    }
+
+    /**
+     * Downloads a range of the content of a revision of a file. If the
+     * connection breaks while reading, the download is resumed from the first
+     * missing byte.
+     *
+     * @param id
+     *            file ID.
+     * @param revisionId
+     *            ID of the revision to read.
+     * @param offset
+     *            offset of the first byte.
+     * @param length
+     *            number of bytes to read.
+     * @return the bytes of the range.
+     * @throws IOException
+     */
+    byte[] readRange(final String id, final String revisionId, final long offset, final int length)
+            throws IOException {
+        final byte[] data = new byte[length];
+        final long last = offset + length - 1;
+        int pos = 0;
+
+        for (int attempt = 1; pos < length; attempt++) {
+            final long first = offset + pos;
+            try (InputStream in = doWithRetry(() -> openRange(id, revisionId, first, last))) {
+                final int n = in.readNBytes(data, pos, length - pos);
+                pos += n;
+                if (pos < length && n == 0) {
+                    throw new EOFException(String.format("File %s ended at byte %d, expected %d bytes", id,
+                            offset + pos, offset + length));
+                }
+            } catch (EOFException | InterruptedIOException e) {
+                // a shorter file or cancellation is not transient
+                throw e;
+            } catch (IOException e) {
+                final boolean rejected = e instanceof HttpResponseException hre && hre.getStatusCode() < 500;
+                if (rejected || attempt >= MAX_RANGE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+
+        return data;
+    }
+
+    private InputStream openRange(final String id, final String revisionId, final long first, final long last)
+            throws IOException {
+        final Revisions.Get get = m_driveService.revisions().get(id, revisionId);
+        get.getRequestHeaders().setRange("bytes=" + first + "-" + last);
+        return get.executeMediaAsInputStream();
+    }
+
     /**
      * @param sourceId
      *            source file ID.
@@ -459,8 +765,8 @@ public File move(final String sourceId, final String newParentId, final String n
     }
 
     private File moveImpl(final String sourceId, final String newParentId, final String newName) throws IOException {
-        final File oldFile = m_driveService.files().get(sourceId).setFields("id, name, mimeType, parents")
-                .setSupportsAllDrives(true).execute();
+        final File oldFile = m_calls.execute(m_driveService.files().get(sourceId)
+                .setFields("id, name, mimeType, parents").setSupportsAllDrives(true));
 
         final File file = new File();
         file.setName(newName);
@@ -474,8 +780,9 @@ private File moveImpl(final String sourceId, final String newParentId, final Str
             req.setRemoveParents(String.join(",", oldFile.getParents()));
         }
 
-        return req.setFields(FILE_FIELDS).setSupportsAllDrives(true).execute();
+        return m_calls.execute(req.setFields(FILE_FIELDS).setSupportsAllDrives(true));
     }
+
     /**
      * @param sourceId
      *            source file ID.
@@ -503,7 +810,7 @@ private void copyImpl(final String sourceId, final String newParentId, final Str
             file.setParents(parents);
         }
 
-        m_driveService.files().copy(sourceId, file).setFields("mimeType").setSupportsAllDrives(true).execute();
+        m_calls.execute(m_driveService.files().copy(sourceId, file).setFields("mimeType").setSupportsAllDrives(true));
     }
 
     private static String createNameAndIdQueryPart(final String name, final String additionalName) {
@@ -524,6 +831,305 @@ public com.google.api.services.drive.Drive getDriveService() {
         return m_driveService;
     }
 
+    /**
+     * Fetches the given files with batch requests.
+     *
+     * @param ids
+     *            file IDs.
+     * @return the files including their parents and trashed state, keyed by
+     *         their ID, and the failures of the files which could not be
+     *         fetched. Files which do not exist fail with a
+     *         {@link NoSuchFileException}.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public BatchResult<File> getFilesById(final Collection<String> ids) throws IOException {
+        return executeBatch(ids, id -> m_driveService.files().get(id).setFields(FILE_FIELDS + ", parents, trashed")
+                .setSupportsAllDrives(true));
+    }
+
+    /**
+     * Lists at most one child of each of the given folders with batch requests,
+     * which tells whether the folders are empty.
+     *
+     * @param driveIds
+     *            IDs of the folders, mapped to the IDs of their drives. A drive
+     *            ID may be null in case of 'My Drive'.
+     * @return the listings keyed by folder ID, and the failures of the folders
+     *         which could not be listed.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public BatchResult<FileList> listFirstChildren(final Map<String, String> driveIds) throws IOException {
+        return executeBatch(driveIds.keySet(), id -> {
+            final Files.List query = m_driveService.files().list()
+                    .setQ("trashed = false and '" + id + "' in parents")
+                    .setFields("files(id)")
+                    .setPageSize(1)
+                    .setSpaces("drive");
+            if (driveIds.get(id) != null) {
+                addDriveIdToQuery(query, driveIds.get(id));
+            }
+            return query;
+        });
+    }
+
+    /**
+     * Deletes the given files with batch requests.
+     *
+     * @param ids
+     *            IDs of the files to delete.
+     * @return the failures of the files which could not be deleted, keyed by
+     *         their ID.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public Map<String, IOException> deleteFiles(final Collection<String> ids) throws IOException {
+        final BatchResult<Void> deleted = executeBatch(ids,
+                id -> m_driveService.files().delete(id).setSupportsAllDrives(true));
+        // the unanswered first attempt of a resent delete may have been applied
+        deleted.m_failures.entrySet().removeIf(
+                e -> deleted.m_resent.contains(e.getKey()) && e.getValue() instanceof NoSuchFileException);
+        return deleted.getFailures();
+    }
+
+    /**
+     * Moves the given files to new parents with batch requests. The current
+     * parents of all files are fetched in one round of batch requests, the
+     * parents are then updated in a second one.
+     *
+     * @param newParentIds
+     *            IDs of the files to move, mapped to the IDs of their new
+     *            parents. A parent ID may be null in case of 'My Drive'.
+     * @return the moved files, keyed by their ID, and the failures of the files
+     *         which could not be moved.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public BatchResult<File> moveFiles(final Map<String, String> newParentIds) throws IOException {
+        return moveFiles(newParentIds, Map.of());
+    }
+
+    /**
+     * Moves the given files to new parents and renames them with batch
+     * requests, see {@link #moveFiles(Map)}.
+     *
+     * @param newParentIds
+     *            IDs of the files to move, mapped to the IDs of their new
+     *            parents. A parent ID may be null in case of 'My Drive'.
+     * @param newNames
+     *            new names of the files, keyed by their ID. Files without a new
+     *            name keep their name.
+     * @return the moved files, keyed by their ID, and the failures of the files
+     *         which could not be moved.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    public BatchResult<File> moveFiles(final Map<String, String> newParentIds, final Map<String, String> newNames)
+            throws IOException {
+        final BatchResult<File> sources = executeBatch(newParentIds.keySet(),
+                id -> m_driveService.files().get(id).setFields("id, parents").setSupportsAllDrives(true));
+
+        final BatchResult<File> moved = executeBatch(sources.getResults().keySet(), id -> {
+            final Update req = m_driveService.files().update(id, new File().setName(newNames.get(id)));
+            final String newParentId = newParentIds.get(id);
+            if (newParentId != null) { // may be null in case of default drive.
+                req.setAddParents(newParentId);
+            }
+            final List<String> oldParents = sources.getResults().get(id).getParents();
+            if (oldParents != null) { // remove all old parents
+                req.setRemoveParents(String.join(",", oldParents));
+            }
+            return req.setFields(FILE_FIELDS).setSupportsAllDrives(true);
+        });
+        moved.m_failures.putAll(sources.getFailures());
+        return moved;
+    }
+
+    /**
+     * Issues one call per given file ID, combined into batch requests of at
+     * most {@link #MAX_BATCH_SIZE} calls. Calls rejected because of the rate
+     * limit are retried with exponential back-off, all other failures are
+     * reported per file. If a whole batch request is rejected because of the
+     * rate limit or a server error, only its calls without an answer are sent
+     * again, as the others may have been applied already.
+     *
+     * @param ids
+     *            file IDs.
+     * @param call
+     *            creates the call for a file ID.
+     * @return the results and failures keyed by file ID.
+     * @throws IOException
+     *             if a batch request could not be executed.
+     */
+    private <T> BatchResult<T> executeBatch(final Collection<String> ids, final BatchCall<T> call)
+            throws IOException {
+        final BatchResult<T> result = new BatchResult<>();
+        List<String> pending = new ArrayList<>(new LinkedHashSet<>(ids));
+        Duration sleepTime = Duration.ofSeconds(1);
+
+        for (int i = 0; !pending.isEmpty(); i++) {
+            final boolean mayRetry = i + 1 < RetryHelper.DEFAULT_MAX_RETRY_COUNT;
+            final List<String> retry = new ArrayList<>();
+
+            for (int from = 0; from < pending.size(); from += MAX_BATCH_SIZE) {
+                final List<String> batchIds = pending.subList(from, Math.min(from + MAX_BATCH_SIZE, pending.size()));
+                final Set<String> answered = new HashSet<>();
+                final BatchRequest batch = m_driveService.batch(m_requestInitializer);
+                for (String id : batchIds) {
+                    call.create(id).queue(batch, new JsonBatchCallback<T>() {
+                        @Override
+                        public void onSuccess(final T t, final HttpHeaders responseHeaders) {
+                            answered.add(id);
+                            result.m_results.put(id, t);
+                        }
+
+                        @Override
+                        public void onFailure(final GoogleJsonError e, final HttpHeaders responseHeaders) {
+                            answered.add(id);
+                            if (mayRetry && RetryHelper.isExceededRateLimit(e)) {
+                                retry.add(id);
+                            } else {
+                                result.m_failures.put(id, toException(id, e));
+                            }
+                        }
+                    });
+                }
+
+                try {
+                    batch.execute();
+                } catch (IOException e) {
+                    if (!mayRetry || !isRetryableBatchFailure(e)) {
+                        throw e;
+                    }
+                    for (String id : batchIds) {
+                        if (!answered.contains(id)) {
+                            retry.add(id);
+                            result.m_resent.add(id);
+                        }
+                    }
+                }
+            }
+
+            pending = retry;
+            if (!pending.isEmpty()) {
+                RetryHelper.doPause(sleepTime);
+                sleepTime = sleepTime.multipliedBy(2);
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isRetryableBatchFailure(final IOException e) {
+        return RetryHelper.isExceededRateLimit(e) || (e instanceof HttpResponseException hre
+                && (hre.getStatusCode() == 429 || hre.getStatusCode() >= 500));
+    }
+
+    private static IOException toException(final String id, final GoogleJsonError error) {
+        if (error.getCode() == 404) {
+            return new NoSuchFileException(id, null, error.getMessage());
+        }
+        return new IOException(String.format("Request for file %s failed: %s", id, error.getMessage()));
+    }
+
+    /**
+     * Creates the call for a file ID, which is part of a batch request.
+     *
+     * @param <T>
+     *            result type of the call.
+     */
+    @FunctionalInterface
+    private interface BatchCall<T> {
+        DriveRequest<T> create(String id) throws IOException;
+    }
+
+    /**
+     * Results of the calls of batch requests.
+     *
+     * @param <T>
+     *            result type of the calls.
+     */
+    public static final class BatchResult<T> {
+
+        private final Map<String, T> m_results = new HashMap<>();
+
+        private final Map<String, IOException> m_failures = new HashMap<>();
+
+        /** IDs of the calls which have been sent again after an unanswered attempt */
+        private final Set<String> m_resent = new HashSet<>();
+
+        /**
+         * @return results of the successful calls, keyed by file ID.
+         */
+        public Map<String, T> getResults() {
+            return m_results;
+        }
+
+        /**
+         * @return exceptions of the failed calls, keyed by file ID.
+         */
+        public Map<String, IOException> getFailures() {
+            return m_failures;
+        }
+    }
+
+    /**
+     * Runs the given task in the background, e.g. to prefetch the next page of a
+     * listing.
+     *
+     * @param task
+     *            the task to run.
+     * @return the future of the task.
+     */
+    <R> Future<R> submit(final Callable<R> task) {
+        return m_executor.submit(task);
+    }
+
+    /**
+     * @return the executor running the background tasks of this helper.
+     */
+    Executor getExecutor() {
+        return m_executor;
+    }
+
+    /**
+     * Waits for the given future and unwraps the exception it failed with.
+     *
+     * @param future
+     *            the future to wait for.
+     * @return the result of the future.
+     * @throws IOException
+     *             if the task failed or the current thread has been interrupted
+     *             while waiting.
+     */
+    static <R> R await(final Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) { // NOSONAR only the cause is interesting
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            } else if (cause instanceof RuntimeException re) {
+                throw re;
+            } else {
+                throw new IOException(cause);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final var ioe = new InterruptedIOException();
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    /**
+     * Stops the background tasks of this helper.
+     */
+    public void close() {
+        m_executor.shutdownNow();
+    }
+
     private static <R> R doWithRetry(final IoRetryable<R> retryable) throws IOException {
         return RetryHelper.doWithRetryable(retryable);
     }
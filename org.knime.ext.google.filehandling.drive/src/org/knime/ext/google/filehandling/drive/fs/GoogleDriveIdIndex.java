@@ -0,0 +1,164 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Index from Google Drive paths to the IDs of the files and folders they were
+ * resolved to. Google Drive cannot look up files by path, so resolving a path
+ * requires one name query per path segment. The attribute cache only keeps
+ * entries for a few seconds, whereas file IDs are stable, hence this index
+ * keeps them much longer and allows to resolve a known path with a single
+ * request. Entries must be removed when the path is moved, deleted or
+ * overwritten by this file system, and are verified by the caller before use.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveIdIndex {
+
+    private final long m_timeToLiveMillis;
+
+    private final Map<GoogleDrivePath, IndexEntry> m_entries;
+
+    /**
+     * @param timeToLive
+     *            how long entries are kept.
+     * @param maxEntries
+     *            maximum number of entries, the least recently used entries are
+     *            dropped first.
+     */
+    GoogleDriveIdIndex(final Duration timeToLive, final int maxEntries) {
+        m_timeToLiveMillis = timeToLive.toMillis();
+        m_entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<GoogleDrivePath, IndexEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Indexed file or folder.
+     */
+    static final class IndexEntry {
+
+        private final FileMetadata m_metadata;
+
+        private final String m_parentId;
+
+        private final long m_expiresAt;
+
+        private IndexEntry(final FileMetadata metadata, final String parentId, final long expiresAt) {
+            m_metadata = metadata;
+            m_parentId = parentId;
+            m_expiresAt = expiresAt;
+        }
+
+        /**
+         * @return metadata of the file at the time it was indexed.
+         */
+        FileMetadata getMetadata() {
+            return m_metadata;
+        }
+
+        /**
+         * @return ID of the parent folder or shared drive, or null if the file
+         *         is located directly in 'My Drive'.
+         */
+        String getParentId() {
+            return m_parentId;
+        }
+    }
+
+    /**
+     * @param path
+     *            file path.
+     * @param metadata
+     *            metadata of the file or folder the path resolves to.
+     * @param parentId
+     *            ID of the parent folder or shared drive, null if the parent is
+     *            'My Drive'.
+     */
+    synchronized void put(final GoogleDrivePath path, final FileMetadata metadata, final String parentId) {
+        if (metadata.getId() != null && m_timeToLiveMillis > 0) {
+            m_entries.put(path,
+                    new IndexEntry(metadata, parentId, System.currentTimeMillis() + m_timeToLiveMillis));
+        }
+    }
+
+    /**
+     * @param path
+     *            file path.
+     * @return the indexed entry or null if the path is not indexed or the entry
+     *         has expired.
+     */
+    synchronized IndexEntry get(final GoogleDrivePath path) {
+        final IndexEntry entry = m_entries.get(path);
+        if (entry != null && entry.m_expiresAt < System.currentTimeMillis()) {
+            m_entries.remove(path);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the given path and all its descendants from the index.
+     *
+     * @param path
+     *            file path.
+     */
+    synchronized void removeDeep(final GoogleDrivePath path) {
+        m_entries.keySet().removeIf(p -> p.startsWith(path));
+    }
+}
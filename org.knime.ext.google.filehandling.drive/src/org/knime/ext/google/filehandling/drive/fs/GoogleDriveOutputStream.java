@@ -0,0 +1,326 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+import com.google.api.services.drive.model.File;
+
+/**
+ * {@link OutputStream} that uploads the written bytes to Google Drive while
+ * they are written, using the resumable upload protocol, instead of spooling
+ * them to a temporary file first. The upload runs in the background and reads
+ * the written bytes from a bounded buffer; it is finished when the stream is
+ * closed. A failure of the upload is reported by the next write or by
+ * {@link #close()}.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveOutputStream extends OutputStream {
+
+    static final int PIPE_SIZE = 1024 * 1024;
+
+    private final Pipe m_pipe = new Pipe(PIPE_SIZE);
+
+    private final Future<File> m_upload;
+
+    private final Consumer<File> m_uploaded;
+
+    private boolean m_closed;
+
+    /**
+     * @param path
+     *            the path of the file that is written.
+     * @param parentMeta
+     *            metadata of the parent folder or drive.
+     * @param fileId
+     *            ID of the existing file to replace or null to create a new
+     *            file.
+     */
+    @SuppressWarnings("resource")
+    GoogleDriveOutputStream(final GoogleDrivePath path, final FileMetadata parentMeta, final String fileId) {
+        this(newUpload(path, parentMeta, fileId), path.getFileSystem().provider().getHelper().getExecutor(),
+                file -> uploaded(path, parentMeta.getId(), file));
+    }
+
+    /**
+     * @param upload
+     *            reads the content until its end and uploads it.
+     * @param executor
+     *            runs the upload in the background.
+     * @param uploaded
+     *            called with the uploaded file when the stream is closed.
+     */
+    GoogleDriveOutputStream(final Upload upload, final Executor executor, final Consumer<File> uploaded) {
+        m_uploaded = uploaded;
+        final FutureTask<File> task = new FutureTask<>(() -> {
+            try (InputStream content = m_pipe) {
+                return upload.upload(content);
+            }
+        });
+        executor.execute(task);
+        m_upload = task;
+    }
+
+    @SuppressWarnings("resource")
+    private static Upload newUpload(final GoogleDrivePath path, final FileMetadata parentMeta, final String fileId) {
+        final GoogleDriveHelper helper = path.getFileSystem().provider().getHelper();
+        final String name = GoogleDriveFileSystemProvider.decodeForwardSlashes(path.getFileName().toString());
+        return content -> helper.uploadFile(parentMeta.getDriveId(), parentMeta.getId(), name, fileId, content);
+    }
+
+    @SuppressWarnings("resource")
+    private static void uploaded(final GoogleDrivePath path, final String parentId, final File file) {
+        final FileMetadata meta = new FileMetadata(file);
+        final GoogleDriveFileSystem fs = path.getFileSystem();
+        fs.addToAttributeCache(path, new GoogleDriveFileAttributes(path, meta));
+        fs.provider().addToIdIndex(path, meta, parentId);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        try {
+            m_pipe.write(b, off, len);
+        } catch (InterruptedIOException e) {
+            abort();
+            throw e;
+        } catch (IOException e) {
+            throw uploadFailure(e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // the uploader sends full chunks only, nothing to do
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+
+        m_pipe.closeWriter();
+        final File file;
+        try {
+            file = GoogleDriveHelper.await(m_upload);
+        } catch (InterruptedIOException e) {
+            abort();
+            throw e;
+        }
+        m_uploaded.accept(file);
+    }
+
+    /**
+     * Writing fails if the upload has stopped reading, in which case the upload
+     * is about to finish and its failure is the actual cause.
+     */
+    private IOException uploadFailure(final IOException writeFailure) {
+        m_closed = true;
+        try {
+            GoogleDriveHelper.await(m_upload);
+        } catch (IOException e) { // NOSONAR the upload failure replaces the write failure
+            return e;
+        }
+        return writeFailure;
+    }
+
+    private void abort() {
+        m_closed = true;
+        m_upload.cancel(true);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (m_closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Uploads the content read from a stream.
+     */
+    @FunctionalInterface
+    interface Upload {
+
+        /**
+         * @param content
+         *            the content to upload, read until its end.
+         * @return the uploaded file.
+         * @throws IOException
+         */
+        File upload(InputStream content) throws IOException;
+    }
+
+    /**
+     * Bounded buffer handing the written bytes over to the upload, which reads
+     * it as an {@link InputStream}. Unlike {@link java.io.PipedInputStream} it
+     * does not track the threads using it, since a stream may be written by
+     * several threads one after the other, and it wakes up the waiting side as
+     * soon as bytes or space are available instead of polling once per second.
+     */
+    private static final class Pipe extends InputStream {
+
+        private final byte[] m_buffer;
+
+        /** Index of the first unread byte. */
+        private int m_start;
+
+        /** Number of unread bytes. */
+        private int m_count;
+
+        private boolean m_writerClosed;
+
+        private boolean m_readerClosed;
+
+        private Pipe(final int size) {
+            m_buffer = new byte[size];
+        }
+
+        /**
+         * Copies the given bytes into the buffer, waiting for space while it is
+         * full.
+         *
+         * @throws IOException
+         *             if the reader has been closed.
+         */
+        synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            int written = 0;
+            while (written < len) {
+                while (m_count == m_buffer.length && !m_readerClosed) {
+                    waitForOtherSide();
+                }
+                if (m_readerClosed) {
+                    throw new IOException("The upload has stopped reading");
+                }
+                final int end = (m_start + m_count) % m_buffer.length;
+                final int n = Math.min(len - written, Math.min(m_buffer.length - m_count, m_buffer.length - end));
+                System.arraycopy(b, off + written, m_buffer, end, n);
+                m_count += n;
+                written += n;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Lets the reader reach the end of the stream once the buffer is
+         * drained.
+         */
+        synchronized void closeWriter() {
+            m_writerClosed = true;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (m_readerClosed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (m_count == 0 && !m_writerClosed) {
+                waitForOtherSide();
+            }
+            if (m_count == 0) {
+                return -1;
+            }
+            final int n = Math.min(len, Math.min(m_count, m_buffer.length - m_start));
+            System.arraycopy(m_buffer, m_start, b, off, n);
+            m_start = (m_start + n) % m_buffer.length;
+            m_count -= n;
+            notifyAll();
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return m_count;
+        }
+
+        @Override
+        public synchronized void close() {
+            m_readerClosed = true;
+            notifyAll();
+        }
+
+        private void waitForOtherSide() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                final InterruptedIOException ioe = new InterruptedIOException();
+                ioe.initCause(e);
+                throw ioe;
+            }
+        }
+    }
+}
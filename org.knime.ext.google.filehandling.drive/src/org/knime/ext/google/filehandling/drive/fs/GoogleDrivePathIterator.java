@@ -48,26 +48,53 @@
  */
 package org.knime.ext.google.filehandling.drive.fs;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
-import org.knime.filehandling.core.connections.base.BasePathIterator;
+import org.knime.filehandling.core.connections.base.PagedPathIterator;
 
 import com.google.api.services.drive.model.Drive;
 import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.FileList;
 
 /**
- * Google Drive implementation for Path iterator.
+ * Google Drive implementation for Path iterator. Drives and folders are listed
+ * page by page while the iterator is consumed, the next page is requested in
+ * the background. While open, the listing is known to the
+ * {@link GoogleDriveFileSystemProvider}, so that deletes and moves of its files
+ * are deferred until it is closed.
  *
  * @author Vyacheslav Soldatov <vyacheslav@redfield.se>
  */
-final class GoogleDrivePathIterator extends BasePathIterator<GoogleDrivePath> {
+final class GoogleDrivePathIterator extends PagedPathIterator<GoogleDrivePath> implements Closeable {
+
+    private final GoogleDriveHelper m_helper;
+
+    private final FileMetadata m_dirMeta;
+
+    /**
+     * Files of the previous page which may have equally named siblings on the
+     * next page and therefore cannot be named yet.
+     */
+    private List<File> m_heldBack = new ArrayList<>();
+
+    private Future<FileList> m_nextPage;
+
+    private GoogleDriveFileSystemProvider.OpenListing m_openListing;
+
     /**
      * @param filter
      *            path filter.
@@ -75,46 +102,146 @@ final class GoogleDrivePathIterator extends BasePathIterator<GoogleDrivePath> {
      *            path to list.
      * @throws IOException
      */
+    @SuppressWarnings("resource")
     public GoogleDrivePathIterator(final GoogleDrivePath dir,
             final Filter<? super Path> filter) throws IOException {
         super(dir, filter);
 
-        @SuppressWarnings("resource")
         final GoogleDriveFileSystemProvider provider = dir.getFileSystem().provider();
+        m_helper = provider.getHelper();
 
-        final List<GoogleDrivePath> files;
         if (dir.isRoot()) {
-            files = listRootFolder(dir, provider);
+            m_dirMeta = null;
+            setFirstPage(listRootFolder(dir, provider).iterator());
         } else {
-            files = listDriveOrFolder(dir, provider);
+            m_dirMeta = provider.readAttributes(dir).getMetadata();
+            setFirstPage(toPaths(prefetchAfter(fetchPage(null))));
+            m_openListing = provider.listingOpened(dir);
         }
+    }
 
-        setFirstPage(files.iterator());
+    @Override
+    protected boolean hasNextPage() {
+        return m_nextPage != null;
+    }
+
+    @Override
+    protected Iterator<GoogleDrivePath> loadNextPage() throws IOException {
+        final Future<FileList> future = m_nextPage;
+        m_nextPage = null;
+        return toPaths(prefetchAfter(GoogleDriveHelper.await(future)));
+    }
+
+    @SuppressWarnings("resource")
+    @Override
+    public void close() throws IOException {
+        if (m_nextPage != null) {
+            m_nextPage.cancel(true);
+            m_nextPage = null;
+        }
+        if (m_openListing != null) {
+            m_path.getFileSystem().provider().listingClosed(m_openListing);
+            m_openListing = null;
+        }
     }
 
     /**
-     * @param dir
-     *            drive or folder.
-     * @param provider
-     * @return files with folder content for next use it in path iterator.
+     * @param pageToken
+     *            token of the page to fetch or null for the first page.
+     * @return the requested page of the listed drive or folder.
      * @throws IOException
      */
-    @SuppressWarnings("resource")
-    private static List<GoogleDrivePath> listDriveOrFolder(final GoogleDrivePath dir,
-            final GoogleDriveFileSystemProvider provider) throws IOException {
-
-        final GoogleDriveFileAttributes attr = provider.readAttributes(dir);
-        final FileMetadata meta = attr.getMetadata();
-
-        final List<File> files;
-        if (dir.isDrive()) {
-            files = dir.getFileSystem().provider().getHelper().listDrive(meta.getId());
+    private FileList fetchPage(final String pageToken) throws IOException {
+        if (m_path.isDrive()) {
+            return m_helper.listDrive(m_dirMeta.getId(), pageToken);
         } else {
-            files = dir.getFileSystem().provider().getHelper().listFolder(meta.getDriveId(), meta.getId());
+            return m_helper.listFolder(m_dirMeta.getDriveId(), m_dirMeta.getId(), pageToken);
+        }
+    }
+
+    private FileList prefetchAfter(final FileList page) {
+        final String pageToken = page.getNextPageToken();
+        if (pageToken != null && !pageToken.isEmpty()) {
+            m_nextPage = m_helper.submit(() -> fetchPage(pageToken));
         }
+        return page;
+    }
 
+    /**
+     * Creates the paths of the given page. Pages are ordered by name, so only
+     * the files having the same name as the last file of the page may have
+     * siblings with that name on the next page. These are held back until the
+     * next page is loaded, so that duplicate names can be corrected
+     * consistently.
+     *
+     * @param page
+     *            the fetched page.
+     * @return the paths of all files which can be named.
+     */
+    private Iterator<GoogleDrivePath> toPaths(final FileList page) {
+        final List<File> files = m_heldBack;
+        files.addAll(page.getFiles());
+        m_heldBack = m_nextPage != null ? holdBackLastName(files) : new ArrayList<>();
+
+        invalidateDuplicateNames(files);
         correctFileNames(files);
-        return createPathsAndCacheAttributes(dir, filesToMetadata(files));
+        return createPathsAndCacheAttributes(m_path, m_dirMeta.getId(), filesToMetadata(files)).iterator();
+    }
+
+    /**
+     * Removes the index entries of the names which several of the given files
+     * have, since these files are listed under corrected names. A path with
+     * such a name may have been indexed while its file was the only one with
+     * that name, and verifying the entry would still find the file under that
+     * name, although the path no longer resolves.
+     *
+     * @param files
+     *            files of the listed folder, before their names are corrected.
+     */
+    @SuppressWarnings("resource")
+    private void invalidateDuplicateNames(final List<File> files) {
+        final GoogleDriveFileSystemProvider provider = m_path.getFileSystem().provider();
+        duplicateNames(files).forEach(name -> provider
+                .removeFromIdIndex(m_path.resolve(GoogleDriveFileSystemProvider.encodeForwardSlashes(name))));
+    }
+
+    /**
+     * @param files
+     *            files of a folder.
+     * @return the names which several of the given files have.
+     */
+    static Set<String> duplicateNames(final List<File> files) {
+        final Set<String> names = new HashSet<>();
+        final Set<String> duplicates = new HashSet<>();
+        for (File file : files) {
+            if (!names.add(file.getName())) {
+                duplicates.add(file.getName());
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Removes the files having the same name as the last file from the end of
+     * the given list, ignoring the case.
+     *
+     * @param files
+     *            the files of a page, ordered by name.
+     * @return the removed files.
+     */
+    static List<File> holdBackLastName(final List<File> files) {
+        final List<File> heldBack = new ArrayList<>();
+        if (!files.isEmpty()) {
+            final String lastName = files.get(files.size() - 1).getName().toLowerCase(Locale.ROOT);
+            int split = files.size();
+            while (split > 0 && files.get(split - 1).getName().toLowerCase(Locale.ROOT).equals(lastName)) {
+                split--;
+            }
+            final List<File> tail = files.subList(split, files.size());
+            heldBack.addAll(tail);
+            tail.clear();
+        }
+        return heldBack;
     }
 
     /**
@@ -132,7 +259,7 @@ private static List<GoogleDrivePath> listRootFolder(final GoogleDrivePath dir,
 
         // shared drives is retrieved without pagination therefore can be
         // cached immediately.
-        final List<GoogleDrivePath> files = createPathsAndCacheAttributes(dir, drivesToMetadata(sharedDrives));
+        final List<GoogleDrivePath> files = createPathsAndCacheAttributes(dir, null, drivesToMetadata(sharedDrives));
         // add 'My Drive'
         files.add(0, dir.resolve(GoogleDriveFileSystemProvider.MY_DRIVE));
         return files;
@@ -142,7 +269,7 @@ private static void correctDriveNameDuplicates(final List<Drive> sharedDrives) {
         correctNames(sharedDrives, NameIdAccessor.DRIVE);
     }
 
-    private static void correctFileNames(final List<File> files) {
+    static void correctFileNames(final List<File> files) {
         correctNames(files, NameIdAccessor.FILE);
     }
 
@@ -178,7 +305,7 @@ private static <T> void correctNames(final List<T> objects, final NameIdAccessor
 
     @SuppressWarnings("resource")
     private static List<GoogleDrivePath> createPathsAndCacheAttributes(final GoogleDrivePath parent,
-            final List<FileMetadata> childMetas) {
+            final String parentId, final List<FileMetadata> childMetas) {
 
         List<GoogleDrivePath> files = new LinkedList<>();
         for (FileMetadata meta : childMetas) {
@@ -188,6 +315,9 @@ private static List<GoogleDrivePath> createPathsAndCacheAttributes(final GoogleD
 
             // cache attributes
             parent.getFileSystem().addToAttributeCache(path, new GoogleDriveFileAttributes(path, meta));
+            if (!parent.isRoot()) {
+                parent.getFileSystem().provider().addToIdIndex(path, meta, parentId);
+            }
         }
         return files;
     }
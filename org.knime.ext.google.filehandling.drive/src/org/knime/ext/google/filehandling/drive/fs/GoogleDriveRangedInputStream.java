@@ -0,0 +1,198 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright by KNIME AG, Zurich, Switzerland
+ *  Website: http://www.knime.com; Email: contact@knime.com
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME AG herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * ---------------------------------------------------------------------
+ *
+ * History
+ *   2026-10-16 (KNIME AG, Zurich, Switzerland): created
+ */
+package org.knime.ext.google.filehandling.drive.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * {@link InputStream} that downloads a Google Drive file with several
+ * concurrent range requests. The file is split into ranges of fixed size, of
+ * which at most a given number are downloaded ahead of the consumer, which
+ * bounds the memory used for buffering. Ranges are handed out strictly in
+ * order, so the consumer sees a plain sequential stream. All ranges are read
+ * from the same revision of the file.
+ *
+ * @author KNIME AG, Zurich, Switzerland
+ */
+final class GoogleDriveRangedInputStream extends InputStream {
+
+    /**
+     * Size of a single range request.
+     */
+    static final int RANGE_SIZE = 8 * 1024 * 1024; // 8 MiB
+
+    private final RangeReader m_reader;
+
+    private final ExecutorService m_executor;
+
+    private final long m_size;
+
+    private final int m_maxRangesAhead;
+
+    private final Deque<Future<ByteBuffer>> m_pendingRanges = new ArrayDeque<>();
+
+    private long m_nextRangeOffset;
+
+    private ByteBuffer m_currentRange;
+
+    private boolean m_closed;
+
+    /**
+     * @param reader
+     *            reads the ranges, all from the same revision of the file.
+     * @param executor
+     *            the executor to download the ranges with.
+     * @param size
+     *            the size of the revision.
+     * @param maxRangesAhead
+     *            the maximum number of ranges that are downloaded ahead of the
+     *            consumer, i.e. the number of concurrent range requests.
+     */
+    GoogleDriveRangedInputStream(final RangeReader reader, final ExecutorService executor, final long size,
+            final int maxRangesAhead) {
+        m_reader = reader;
+        m_executor = executor;
+        m_size = size;
+        m_maxRangesAhead = maxRangesAhead;
+        scheduleRanges();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureCurrentRange()) {
+            return -1;
+        }
+        return m_currentRange.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureCurrentRange()) {
+            return -1;
+        }
+
+        final int n = Math.min(len, m_currentRange.remaining());
+        m_currentRange.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return m_currentRange == null ? 0 : m_currentRange.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (m_closed) {
+            return;
+        }
+        m_closed = true;
+        m_currentRange = null;
+        m_pendingRanges.forEach(f -> f.cancel(true));
+        m_pendingRanges.clear();
+    }
+
+    private boolean ensureCurrentRange() throws IOException {
+        ensureOpen();
+        while (m_currentRange == null || !m_currentRange.hasRemaining()) {
+            final Future<ByteBuffer> next = m_pendingRanges.poll();
+            if (next == null) {
+                return false;
+            }
+            m_currentRange = GoogleDriveHelper.await(next);
+            // top up only once the awaited request is done, to bound the concurrent requests
+            scheduleRanges();
+        }
+        return true;
+    }
+
+    private void scheduleRanges() {
+        while (m_pendingRanges.size() < m_maxRangesAhead && m_nextRangeOffset < m_size) {
+            final long offset = m_nextRangeOffset;
+            final int length = (int) Math.min(RANGE_SIZE, m_size - offset);
+            m_pendingRanges.add(m_executor.submit(() -> ByteBuffer.wrap(m_reader.readRange(offset, length))));
+            m_nextRangeOffset += length;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (m_closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Reads a single range of the file.
+     */
+    @FunctionalInterface
+    interface RangeReader {
+
+        /**
+         * @param offset
+         *            the offset of the range.
+         * @param length
+         *            the length of the range.
+         * @return the bytes of the range.
+         * @throws IOException
+         */
+        byte[] readRange(long offset, int length) throws IOException;
+    }
+}
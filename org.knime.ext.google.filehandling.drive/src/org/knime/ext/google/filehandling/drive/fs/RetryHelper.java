@@ -62,7 +62,7 @@
  */
 final class RetryHelper {
 
-    private static final int DEFAULT_MAX_RETRY_COUNT = 8;
+    static final int DEFAULT_MAX_RETRY_COUNT = 8;
 
     private RetryHelper() {
     }
@@ -98,7 +98,7 @@ public static <T> T doWithRetryable(final IoRetryable<T> retryable) throws IOExc
         throw savedEx; // NOSONAR cannot be null
     }
 
-    private static void doPause(final Duration sleepTime) throws InterruptedIOException {
+    static void doPause(final Duration sleepTime) throws InterruptedIOException {
         try {
             Thread.sleep(sleepTime.toMillis());
         } catch (InterruptedException ex) { // NOSONAR
@@ -106,17 +106,32 @@ private static void doPause(final Duration sleepTime) throws InterruptedIOExcept
         }
     }
 
-    private static boolean isExceededRateLimit(final IOException exc) {
+    /**
+     * @param exc
+     *            the exception a request failed with.
+     * @return whether the exception signals that the request rate limit has
+     *         been exceeded.
+     */
+    static boolean isExceededRateLimit(final IOException exc) {
         if (exc instanceof GoogleJsonResponseException) {
             final GoogleJsonResponseException googleEx = (GoogleJsonResponseException) exc;
-            final GoogleJsonError parsedError = googleEx.getDetails();
-            if (parsedError != null //
-                    && parsedError.getCode() == 403 //
-                    && parsedError.getErrors().stream().anyMatch(e -> e.getDomain().equals("usageLimits"))) {
-                return true;
-            }
+            return isExceededRateLimit(googleEx.getDetails());
         }
 
         return false;
     }
+
+    /**
+     * @param parsedError
+     *            error returned by Google Drive, e.g. for a part of a batch
+     *            request. May be null.
+     * @return whether the error signals that the request rate limit has been
+     *         exceeded.
+     */
+    static boolean isExceededRateLimit(final GoogleJsonError parsedError) {
+        return parsedError != null //
+                && parsedError.getCode() == 403 //
+                && parsedError.getErrors() != null //
+                && parsedError.getErrors().stream().anyMatch(e -> "usageLimits".equals(e.getDomain()));
+    }
 }
\ No newline at end of file
@@ -48,13 +48,11 @@
  */
 package org.knime.google.cloud.storage.signedurl;
 
-import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.Signature;
-import java.security.SignatureException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
@@ -68,7 +66,9 @@
 import com.google.auth.oauth2.ServiceAccountCredentials;
 
 /**
- * Google Cloud Storage helper to sign URLs using the V4 signing process.
+ * Google Cloud Storage helper to sign URLs using the V4 signing process. The
+ * parts of the process are public, so that signers which keep state across
+ * URLs produce the same URLs.
  *
  * @see <a href="https://cloud.google.com/storage/docs/access-control/signing-urls-manually">Google docs</a>
  * @author Sascha Wolke, KNIME GmbH
@@ -80,6 +80,7 @@ public final class GoogleCSUrlSignature {
     private static final char COMPONENT_SEPARATOR = '\n';
     private static final String GOOG4_RSA_SHA256 = "GOOG4-RSA-SHA256";
     private static final String SCOPE = "/auto/storage/goog4_request";
+    private static final String HOST = "storage.googleapis.com";
 
     private GoogleCSUrlSignature() {}
 
@@ -98,15 +99,7 @@ private GoogleCSUrlSignature() {}
     public static String getSigningURL(final Credentials creds, final long expirationSeconds, final String bucketName,
         final String objectName) throws Exception {
 
-        if (!(creds instanceof ServiceAccountCredentials)) {
-            throw new InvalidSettingsException("API credentials with service account and private key required.");
-        }
-
-        if (expirationSeconds > SEVEN_DAYS_SECONDS) {
-            throw new InvalidSettingsException("Expiration Time can't be longer than 604800 seconds (7 days).");
-        }
-
-        final ServiceAccountCredentials credentials = (ServiceAccountCredentials) creds;
+        final ServiceAccountCredentials credentials = checkSigningCredentials(creds, expirationSeconds);
         final Date now = new Date();
         final SimpleDateFormat yearMonthDayFormat = new SimpleDateFormat("yyyyMMdd");
         final SimpleDateFormat exactDateFormat = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
@@ -115,25 +108,57 @@ public static String getSigningURL(final Credentials creds, final long expiratio
         final String yearMonthDay = yearMonthDayFormat.format(now);
         final String exactDate = exactDateFormat.format(now);
 
-        final String serviceEmail = credentials.getClientEmail();
-        final String credentialScope = URLEncoder.encode(serviceEmail + "/" + yearMonthDay + SCOPE, "UTF-8");
+        final String credentialScope = constructV4CredentialScope(credentials.getClientEmail(), yearMonthDay);
         final PrivateKey privateKey = credentials.getPrivateKey();
         final String canonicalUri = "/" + bucketName + "/" + objectName;
         final String canonicalQuery = constructV4CanonicalQueryString(credentialScope, exactDate, expirationSeconds);
-        final String canonicalReqHash = constructV4CanonicalRequestHash(canonicalUri, canonicalQuery);
+        final String canonicalRequest = constructV4CanonicalRequest(canonicalUri, canonicalQuery);
+        final String canonicalReqHash = DigestUtils.sha256Hex(canonicalRequest);
         final String unsigned = constructV4UnsignedPayload(exactDate, yearMonthDay, canonicalReqHash);
         final String urlSignature = signString(privateKey, unsigned);
 
-        return new StringBuilder()
-            .append("https://storage.googleapis.com")
-            .append(canonicalUri)
-            .append("?")
-            .append(canonicalQuery)
-            .append("&x-goog-signature=").append(urlSignature)
-            .toString();
+        return constructV4SignedURL(canonicalUri, canonicalQuery, urlSignature);
     }
 
-    private static String constructV4UnsignedPayload(final String exactDate, final String yearMonthDay,
+    /**
+     * Checks that the given credentials and expiration time can be used to sign URLs.
+     *
+     * @param creds credentials to use for signing
+     * @param expirationSeconds URL expiration time in seconds
+     * @return the service account credentials to sign with
+     * @throws InvalidSettingsException if the credentials have no private key or the expiration time is too long
+     */
+    public static ServiceAccountCredentials checkSigningCredentials(final Credentials creds,
+        final long expirationSeconds) throws InvalidSettingsException {
+
+        if (!(creds instanceof ServiceAccountCredentials)
+            || ((ServiceAccountCredentials)creds).getPrivateKey() == null) {
+            throw new InvalidSettingsException("API credentials with service account and private key required.");
+        }
+
+        if (expirationSeconds > SEVEN_DAYS_SECONDS) {
+            throw new InvalidSettingsException("Expiration Time can't be longer than 604800 seconds (7 days).");
+        }
+
+        return (ServiceAccountCredentials) creds;
+    }
+
+    /**
+     * @param serviceEmail the client email of the service account
+     * @param yearMonthDay the signing date as yyyyMMdd in UTC
+     * @return the URL encoded credential scope
+     */
+    public static String constructV4CredentialScope(final String serviceEmail, final String yearMonthDay) {
+        return URLEncoder.encode(serviceEmail + "/" + yearMonthDay + SCOPE, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param exactDate the signing time as yyyyMMdd'T'HHmmss'Z' in UTC
+     * @param yearMonthDay the signing date as yyyyMMdd in UTC
+     * @param canonicalReqHash the hex encoded SHA-256 hash of the canonical request
+     * @return the string to sign
+     */
+    public static String constructV4UnsignedPayload(final String exactDate, final String yearMonthDay,
         final String canonicalReqHash) {
         StringBuilder payload = new StringBuilder();
         payload.append(GOOG4_RSA_SHA256).append(COMPONENT_SEPARATOR);
@@ -143,7 +168,13 @@ private static String constructV4UnsignedPayload(final String exactDate, final S
         return payload.toString();
     }
 
-    private static String constructV4CanonicalQueryString(final String credentialScope, final String exactDate,
+    /**
+     * @param credentialScope the URL encoded credential scope
+     * @param exactDate the signing time as yyyyMMdd'T'HHmmss'Z' in UTC
+     * @param expiration URL expiration time in seconds
+     * @return the canonical query string, without signature
+     */
+    public static String constructV4CanonicalQueryString(final String credentialScope, final String exactDate,
         final long expiration) {
         StringBuilder queryString = new StringBuilder();
         queryString.append("x-goog-algorithm=").append(GOOG4_RSA_SHA256).append("&");
@@ -154,21 +185,43 @@ private static String constructV4CanonicalQueryString(final String credentialSco
         return queryString.toString();
     }
 
-    private static String constructV4CanonicalRequestHash(final String canonicalUri, final String canonicalQuery) {
+    /**
+     * @param canonicalUri the path of the object, i.e. /bucket/object
+     * @param canonicalQuery the canonical query string
+     * @return the canonical request, whose hash is signed
+     */
+    public static String constructV4CanonicalRequest(final String canonicalUri, final String canonicalQuery) {
         StringBuilder canonicalRequest = new StringBuilder();
         canonicalRequest.append("GET").append(COMPONENT_SEPARATOR);
         canonicalRequest.append(canonicalUri).append(COMPONENT_SEPARATOR);
         canonicalRequest.append(canonicalQuery).append(COMPONENT_SEPARATOR);
-        canonicalRequest.append("host:storage.googleapis.com").append(COMPONENT_SEPARATOR).append(COMPONENT_SEPARATOR);
+        canonicalRequest.append("host:").append(HOST).append(COMPONENT_SEPARATOR).append(COMPONENT_SEPARATOR);
         canonicalRequest.append("host").append(COMPONENT_SEPARATOR);
         canonicalRequest.append("UNSIGNED-PAYLOAD");
-        return DigestUtils.sha256Hex(canonicalRequest.toString());
+        return canonicalRequest.toString();
+    }
+
+    /**
+     * @param canonicalUri the path of the object, i.e. /bucket/object
+     * @param canonicalQuery the canonical query string
+     * @param signature the hex encoded signature
+     * @return the signed URL
+     */
+    public static String constructV4SignedURL(final String canonicalUri, final String canonicalQuery,
+        final String signature) {
+        return new StringBuilder()
+            .append("https://").append(HOST)
+            .append(canonicalUri)
+            .append("?")
+            .append(canonicalQuery)
+            .append("&x-goog-signature=").append(signature)
+            .toString();
     }
 
     private static String signString(final PrivateKey privateKey, final String stringToSign)
-        throws UnsupportedEncodingException, NoSuchAlgorithmException, InvalidKeyException, SignatureException {
+        throws GeneralSecurityException {
         Signature signer = SecurityUtils.getSha256WithRsaSignatureAlgorithm();
-        byte[] data = stringToSign.getBytes("UTF-8");
+        byte[] data = stringToSign.getBytes(StandardCharsets.UTF_8);
         return Hex.encodeHexString(SecurityUtils.sign(signer, privateKey, data));
     }
 }